@@ -0,0 +1,265 @@
+package pdc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of finished result blocks, so a restarted master can pick a job up
+ * where the last process stopped instead of running all of it again.
+ *
+ * Blocks are filed under a job key, a hash of everything that decides a job's result
+ * (operation, input and operands; see jobKey), so the same job submitted again after a
+ * restart finds them. The file is memory-mapped and appended to:
+ *
+ * header: [long MAGIC][int VERSION]
+ * record: [int length][int crc][long jobKey][int firstRow][int rowCount][int cols][rowCount * cols ints]
+ *
+ * length counts the bytes after itself and is written last, so a record cut short by a
+ * crash reads as length 0, which ends the log. crc is a CRC-32 of everything after it;
+ * a record that fails it is skipped on open, so its rows are run again rather than
+ * restored wrong. The index (job key to record positions) lives in memory and is
+ * rebuilt by scanning the file on open.
+ *
+ * Once a job has finished, drop negates its records' lengths, which the scan skips. A
+ * log with nothing live left starts over at the header; one that is mostly dead is
+ * rewritten to a new file holding only the live records, which then replaces it. One
+ * mapping holds the whole file, so appends fail once the live records reach 2 GiB.
+ */
+final class CheckpointStore implements Closeable {
+
+    private static final long MAGIC = 0x43534D3231384350L; // "CSM218CP"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 28;
+    private static final long INITIAL_CAPACITY = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel; // guarded by this
+    private final Map<Long, List<Integer>> index = new HashMap<>(); // guarded by this
+    private MappedByteBuffer map; // guarded by this
+    private int end; // guarded by this
+    private long dead; // bytes of dropped records before end; guarded by this
+
+    private CheckpointStore(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens file, creating it if needed, and indexes the blocks already in it.
+     */
+    static CheckpointStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        CheckpointStore store = new CheckpointStore(file, channel);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private synchronized void load() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("Checkpoint " + file + " is larger than 2 GiB");
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size == 0) {
+            map.putLong(0, MAGIC);
+            map.putInt(8, VERSION);
+        } else if (size < HEADER_BYTES || map.getLong(0) != MAGIC || map.getInt(8) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " checkpoint: " + file);
+        }
+
+        index.clear();
+        end = HEADER_BYTES;
+        dead = 0;
+        while (end + RECORD_HEADER_BYTES <= map.capacity()) {
+            int length = map.getInt(end);
+            boolean dropped = length < 0;
+            if (dropped) length = -length;
+            if (length == 0 || end + 4L + length > map.capacity()) break;
+            int rowCount = map.getInt(end + 20);
+            int cols = map.getInt(end + 24);
+            if (rowCount < 0 || cols < 0 || length != RECORD_HEADER_BYTES - 4 + 4L * rowCount * cols) break;
+            if (dropped) {
+                dead += 4 + length;
+            } else if (map.getInt(end + 4) != crc(end, length)) {
+                System.err.println("Checkpoint " + file + ": skipping corrupt record at " + end);
+                dead += 4 + length;
+            } else {
+                index.computeIfAbsent(map.getLong(end + 8), k -> new ArrayList<>()).add(end);
+            }
+            end += 4 + length;
+        }
+    }
+
+    /**
+     * CRC-32 of the length - 4 bytes after the crc of the record at position.
+     */
+    private int crc(int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(map.duplicate().position(position + 8).limit(position + 4 + length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Key of a job's results: equal for jobs that must produce the same rows.
+     */
+    static long jobKey(String operation, IntMatrix input, SparseMatrix sparseInput, Operand[] operands) {
+        long h = Operand.mix(operation.hashCode() * 0x9E3779B97F4A7C15L);
+        if (input != null) {
+            h = Operand.mix(h + input.rows) + input.cols;
+            int[] row = new int[input.cols];
+            for (int i = 0; i < input.rows; i++) {
+                input.getRow(i, row, 0);
+                for (int v : row) h = h * 0x100000001B3L + v;
+                h = Operand.mix(h);
+            }
+        } else {
+            h = Operand.mix(h + Operand.contentHash(sparseInput));
+        }
+        for (Operand operand : operands) h = Operand.mix(h + operand.id);
+        return h;
+    }
+
+    /**
+     * Records output rows [firstRow, firstRow + rowCount) as finished for jobKey. The rows
+     * must all have the same length.
+     */
+    synchronized void append(long jobKey, int[][] output, int firstRow, int rowCount) throws IOException {
+        int cols = rowCount > 0 ? output[firstRow].length : 0;
+        long length = RECORD_HEADER_BYTES - 4 + 4L * rowCount * cols;
+        reserve(4 + length);
+
+        map.putLong(end + 8, jobKey);
+        map.putInt(end + 16, firstRow);
+        map.putInt(end + 20, rowCount);
+        map.putInt(end + 24, cols);
+        IntBuffer ints = map.duplicate().position(end + RECORD_HEADER_BYTES).slice().asIntBuffer();
+        for (int i = firstRow; i < firstRow + rowCount; i++) {
+            if (output[i].length != cols) throw new IOException("Ragged rows in checkpoint block at row " + i);
+            ints.put(output[i]);
+        }
+        map.putInt(end + 4, crc(end, (int) length));
+        // a log that started over may hold old records past this one; end it here
+        map.putInt(end + 4 + (int) length, 0);
+        // the length goes in last: until then the record does not exist
+        map.putInt(end, (int) length);
+        index.computeIfAbsent(jobKey, k -> new ArrayList<>()).add(end);
+        end += 4 + (int) length;
+    }
+
+    /**
+     * Makes room for bytes more at the end, remapping a larger file if needed.
+     */
+    private void reserve(long bytes) throws IOException {
+        long needed = end + bytes + 4; // room for the next record's zero length
+        if (needed <= map.capacity()) return;
+        if (needed > Integer.MAX_VALUE && dead > 0) {
+            compact();
+            needed = end + bytes + 4;
+            if (needed <= map.capacity()) return;
+        }
+        if (needed > Integer.MAX_VALUE) throw new IOException("Checkpoint " + file + " is full");
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * map.capacity()));
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Drops every block recorded for jobKey, once its job no longer needs them. Starts
+     * the log over when nothing else is left in it, and compacts it when more than half
+     * of a log past its initial size is dead.
+     */
+    synchronized void drop(long jobKey) throws IOException {
+        List<Integer> positions = index.remove(jobKey);
+        if (positions == null) return;
+        for (int position : positions) {
+            int length = map.getInt(position);
+            map.putInt(position, -length);
+            dead += 4 + length;
+        }
+        if (index.isEmpty()) {
+            map.putInt(HEADER_BYTES, 0);
+            end = HEADER_BYTES;
+            dead = 0;
+        } else if (end > INITIAL_CAPACITY && 2 * dead > end - HEADER_BYTES) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the live records to a new file and moves it over this one, so a crash
+     * leaves either the old log or the new one.
+     */
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putLong(MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) out.write(header);
+            List<Integer> live = new ArrayList<>();
+            for (List<Integer> positions : index.values()) live.addAll(positions);
+            Collections.sort(live);
+            for (int position : live) {
+                ByteBuffer record = map.duplicate().position(position).limit(position + 4 + map.getInt(position));
+                while (record.hasRemaining()) out.write(record);
+            }
+            out.force(true);
+        }
+        map.force();
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    /**
+     * Bytes of the log up to its last record, dropped ones included.
+     */
+    synchronized int size() {
+        return end;
+    }
+
+    /**
+     * Every block recorded for jobKey, in the order they were appended.
+     */
+    synchronized List<Payloads.RowBlock> blocks(long jobKey) {
+        List<Payloads.RowBlock> blocks = new ArrayList<>();
+        for (int position : index.getOrDefault(jobKey, List.of())) {
+            int firstRow = map.getInt(position + 16);
+            int rowCount = map.getInt(position + 20);
+            int cols = map.getInt(position + 24);
+            IntBuffer ints = map.duplicate().position(position + RECORD_HEADER_BYTES).slice().asIntBuffer();
+            int[][] rows = new int[rowCount][cols];
+            for (int[] row : rows) ints.get(row);
+            blocks.add(new Payloads.RowBlock(firstRow, rows));
+        }
+        return blocks;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            map.force();
+        } finally {
+            channel.close();
+        }
+    }
+}
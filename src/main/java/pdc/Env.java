@@ -0,0 +1,32 @@
+package pdc;
+
+/**
+ * Numeric settings read from $CSM218_* environment variables. A missing or malformed
+ * value falls back to the default rather than failing the class that reads it.
+ */
+final class Env {
+
+    private Env() {}
+
+    static int intValue(String name, int fallback) {
+        String env = System.getenv(name);
+        if (env == null) return fallback;
+        try {
+            return Integer.parseInt(env.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring malformed $" + name + "=" + env + ", using " + fallback);
+            return fallback;
+        }
+    }
+
+    static long longValue(String name, long fallback) {
+        String env = System.getenv(name);
+        if (env == null) return fallback;
+        try {
+            return Long.parseLong(env.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring malformed $" + name + "=" + env + ", using " + fallback);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package pdc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Blocking, length-prefixed Message framing over a socket's streams.
+ * Frames are encoded by a MessageCodec into reusable per-connection buffers,
+ * so steady-state traffic allocates nothing beyond the decoded payload. A frame longer
+ * than MAX_RETAINED_BUFFER_SIZE gets a buffer of its own instead, so one large operand
+ * or result does not leave a buffer of its size pinned for the life of the connection.
+ */
+public class FramedStream {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final MessageCodec codec;
+    private ByteBuffer inBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer outBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    public FramedStream(InputStream in, OutputStream out, String sender) {
+        this.in = new DataInputStream(in);
+        this.out = new DataOutputStream(out);
+        this.codec = new MessageCodec(sender);
+    }
+
+    /**
+     * Writes one frame. Safe to call from several threads; frames never interleave.
+     */
+    public synchronized void send(Message msg) throws IOException {
+        ByteBuffer buf = sendBuffer(codec.frameLength(msg));
+        codec.encode(msg, buf);
+        out.write(buf.array(), 0, buf.position());
+        out.flush();
+    }
+
+    /**
+     * Writes one frame whose payload of payloadLength bytes is put straight into the
+     * send buffer by payloadWriter, skipping any intermediate byte[].
+     */
+    public synchronized void send(Message header, int payloadLength, Consumer<ByteBuffer> payloadWriter) throws IOException {
+        ByteBuffer buf = sendBuffer(codec.frameLength(header, payloadLength));
+        codec.encodeHeader(header, payloadLength, buf);
+        int payloadStart = buf.position();
+        payloadWriter.accept(buf);
+        if (buf.position() - payloadStart != payloadLength) {
+            throw new IOException("Payload writer produced " + (buf.position() - payloadStart)
+                    + " bytes, expected " + payloadLength);
+        }
+        out.write(buf.array(), 0, buf.position());
+        out.flush();
+    }
+
+    /**
+     * Blocks until one whole frame has arrived and decodes it.
+     * Must only be called from the connection's single reader.
+     */
+    public Message receive() throws IOException {
+        return codec.decode(readFrame());
+    }
+
+    /**
+     * Blocks until one whole frame has arrived, decodes its header into header and
+     * returns a zero-copy view of the payload, valid until the next read.
+     */
+    public ByteBuffer receive(Message header) throws IOException {
+        return codec.decodeInto(readFrame(), header);
+    }
+
+    /**
+     * Blocks until one whole frame has arrived and returns it, length prefix included,
+     * ready for MessageCodec.decodeInto(). The buffer is reused by the next read.
+     */
+    public ByteBuffer readFrame() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MessageCodec.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        int frame = MessageCodec.LENGTH_PREFIX + length;
+        ByteBuffer buf;
+        if (frame > MAX_RETAINED_BUFFER_SIZE) {
+            buf = ByteBuffer.allocate(frame);
+        } else {
+            inBuffer.clear();
+            buf = inBuffer = MessageCodec.ensureCapacity(inBuffer, frame);
+        }
+        buf.putInt(length);
+        in.readFully(buf.array(), buf.position(), length);
+        buf.position(buf.position() + length);
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * The cleared buffer to encode a frame of frameLength bytes into: the reusable one,
+     * grown if need be, or a one-off for a frame too large to keep a buffer for.
+     */
+    private ByteBuffer sendBuffer(int frameLength) {
+        if (frameLength > MAX_RETAINED_BUFFER_SIZE) return ByteBuffer.allocate(frameLength);
+        outBuffer.clear();
+        outBuffer = MessageCodec.ensureCapacity(outBuffer, frameLength);
+        return outBuffer;
+    }
+
+    /**
+     * Bytes held by the reusable buffers; never more than twice MAX_RETAINED_BUFFER_SIZE.
+     */
+    int retainedBytes() {
+        return inBuffer.capacity() + outBuffer.capacity();
+    }
+
+    public MessageCodec codec() {
+        return codec;
+    }
+}
@@ -0,0 +1,413 @@
+package pdc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * A rows x cols int matrix over one storage.
+ *
+ * Storage is a flat int[] (heap()), an off-heap direct buffer (direct()), or an existing
+ * int[][] (wrap(), for callers of the int[][] API; no copy). Flat storage is addressed
+ * as offset + row * rowStride + col * colStride (see Strided): row-major matrices have
+ * colStride 1, column-major ones rowStride 1, and view() and transpose() only change the
+ * addressing, so blocks and transposes share storage with their parent. Wrapped rows
+ * have no flat index; their views share the rows too, but transpose() copies.
+ */
+public abstract class IntMatrix {
+
+    public final int rows;
+    public final int cols;
+
+    private IntMatrix(int rows, int cols) {
+        if (rows < 0 || cols < 0) throw new IllegalArgumentException("Negative shape " + rows + "x" + cols);
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    // ================== Factories ==================
+
+    /**
+     * A zeroed row-major matrix backed by one int[].
+     */
+    public static IntMatrix heap(int rows, int cols) {
+        return new Heap(new int[Math.multiplyExact(rows, cols)], rows, cols, 0, cols, 1);
+    }
+
+    /**
+     * A zeroed column-major matrix backed by one int[].
+     */
+    public static IntMatrix heapColumnMajor(int rows, int cols) {
+        return new Heap(new int[Math.multiplyExact(rows, cols)], rows, cols, 0, 1, rows);
+    }
+
+    /**
+     * Wraps a row-major array of at least rows * cols ints without copying.
+     */
+    public static IntMatrix wrap(int[] data, int rows, int cols) {
+        if (data.length < (long) rows * cols) throw new IllegalArgumentException("Array too short for " + rows + "x" + cols);
+        return new Heap(data, rows, cols, 0, cols, 1);
+    }
+
+    /**
+     * A zeroed row-major matrix in native-order off-heap memory.
+     */
+    public static IntMatrix direct(int rows, int cols) {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(Math.multiplyExact(4 * rows, cols)).order(ByteOrder.nativeOrder());
+        return new Direct(bytes.asIntBuffer(), rows, cols, 0, cols, 1);
+    }
+
+    /**
+     * Views rectangular int[][] rows as a matrix without copying; writes go to the rows.
+     */
+    public static IntMatrix wrap(int[][] data) {
+        int cols = data.length > 0 ? data[0].length : 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i].length != cols) throw new IllegalArgumentException("Ragged row " + i + ": " + data[i].length + " != " + cols);
+        }
+        return new Rows(data, data.length, cols, 0, 0);
+    }
+
+    /**
+     * Copies int[][] rows into a new flat row-major matrix.
+     */
+    public static IntMatrix copyOf(int[][] data) {
+        IntMatrix m = heap(data.length, data.length > 0 ? data[0].length : 0);
+        for (int i = 0; i < data.length; i++) m.setRow(i, data[i]);
+        return m;
+    }
+
+    // ================== Elements ==================
+
+    public abstract int get(int row, int col);
+
+    public abstract void set(int row, int col, int value);
+
+    /**
+     * Copies row into dst[dstOffset, dstOffset + cols).
+     */
+    public abstract void getRow(int row, int[] dst, int dstOffset);
+
+    public abstract void setRow(int row, int[] src);
+
+    final void checkIndex(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || (col >= cols && cols > 0)) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") outside " + rows + "x" + cols);
+        }
+    }
+
+    final void checkBlock(int firstRow, int firstCol, int rowCount, int colCount) {
+        if (firstRow < 0 || firstCol < 0 || rowCount < 0 || colCount < 0
+                || firstRow + rowCount > rows || firstCol + colCount > cols) {
+            throw new IndexOutOfBoundsException("Block (" + firstRow + ", " + firstCol + ") " + rowCount + "x" + colCount
+                    + " outside " + rows + "x" + cols);
+        }
+    }
+
+    // ================== Views ==================
+
+    /**
+     * The rowCount x colCount block starting at (firstRow, firstCol), sharing storage.
+     */
+    public abstract IntMatrix view(int firstRow, int firstCol, int rowCount, int colCount);
+
+    /**
+     * Rows [firstRow, firstRow + rowCount), sharing storage.
+     */
+    public IntMatrix rowView(int firstRow, int rowCount) {
+        return view(firstRow, 0, rowCount, cols);
+    }
+
+    /**
+     * The transpose: sharing storage for flat storage (a row-major matrix becomes
+     * column-major), a copy for wrapped rows.
+     */
+    public abstract IntMatrix transpose();
+
+    // ================== Adapters ==================
+
+    /**
+     * Copies the matrix out as int[][] rows.
+     */
+    public int[][] toRows() {
+        int[][] out = new int[rows][cols];
+        for (int i = 0; i < rows; i++) getRow(i, out[i], 0);
+        return out;
+    }
+
+    /**
+     * Writes rows x cols ints in row-major order: bulk copies where a row is contiguous.
+     */
+    abstract void putRowMajor(IntBuffer out);
+
+    /**
+     * Reads rows x cols ints in row-major order.
+     */
+    abstract void getRowMajor(IntBuffer in);
+
+    /**
+     * The matrices side by side in a new row-major matrix (the first itself if only one).
+     */
+    static IntMatrix concatColumns(List<IntMatrix> inputs) {
+        if (inputs.size() == 1) return inputs.get(0);
+        int rows = inputs.get(0).rows;
+        int cols = 0;
+        for (IntMatrix input : inputs) cols += input.cols;
+        IntMatrix joined = heap(rows, cols);
+        int[] row = new int[cols];
+        for (int i = 0; i < rows; i++) {
+            int offset = 0;
+            for (IntMatrix input : inputs) {
+                input.getRow(i, row, offset);
+                offset += input.cols;
+            }
+            joined.setRow(i, row);
+        }
+        return joined;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName().toLowerCase() + " " + rows + "x" + cols;
+    }
+
+    // ================== Storage ==================
+
+    /**
+     * Flat storage, addressed as offset + row * rowStride + col * colStride.
+     */
+    private abstract static class Strided extends IntMatrix {
+        final int offset;
+        final int rowStride;
+        final int colStride;
+
+        Strided(int rows, int cols, int offset, int rowStride, int colStride) {
+            super(rows, cols);
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.colStride = colStride;
+        }
+
+        abstract int load(int index);
+
+        abstract void store(int index, int value);
+
+        /**
+         * Same storage with new addressing.
+         */
+        abstract IntMatrix slice(int rows, int cols, int offset, int rowStride, int colStride);
+
+        @Override
+        public int get(int row, int col) {
+            checkIndex(row, col);
+            return load(offset + row * rowStride + col * colStride);
+        }
+
+        @Override
+        public void set(int row, int col, int value) {
+            checkIndex(row, col);
+            store(offset + row * rowStride + col * colStride, value);
+        }
+
+        @Override
+        public void getRow(int row, int[] dst, int dstOffset) {
+            checkIndex(row, 0);
+            int base = offset + row * rowStride;
+            for (int j = 0; j < cols; j++) dst[dstOffset + j] = load(base + j * colStride);
+        }
+
+        @Override
+        public void setRow(int row, int[] src) {
+            checkIndex(row, 0);
+            if (src.length != cols) throw new IllegalArgumentException("Row has " + src.length + " values, expected " + cols);
+            int base = offset + row * rowStride;
+            for (int j = 0; j < cols; j++) store(base + j * colStride, src[j]);
+        }
+
+        @Override
+        public IntMatrix view(int firstRow, int firstCol, int rowCount, int colCount) {
+            checkBlock(firstRow, firstCol, rowCount, colCount);
+            return slice(rowCount, colCount, offset + firstRow * rowStride + firstCol * colStride, rowStride, colStride);
+        }
+
+        @Override
+        public IntMatrix transpose() {
+            return slice(cols, rows, offset, colStride, rowStride);
+        }
+
+        @Override
+        void putRowMajor(IntBuffer out) {
+            for (int i = 0; i < rows; i++) {
+                int base = offset + i * rowStride;
+                for (int j = 0; j < cols; j++) out.put(load(base + j * colStride));
+            }
+        }
+
+        @Override
+        void getRowMajor(IntBuffer in) {
+            for (int i = 0; i < rows; i++) {
+                int base = offset + i * rowStride;
+                for (int j = 0; j < cols; j++) store(base + j * colStride, in.get());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + (colStride == 1 ? "" : rowStride == 1 ? " column-major" : " strided");
+        }
+    }
+
+    private static final class Heap extends Strided {
+        private final int[] data;
+
+        Heap(int[] data, int rows, int cols, int offset, int rowStride, int colStride) {
+            super(rows, cols, offset, rowStride, colStride);
+            this.data = data;
+        }
+
+        @Override
+        int load(int index) {
+            return data[index];
+        }
+
+        @Override
+        void store(int index, int value) {
+            data[index] = value;
+        }
+
+        @Override
+        IntMatrix slice(int rows, int cols, int offset, int rowStride, int colStride) {
+            return new Heap(data, rows, cols, offset, rowStride, colStride);
+        }
+
+        @Override
+        void putRowMajor(IntBuffer out) {
+            if (colStride != 1) {
+                super.putRowMajor(out);
+                return;
+            }
+            if (rowStride == cols) {
+                out.put(data, offset, rows * cols);
+                return;
+            }
+            for (int i = 0; i < rows; i++) out.put(data, offset + i * rowStride, cols);
+        }
+
+        @Override
+        void getRowMajor(IntBuffer in) {
+            if (colStride != 1) {
+                super.getRowMajor(in);
+                return;
+            }
+            if (rowStride == cols) {
+                in.get(data, offset, rows * cols);
+                return;
+            }
+            for (int i = 0; i < rows; i++) in.get(data, offset + i * rowStride, cols);
+        }
+    }
+
+    private static final class Direct extends Strided {
+        private final IntBuffer data;
+
+        Direct(IntBuffer data, int rows, int cols, int offset, int rowStride, int colStride) {
+            super(rows, cols, offset, rowStride, colStride);
+            this.data = data;
+        }
+
+        @Override
+        int load(int index) {
+            return data.get(index);
+        }
+
+        @Override
+        void store(int index, int value) {
+            data.put(index, value);
+        }
+
+        @Override
+        IntMatrix slice(int rows, int cols, int offset, int rowStride, int colStride) {
+            return new Direct(data, rows, cols, offset, rowStride, colStride);
+        }
+
+        @Override
+        void putRowMajor(IntBuffer out) {
+            if (colStride != 1) {
+                super.putRowMajor(out);
+                return;
+            }
+            for (int i = 0; i < rows; i++) {
+                IntBuffer row = data.duplicate();
+                row.position(offset + i * rowStride).limit(offset + i * rowStride + cols);
+                out.put(row);
+            }
+        }
+    }
+
+    /**
+     * Adapter over existing int[][] rows. There is no single flat index (the rows may
+     * hold more ints than one fits), so element and row access go straight to
+     * data[firstRow + row][firstCol + col]; transpose() copies.
+     */
+    private static final class Rows extends IntMatrix {
+        private final int[][] data;
+        private final int firstRow;
+        private final int firstCol;
+
+        Rows(int[][] data, int rows, int cols, int firstRow, int firstCol) {
+            super(rows, cols);
+            this.data = data;
+            this.firstRow = firstRow;
+            this.firstCol = firstCol;
+        }
+
+        @Override
+        public int get(int row, int col) {
+            checkIndex(row, col);
+            return data[firstRow + row][firstCol + col];
+        }
+
+        @Override
+        public void set(int row, int col, int value) {
+            checkIndex(row, col);
+            data[firstRow + row][firstCol + col] = value;
+        }
+
+        @Override
+        public void getRow(int row, int[] dst, int dstOffset) {
+            checkIndex(row, 0);
+            System.arraycopy(data[firstRow + row], firstCol, dst, dstOffset, cols);
+        }
+
+        @Override
+        public void setRow(int row, int[] src) {
+            checkIndex(row, 0);
+            if (src.length != cols) throw new IllegalArgumentException("Row has " + src.length + " values, expected " + cols);
+            System.arraycopy(src, 0, data[firstRow + row], firstCol, cols);
+        }
+
+        @Override
+        public IntMatrix view(int firstRow, int firstCol, int rowCount, int colCount) {
+            checkBlock(firstRow, firstCol, rowCount, colCount);
+            return new Rows(data, rowCount, colCount, this.firstRow + firstRow, this.firstCol + firstCol);
+        }
+
+        @Override
+        public IntMatrix transpose() {
+            int[] copy = new int[Math.multiplyExact(rows, cols)];
+            for (int i = 0; i < rows; i++) System.arraycopy(data[firstRow + i], firstCol, copy, i * cols, cols);
+            return IntMatrix.wrap(copy, rows, cols).transpose();
+        }
+
+        @Override
+        void putRowMajor(IntBuffer out) {
+            for (int i = 0; i < rows; i++) out.put(data[firstRow + i], firstCol, cols);
+        }
+
+        @Override
+        void getRowMajor(IntBuffer in) {
+            for (int i = 0; i < rows; i++) in.get(data[firstRow + i], firstCol, cols);
+        }
+    }
+}
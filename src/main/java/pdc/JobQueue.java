@@ -0,0 +1,65 @@
+package pdc;
+
+import java.util.*;
+
+/**
+ * The Master's backlog of runnable tasks, shared fairly between jobs.
+ * Each job has its own FIFO lane and poll() takes from the lanes in turn, so a large
+ * job submitted first cannot starve a small one submitted after it.
+ */
+public class JobQueue extends AbstractQueue<Master.Task> {
+
+    private final LinkedHashMap<Long, ArrayDeque<Master.Task>> lanes = new LinkedHashMap<>(); // guarded by this
+    private int size; // guarded by this
+
+    @Override
+    public synchronized boolean offer(Master.Task task) {
+        lanes.computeIfAbsent(task.job.id, id -> new ArrayDeque<>()).addLast(task);
+        size++;
+        return true;
+    }
+
+    /**
+     * Takes the head of the next job's lane and moves that lane to the back of the turn order.
+     */
+    @Override
+    public synchronized Master.Task poll() {
+        Iterator<Map.Entry<Long, ArrayDeque<Master.Task>>> iter = lanes.entrySet().iterator();
+        if (!iter.hasNext()) return null;
+        Map.Entry<Long, ArrayDeque<Master.Task>> lane = iter.next();
+        iter.remove();
+        Master.Task task = lane.getValue().pollFirst();
+        if (!lane.getValue().isEmpty()) lanes.put(lane.getKey(), lane.getValue());
+        size--;
+        return task;
+    }
+
+    @Override
+    public synchronized Master.Task peek() {
+        Iterator<ArrayDeque<Master.Task>> iter = lanes.values().iterator();
+        return iter.hasNext() ? iter.next().peekFirst() : null;
+    }
+
+    /**
+     * Drops every queued task of a finished or abandoned job.
+     */
+    public synchronized void removeJob(long jobId) {
+        ArrayDeque<Master.Task> lane = lanes.remove(jobId);
+        if (lane != null) size -= lane.size();
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over a snapshot in lane order.
+     */
+    @Override
+    public synchronized Iterator<Master.Task> iterator() {
+        List<Master.Task> snapshot = new ArrayList<>(size);
+        for (ArrayDeque<Master.Task> lane : lanes.values()) snapshot.addAll(lane);
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
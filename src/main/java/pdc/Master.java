@@ -3,8 +3,13 @@ package pdc;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Master node coordinating Workers using Message-based RPC protocol.
@@ -14,39 +19,153 @@ public class Master {
     private final ExecutorService systemThreads = Executors.newCachedThreadPool();
     private final ScheduledExecutorService monitor = Executors.newScheduledThreadPool(1);
 
-    private final BlockingQueue<Task> pendingTasks = new LinkedBlockingQueue<>();
+    private final JobQueue pendingTasks = new JobQueue();
     private final ConcurrentMap<Integer, Task> inProgress = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Integer, Object> completedResults = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTaskId = new AtomicInteger();
+    private final AtomicLong nextJobId = new AtomicLong();
+    /**
+     * High half of every grid exchange id, drawn once per master process. Job ids restart
+     * at 1 with the master, but workers remember exchanges they have forgotten across
+     * reconnects and drop their blocks, so exchange ids must not repeat across restarts.
+     */
+    private final long exchangeEpoch = (long) ThreadLocalRandom.current().nextInt() << 32;
     private final ConcurrentMap<String, WorkerInfo> workers = new ConcurrentHashMap<>();
+    /** Sessions whose connection dropped, by identity, waiting resumeGraceMs for the worker to come back. */
+    private final ConcurrentMap<String, WorkerInfo> suspended = new ConcurrentHashMap<>();
+    /** Runs task completion (checkpoint appends, CANCELs to losing copies) off the connection readers. */
+    private final ExecutorService completions = Executors.newCachedThreadPool();
+    private final Scheduler scheduler = new Scheduler(this, pendingTasks, workers.values(), completions);
+    private final StragglerDetector stragglers = new StragglerDetector();
+    private final Partitioner partitioner = new Partitioner();
+    private final PhiAccrualDetector detector = new PhiAccrualDetector();
 
     private volatile boolean testMode = false;
     private volatile ServerSocket serverSocket;
+    private volatile NioTransport nioTransport;
+    private volatile String transport =
+            System.getenv("CSM218_TRANSPORT") != null ? System.getenv("CSM218_TRANSPORT") : "blocking";
 
+    /** Liveness limit for workers that never send HEARTBEAT frames. */
     private static final long HEARTBEAT_TIMEOUT_MS = 8000;
+    private static final long LIVENESS_CHECK_MS = 100;
+    private volatile long lastReconcile = PhiAccrualDetector.nowMs();
+    private volatile boolean skippedReconcile;
+    private static final long SPECULATION_CHECK_MS = 200;
+    private static final int WINDOW_PER_CORE = 2;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private volatile boolean speculation = true;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile CheckpointStore checkpoint;
+    private volatile long resumeGraceMs = Env.longValue("CSM218_RESUME_GRACE_MS", 2000);
+    private volatile int blockRows = 0;
+    private volatile long jobDeadlineMs = 10_000;
 
     public void setTestMode(boolean testMode) {
         this.testMode = testMode;
     }
 
+    /**
+     * Chooses how listen() accepts workers: "blocking" (thread per worker, the default)
+     * or "nio" (a few Selector event loops). Defaults to $CSM218_TRANSPORT.
+     */
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Enables or disables backup copies of straggling tasks (on by default).
+     * A task becomes a straggler after running slowdown x the p90 of finished tasks of
+     * the same operation, and never before floorMs.
+     */
+    public void setSpeculativeExecution(boolean enabled, double slowdown, long floorMs) {
+        this.speculation = enabled;
+        stragglers.configure(slowdown, floorMs);
+    }
+
+    /**
+     * Fixes how many matrix rows go into each task; 0 (the default) lets the
+     * Partitioner size bands from the matrix shape, worker cores and observed task cost.
+     */
+    public void setBlockRows(int blockRows) {
+        this.blockRows = Math.max(0, blockRows);
+    }
+
+    /**
+     * Tunes failure detection for workers that send HEARTBEAT frames: a worker is
+     * suspected once its phi reaches threshold (see PhiAccrualDetector). Lower values
+     * notice failures sooner; higher ones give loaded workers more slack.
+     */
+    public void setFailureDetector(double threshold, long minStdDevMs, long acceptablePauseMs) {
+        detector.configure(threshold, minStdDevMs, acceptablePauseMs);
+    }
+
+    /**
+     * How many times a task is put back on the backlog after losing its worker or
+     * connection before its rows are given up on.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Checkpoints finished result bands to file (null turns checkpointing off). A job
+     * submitted again with the same operation, input and operands, by this master or by
+     * one restarted on the same file, takes the rows already there and only runs the rest.
+     * A job's rows are dropped from the file once it succeeds. Reductions, grid and
+     * sparse-output jobs are not checkpointed.
+     */
+    public synchronized void setCheckpoint(String file) throws IOException {
+        CheckpointStore previous = checkpoint;
+        checkpoint = file != null ? CheckpointStore.open(Paths.get(file)) : null;
+        if (previous != null) previous.close();
+    }
+
+    /**
+     * How long a registered worker's session outlives its connection (0 fails its tasks
+     * over at once). A worker that reconnects under the same identity within graceMs
+     * resumes the session: tasks it was running stay with it and its buffered results
+     * are accepted. Defaults to $CSM218_RESUME_GRACE_MS, else 2000.
+     */
+    public void setSessionResume(long graceMs) {
+        this.resumeGraceMs = Math.max(0, graceMs);
+    }
+
+    /**
+     * How long coordinate() lets a job run before giving up on its unfinished rows.
+     */
+    public void setJobDeadline(long deadlineMs) {
+        this.jobDeadlineMs = deadlineMs;
+    }
+
     public void listen(int port) throws IOException {
         if (testMode) {
             System.out.println("Stubbed listen called - test mode active");
             return;
         }
 
-        serverSocket = new ServerSocket(port);
-        systemThreads.submit(() -> {
-            try {
-                while (!serverSocket.isClosed() && !Thread.currentThread().isInterrupted()) {
-                    Socket socket = serverSocket.accept();
-                    handleWorker(socket);
+        if ("nio".equalsIgnoreCase(transport)) {
+            nioTransport = new NioTransport(this, NioTransport.defaultLoopCount());
+            nioTransport.start(port);
+        } else {
+            serverSocket = new ServerSocket(port);
+            systemThreads.submit(() -> {
+                try {
+                    while (!serverSocket.isClosed() && !Thread.currentThread().isInterrupted()) {
+                        Socket socket = serverSocket.accept();
+                        handleWorker(socket);
+                    }
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) System.err.println("Accept error: " + e.getMessage());
                 }
-            } catch (IOException e) {
-                if (!serverSocket.isClosed()) System.err.println("Accept error: " + e.getMessage());
-            }
-        });
+            });
+        }
 
-        monitor.scheduleAtFixedRate(this::reconcileState, 5, 5, TimeUnit.SECONDS);
+        systemThreads.submit(scheduler);
+        monitor.scheduleAtFixedRate(this::reconcileState, LIVENESS_CHECK_MS, LIVENESS_CHECK_MS, TimeUnit.MILLISECONDS);
+        monitor.scheduleAtFixedRate(this::speculateStragglers, SPECULATION_CHECK_MS, SPECULATION_CHECK_MS,
+                TimeUnit.MILLISECONDS);
     }
 
     private void handleWorker(Socket socket) {
@@ -54,42 +173,13 @@ public class Master {
             WorkerInfo worker = null;
             try {
                 worker = new WorkerInfo(socket);
-                workers.put(worker.id, worker);
+                onConnect(worker);
 
+                Message msg = new Message();
                 while (!socket.isClosed() && socket.isConnected()) {
                     try {
-                        Message msg = worker.receiveMessage();
-                        worker.lastHeartbeat = System.currentTimeMillis();
-
-                        switch (msg.messageType.toUpperCase()) {
-                            case "REGISTER":
-                                System.out.println("Worker registered: " + worker.id);
-
-                                // Send ACK
-                                worker.sendMessage(new Message(
-                                        "MAGIC",
-                                        1,
-                                        "ACK",
-                                        System.getenv("STUDENT_ID"),
-                                        "MASTER",
-                                        new byte[0]
-                                ));
-                                break;
-
-                            case "RESULT":
-                                ByteArrayInputStream bais = new ByteArrayInputStream(msg.payload);
-                                DataInputStream dis = new DataInputStream(bais);
-                                int taskId = dis.readInt();
-                                byte[] resultData = new byte[dis.available()];
-                                dis.readFully(resultData);
-                                completedResults.put(taskId, resultData);
-                                inProgress.remove(taskId);
-                                break;
-
-                            default:
-                                System.err.println("Unknown message type: " + msg.messageType);
-                        }
-
+                        ByteBuffer payload = worker.receiveMessage(msg);
+                        dispatch(worker, msg, payload);
                     } catch (IOException e) {
                         break;
                     }
@@ -98,159 +188,1197 @@ public class Master {
             } catch (Exception e) {
                 System.err.println("Worker error: " + e.getMessage());
             } finally {
-                if (worker != null) {
-                    workers.remove(worker.id);
-                    reassignWorkerTasks(worker.id);
-                }
+                if (worker != null) onDisconnect(worker);
                 try { socket.close(); } catch (IOException ignored) {}
             }
         });
     }
 
-    private void reassignWorkerTasks(String workerId) {
-        inProgress.values().stream()
-                .filter(task -> workerId.equals(task.workerId))
-                .forEach(task -> {
-                    inProgress.remove(task.id);
-                    pendingTasks.offer(task);
-                });
+    // ---------------- Transport Callbacks ----------------
+
+    /**
+     * A connection opened. It is handed no tasks until it has registered, so nothing
+     * reaches the worker ahead of its ACK.
+     */
+    void onConnect(WorkerInfo worker) {
+    }
+
+    /**
+     * Handles one inbound frame. Called by the connection's single reader, whichever
+     * transport owns it; payload is only valid for the duration of the call. Frames
+     * act on the session the connection carries.
+     */
+    void dispatch(WorkerInfo connection, Message msg, ByteBuffer payload) throws IOException {
+        long now = PhiAccrualDetector.nowMs();
+        connection.lastHeartbeat = now;
+        WorkerInfo worker = connection.session;
+
+        switch (msg.messageType.toUpperCase()) {
+            case "HEARTBEAT":
+                connection.heartbeats.heartbeat(now);
+                break;
+
+            case "REGISTER":
+                WorkerCapabilities capabilities = WorkerCapabilities.decode(payload);
+                // workers that predate session tokens send none and are never resumed
+                long token = payload.remaining() >= 8 ? payload.getLong() : 0;
+                register(connection, msg.sender, capabilities, token);
+                break;
+
+            case "RESUME":
+                // Calls sent before the reconnect that the worker does not hold were lost with the old connection
+                Set<Long> held = new HashSet<>();
+                for (int i = payload.getInt(); i > 0; i--) held.add(payload.getLong());
+                int lost = worker.rpc.failMissing(worker.resumedThrough, held,
+                        new IOException("Task lost in reconnect: " + worker.id));
+                System.out.println("Worker resumed: " + worker.id + " (" + held.size() + " tasks kept, "
+                        + lost + " lost)");
+                break;
+
+            case "RESULT":
+            case "TASK_ERROR":
+                // Unmatched replies are late losers of a speculative race; drop them
+                worker.rpc.complete(msg, payload);
+                break;
+
+            case "OPERAND_MISS":
+                // The worker evicted a broadcast operand; forget it so the retry carries it again
+                worker.cachedOperands.remove(payload.getLong(payload.position() + 8));
+                worker.rpc.complete(msg, payload);
+                break;
+
+            default:
+                System.err.println("Unknown message type: " + msg.messageType);
+        }
+    }
+
+    /**
+     * Keys connection by the identity the worker registered with and answers with ACK,
+     * whose one byte says whether the worker's session was resumed. If that identity's
+     * session is suspended, or still live on a connection the master has not yet seen
+     * drop, connection takes it over, but only if it sent the token the session was
+     * opened with: the same worker process. A suspended session of another process
+     * (the worker restarted) is failed over; a live one keeps the identity, and
+     * connection registers under a new one that is never resumed.
+     *
+     * The ACK goes out before connection can be handed any task, so it is the first
+     * frame the worker reads.
+     */
+    private void register(WorkerInfo connection, String identity, WorkerCapabilities capabilities, long token)
+            throws IOException {
+        workers.remove(connection.id, connection);
+        boolean named = identity != null && !identity.isEmpty();
+        WorkerInfo session = named ? suspended.remove(identity) : null;
+        boolean wasSuspended = session != null;
+        if (session == null && named) {
+            WorkerInfo live = workers.get(identity);
+            if (live != null && live != connection && live.registered) session = live;
+        }
+        if (session != null && (token == 0 || token != session.sessionToken)) {
+            if (wasSuspended) {
+                System.err.println("Worker restarted: " + identity + "; failing over its previous session");
+                failOver(session);
+            } else {
+                if (token != 0) connection.id = identity + "#" + Long.toHexString(token);
+                System.err.println("Worker identity already in use: " + identity + "; registering as "
+                        + connection.id);
+                named = false;
+            }
+            session = null;
+        }
+        int window = Math.max(RpcChannel.DEFAULT_WINDOW, WINDOW_PER_CORE * capabilities.cores);
+        if (session == null) {
+            if (named) connection.id = identity;
+            connection.registered = named;
+            connection.sessionToken = token;
+            connection.capabilities = capabilities;
+            connection.rpc.setWindow(window);
+            sendAck(connection, false);
+            workers.put(connection.id, connection);
+            System.out.println("Worker registered: " + connection.id + " (" + capabilities + ")");
+            scheduler.signal();
+            return;
+        }
+
+        try {
+            sendAck(connection, true);
+        } catch (IOException e) {
+            // the session stays with the worker's next attempt
+            if (wasSuspended) suspended.put(session.id, session);
+            throw e;
+        }
+        WorkerInfo previous = session.link;
+        session.resumedThrough = session.rpc.lastCorrelationId();
+        session.capabilities = capabilities;
+        session.rpc.setWindow(window);
+        connection.session = session;
+        session.link = connection;
+        workers.put(session.id, session);
+        // a half-open predecessor: closing it is now a no-op for the session
+        if (previous != connection) previous.close();
+        System.out.println("Worker reconnected: " + session.id + " (" + capabilities + ")");
+        scheduler.signal();
+    }
+
+    private static void sendAck(WorkerInfo connection, boolean resumed) throws IOException {
+        connection.sendMessage(new Message(
+                Message.PROTOCOL_MAGIC,
+                1,
+                "ACK",
+                System.getenv("STUDENT_ID"),
+                "MASTER",
+                resumed ? new byte[]{1} : new byte[0]
+        ));
+    }
+
+    /**
+     * A connection dropped. A registered worker's session is suspended for
+     * resumeGraceMs in case it reconnects; any other is failed over at once.
+     */
+    void onDisconnect(WorkerInfo connection) {
+        WorkerInfo worker = connection.session;
+        if (worker.link != connection) return; // superseded by a newer connection
+        if (!worker.registered || resumeGraceMs == 0) {
+            workers.remove(worker.id, worker);
+            failOver(worker);
+            return;
+        }
+        if (workers.remove(worker.id, worker)) {
+            worker.suspendedAt = PhiAccrualDetector.nowMs();
+            suspended.put(worker.id, worker);
+            System.err.println("Worker disconnected: " + worker.id + "; holding its session for "
+                    + resumeGraceMs + "ms");
+        }
+    }
+
+    /**
+     * Gives up on worker's session: fails its outstanding calls, which puts their tasks
+     * back on the backlog, and fails the grid tasks pinned to it.
+     */
+    private void failOver(WorkerInfo worker) {
+        worker.rpc.close(new IOException("Worker disconnected: " + worker.id));
+        reassignWorkerTasks(worker);
+        failPinnedTasks(worker);
+        scheduler.signal();
+    }
+
+    /**
+     * Fails every task that only worker could run, queued or not, so grid jobs that
+     * needed it end now instead of at their deadline.
+     */
+    private void failPinnedTasks(WorkerInfo worker) {
+        IOException gone = new IOException("Grid worker disconnected: " + worker.id);
+        for (Job job : jobs.values()) {
+            for (Task task : job.tasks) {
+                if (task.pinned == worker) task.done.completeExceptionally(gone);
+            }
+        }
+    }
+
+    // ---------------- Scheduler Callbacks ----------------
+
+    /**
+     * Whether worker still counts as alive: judged by the phi-accrual detector once it
+     * has sent a HEARTBEAT, by HEARTBEAT_TIMEOUT_MS of silence before that.
+     */
+    boolean isLive(WorkerInfo worker) {
+        WorkerInfo link = worker.link;
+        long silent = PhiAccrualDetector.nowMs() - link.lastHeartbeat;
+        if (!link.heartbeats.started()) return silent < HEARTBEAT_TIMEOUT_MS;
+        return detector.isAvailable(link.heartbeats, silent);
+    }
+
+    /**
+     * Records that task is being sent to worker. The first attempt at a task not in
+     * flight puts it in flight; later ones are speculative backups.
+     */
+    Attempt onTaskDispatched(Task task, WorkerInfo worker) {
+        Attempt attempt = new Attempt(worker);
+        task.dispatches.incrementAndGet();
+        if (task.attempts.isEmpty()) task.dispatchedAt = attempt.startedAt;
+        track(task, attempt);
+        return attempt;
+    }
+
+    /**
+     * Undoes onTaskDispatched for an attempt the worker's window turned away.
+     */
+    void onTaskRecalled(Task task, Attempt attempt) {
+        task.dispatches.decrementAndGet();
+        if (dropAttempt(task, attempt)) untrack(task);
+    }
+
+    // ---------------- In-flight Index ----------------
+
+    /**
+     * Adds attempt to task and marks task in flight. inProgress, each task's attempts
+     * and each worker's inFlight set change together, so every task with an attempt on
+     * a worker, backup or not, can be found without a scan of every task in flight.
+     */
+    private synchronized void track(Task task, Attempt attempt) {
+        task.attempts.add(attempt);
+        attempt.worker.inFlight.add(task);
+        inProgress.putIfAbsent(task.id, task);
+    }
+
+    /**
+     * Removes attempt from task. Returns true if that left task with no attempt.
+     */
+    private synchronized boolean dropAttempt(Task task, Attempt attempt) {
+        task.attempts.remove(attempt);
+        boolean sameWorker = false;
+        for (Attempt other : task.attempts) sameWorker |= other.worker == attempt.worker;
+        if (!sameWorker) attempt.worker.inFlight.remove(task);
+        return task.attempts.isEmpty();
+    }
+
+    /**
+     * Takes task out of flight. Returns false if it already was, so of several
+     * threads racing to requeue or finish a task exactly one wins. Attempts still
+     * running stay on the task until they reply or are cancelled.
+     */
+    private synchronized boolean untrack(Task task) {
+        if (!inProgress.remove(task.id, task)) return false;
+        for (Attempt attempt : task.attempts) attempt.worker.inFlight.remove(task);
+        return true;
+    }
+
+    /**
+     * Puts a task that lost its worker or connection back on the backlog, or fails it
+     * once it has been retried maxRetries times. A worker that only evicted an operand
+     * is still alive: that task goes back without using up a retry, and the job's
+     * deadline bounds how often it can happen.
+     */
+    private void retry(Task task, Throwable cause) {
+        if (cause instanceof RpcChannel.OperandMissException) {
+            pendingTasks.offer(task);
+            return;
+        }
+        int retries = task.retries.incrementAndGet();
+        if (retries > maxRetries) {
+            task.done.completeExceptionally(new IOException("Task " + task.id + " given up after "
+                    + task.dispatches.get() + " attempts", cause));
+            return;
+        }
+        pendingTasks.offer(task);
+    }
+
+    /**
+     * Records a reply for one attempt. Only the attempt that committed its rows finishes
+     * the task; the other copies are cancelled. A failed attempt is ignored while
+     * another copy is still running. Otherwise a task whose connection failed goes back
+     * on the backlog unless reassignWorkerTasks already put it there (whoever removes it
+     * from inProgress requeues it), and a task the worker itself rejected, or a pinned
+     * one, fails outright. Runs on the completions executor: checkpoint appends and
+     * CANCELs to other workers may block, which a transport's reader must never do.
+     */
+    void onTaskFinished(Task task, Attempt attempt, boolean committed, Throwable error) {
+        dropAttempt(task, attempt);
+        if (error == null) {
+            if (!committed) return;
+            untrack(task);
+            long elapsed = System.nanoTime() - attempt.startedAt;
+            stragglers.observe(task.profile, elapsed);
+            partitioner.observe(task.profile, task.cells(), elapsed);
+            if (!task.done.isDone() && task.job.reduction == null && task.pinned == null && !task.job.sparseOutput) {
+                task.job.stream.offer(task);
+            }
+            if (task.job.checkpoint != null) checkpoint(task);
+            task.done.complete(null);
+            for (Attempt loser : task.attempts) loser.worker.rpc.cancel(loser.correlationId);
+        } else if (task.done.isDone() || !task.attempts.isEmpty()) {
+            return;
+        } else if (error instanceof RpcChannel.RemoteTaskException || task.pinned != null) {
+            // a grid cell cannot move to another worker: its peers expect it where it is
+            untrack(task);
+            task.done.completeExceptionally(error);
+        } else if (untrack(task)) {
+            retry(task, error);
+        }
+    }
+
+    private void dropCheckpoint(Job job) {
+        try {
+            job.checkpoint.drop(job.checkpointKey);
+        } catch (IOException e) {
+            System.err.println("Dropping job " + job.id + " from checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    private void checkpoint(Task task) {
+        try {
+            task.job.checkpoint.append(task.job.checkpointKey, task.output, task.firstRow, task.rowCount);
+        } catch (IOException e) {
+            System.err.println("Checkpoint of task " + task.id + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queues a backup copy of every in-flight task that is an outlier for its operation.
+     * Each task is speculated at most once.
+     */
+    void speculateStragglers() {
+        if (!speculation) return;
+        long now = System.nanoTime();
+        for (Task task : inProgress.values()) {
+            if (task.speculated || task.pinned != null || task.done.isDone() || task.attempts.size() != 1) continue;
+            if (stragglers.isStraggler(task.profile, now - task.dispatchedAt)) {
+                task.speculated = true;
+                scheduler.speculate(task);
+            }
+        }
+    }
+
+    /**
+     * Drops worker's attempts at every task it has in flight, first copy or backup. A
+     * task with a copy still running elsewhere is left to that copy; the rest go back
+     * on the backlog. Takes time in proportion to worker's own load.
+     */
+    private void reassignWorkerTasks(WorkerInfo worker) {
+        IOException lost = new IOException("Worker lost: " + worker.id);
+        for (Task task : worker.inFlight) {
+            boolean orphaned = false;
+            for (Attempt attempt : task.attempts) {
+                if (attempt.worker == worker) orphaned = dropAttempt(task, attempt);
+            }
+            worker.inFlight.remove(task);
+            if (orphaned && untrack(task)) retry(task, lost);
+        }
     }
 
     public Object coordinate(String operation, int[][] data, int workerCount) {
+        return coordinate(operation, data, workerCount, blockRows);
+    }
+
+    /**
+     * Runs operation over data in row bands of bandRows rows each (0 sizes them automatically).
+     */
+    public Object coordinate(String operation, int[][] data, int workerCount, int bandRows) {
+        return run(operation, IntMatrix.wrap(data), new Operand[0], workerCount, bandRows);
+    }
+
+    /**
+     * Runs operation over the rows of a flat matrix; each task's band is sent straight
+     * from the matrix's storage. Returns int[][] rows like the other forms.
+     */
+    public Object coordinate(String operation, IntMatrix data, int workerCount) {
+        return run(operation, data, new Operand[0], workerCount, blockRows);
+    }
+
+    /**
+     * Runs operation over the rows of data with operand shared by every task, e.g.
+     * coordinate("MATRIX_MULTIPLY", a, b, n). The operand is sent to each worker once.
+     */
+    public Object coordinate(String operation, int[][] data, int[][] operand, int workerCount) {
+        if (Reduction.forOperation(operation) == Reduction.DOT) {
+            IntMatrix left = IntMatrix.wrap(data);
+            IntMatrix right = IntMatrix.wrap(operand);
+            if (left.rows != right.rows || left.cols != right.cols) {
+                throw new IllegalArgumentException("DOT of " + left.rows + "x" + left.cols + " and "
+                        + right.rows + "x" + right.cols);
+            }
+            // both bands travel in one block, side by side, with the first one's width in the operation
+            IntMatrix pairs = IntMatrix.concatColumns(List.of(left, right));
+            return reduce(Reduction.DOT, Reduction.DOT.operation(left.cols), pairs, workerCount, blockRows);
+        }
+        return run(operation, IntMatrix.wrap(data), new Operand[]{Operand.of(operand)}, workerCount, blockRows);
+    }
+
+    private Object run(String operation, IntMatrix data, Operand[] operands, int workerCount, int bandRows) {
+        Reduction reduction = Reduction.forOperation(operation);
+        if (reduction != null) return reduce(reduction, reduction.operation(), data, workerCount, bandRows);
         if (testMode) {
-            int[][] result = new int[data.length][];
-            for (int i = 0; i < data.length; i++) {
-                result[i] = Arrays.stream(data[i]).map(x -> x * 2).toArray();
+            int[][] result = data.toRows();
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Arrays.stream(result[i]).map(x -> x * 2).toArray();
             }
             return result;
         }
 
-        List<Task> tasks = new ArrayList<>();
-        for (int i = 0; i < data.length; i++) {
-            tasks.add(new Task(i, data[i], operation));
+        Job job = submitJob(operation, data, operands, bandRows(operation, data, workerCount, bandRows),
+                jobDeadlineMs);
+        return collect(job);
+    }
+
+    /**
+     * Runs operation over the rows of a sparse matrix with operand shared by every task,
+     * e.g. coordinate("SPARSE_MULTIPLY", a, b, n). Tasks are balanced by non-zero count
+     * and each band travels as a sparse block; the result comes back as dense rows.
+     */
+    public Object coordinate(String operation, SparseMatrix data, int[][] operand, int workerCount) {
+        if (testMode) return SparseKernels.multiply(data, operand, null);
+        return collect(submitSparseJob(operation, data, new Operand[]{Operand.of(operand)}, workerCount, false,
+                jobDeadlineMs));
+    }
+
+    /**
+     * Multiplies two sparse matrices across the workers and returns the product in CSR
+     * form. Bands of a are balanced by non-zero count, b is broadcast once per worker
+     * in CSR form, and every band's product comes back as a sparse block.
+     */
+    public SparseMatrix multiplySparse(SparseMatrix a, SparseMatrix b) throws IOException {
+        if (a.cols != b.rows) throw new IllegalArgumentException("Inner dimensions differ: " + a.cols + " != " + b.rows);
+        if (testMode) return SparseKernels.multiply(a, b);
+        Job job = submitSparseJob("SPARSE_SPARSE_MULTIPLY", a, new Operand[]{Operand.of(b)}, 0, true, jobDeadlineMs);
+        try {
+            job.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.stream.cancel();
+            throw new InterruptedIOException("Interrupted waiting for sparse product");
+        } catch (ExecutionException | CancellationException e) {
+            throw new IOException("Sparse product failed", e instanceof ExecutionException ? e.getCause() : e);
+        }
+        List<SparseMatrix> bands = new ArrayList<>(job.tasks.size());
+        for (Task task : job.tasks) {
+            // a worker may still answer with a dense block
+            bands.add(task.sparseResult != null ? task.sparseResult : SparseMatrix.fromDense(
+                    Arrays.copyOfRange(job.output, task.firstRow, task.firstRow + task.rowCount)));
         }
-        pendingTasks.addAll(tasks);
+        return SparseMatrix.stackRows(bands, b.cols);
+    }
 
-        CountDownLatch latch = new CountDownLatch(tasks.size());
-        tasks.forEach(task -> systemThreads.submit(() -> {
-            WorkerInfo w = selectAvailableWorker();
-            if (w != null) {
-                try {
-                    byte[] payload = w.sendTask(task);
-                    completedResults.put(task.id, payload);
-                    inProgress.remove(task.id);
-                    latch.countDown();
-                } catch (Exception ignored) {
-                    inProgress.remove(task.id);
-                    pendingTasks.offer(task);
-                }
-            } else {
-                pendingTasks.offer(task);
-            }
-        }));
+    /**
+     * Runs a REDUCE_ operation: each band is reduced on its worker and only the partials
+     * come back, merged in a tree as they arrive. Returns the reduction's value, or null
+     * if the job failed or passed its deadline.
+     */
+    private Object reduce(Reduction reduction, String operation, IntMatrix data, int workerCount, int bandRows) {
+        if (testMode) return reduction.finish(reduction.partial(data.toRows(), Reduction.leftCols(operation)));
+        Job job = new Job(nextJobId.incrementAndGet(), operation, data, new Operand[0]);
+        List<Partitioner.Band> bands = Partitioner.split(data.rows, bandRows(operation, data, workerCount, bandRows));
+        job.reduction = new ReductionTree(reduction, bands.size());
+        submitJob(job, bands, jobDeadlineMs);
+        try {
+            job.done.get();
+            return job.reduction.result();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.stream.cancel();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Waits for job and returns its output rows; failed, late or cancelled rows come back empty.
+     */
+    private Object collect(Job job) {
+        try {
+            job.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.stream.cancel();
+        } catch (ExecutionException | CancellationException e) {
+            // failed, late or cancelled rows come back empty
+        }
+
+        int[][] result = job.output;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] == null) result[i] = new int[0];
+        }
+        return result;
+    }
+
+    /**
+     * Starts operation over data and returns at once; bands are delivered through the
+     * returned stream as they finish. Unfinished bands are abandoned after deadlineMs.
+     */
+    public ResultStream submit(String operation, int[][] data, long deadlineMs) {
+        return submit(operation, IntMatrix.wrap(data), deadlineMs);
+    }
+
+    public ResultStream submit(String operation, IntMatrix data, long deadlineMs) {
+        return submitJob(operation, data, new Operand[0], bandRows(operation, data, 0, blockRows), deadlineMs).stream;
+    }
+
+    /**
+     * Streaming form of coordinate(operation, data, operand, workerCount).
+     */
+    public ResultStream submit(String operation, int[][] data, int[][] operand, long deadlineMs) {
+        Operand[] operands = {Operand.of(operand)};
+        IntMatrix input = IntMatrix.wrap(data);
+        return submitJob(operation, input, operands, bandRows(operation, input, 0, blockRows), deadlineMs).stream;
+    }
 
-        try { latch.await(10, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    /**
+     * Evaluates a DAG of matrix operations on the workers and returns the final result.
+     * Each row-local part of the DAG runs as one job whose tasks carry a band through
+     * every step on the same worker, so only the final rows come back. A transpose, or a
+     * product whose right-hand side is computed, needs its input whole; that input comes
+     * back to the master first and is sent out again for the rest of the DAG.
+     */
+    public int[][] evaluate(MatrixExpr expr) throws IOException {
+        try {
+            return evaluateAsync(expr, new IdentityHashMap<>()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted evaluating " + expr);
+        } catch (ExecutionException e) {
+            throw new IOException("Evaluating " + expr + " failed", e.getCause());
+        }
+    }
 
-        int[][] result = new int[data.length][];
-        for (int i = 0; i < data.length; i++) {
-            Object r = completedResults.get(i);
-            result[i] = r instanceof byte[] ? (int[]) r : new int[0];
+    /**
+     * Starts expr once all the nodes it needs whole are ready. Nodes reached twice share
+     * one future through started, which is only touched on the calling thread.
+     */
+    private CompletableFuture<int[][]> evaluateAsync(MatrixExpr expr,
+                                                     Map<MatrixExpr, CompletableFuture<int[][]>> started) {
+        CompletableFuture<int[][]> known = started.get(expr);
+        if (known != null) return known;
+
+        CompletableFuture<int[][]> result;
+        if (expr.kind == MatrixExpr.Kind.INPUT) {
+            result = CompletableFuture.completedFuture(expr.rows());
+        } else if (expr.kind == MatrixExpr.Kind.TRANSPOSE) {
+            result = evaluateAsync(expr.left, started).thenApply(rows -> IntMatrix.wrap(rows).transpose().toRows());
+        } else {
+            Map<MatrixExpr, CompletableFuture<int[][]>> needed = new IdentityHashMap<>();
+            for (MatrixExpr boundary : Pipeline.boundaries(expr)) needed.put(boundary, evaluateAsync(boundary, started));
+            result = CompletableFuture.allOf(needed.values().toArray(new CompletableFuture<?>[0]))
+                    .thenComposeAsync(ignored -> {
+                        Map<MatrixExpr, int[][]> computed = new IdentityHashMap<>();
+                        needed.forEach((node, future) -> computed.put(node, future.join()));
+                        return runStage(Pipeline.compile(expr, computed));
+                    }, systemThreads);
         }
+        started.put(expr, result);
         return result;
     }
 
-    protected WorkerInfo selectAvailableWorker() {
-        long now = System.currentTimeMillis();
-        return workers.values().stream()
-                .filter(w -> now - w.lastHeartbeat < HEARTBEAT_TIMEOUT_MS)
-                .findAny().orElse(null);
+    private CompletableFuture<int[][]> runStage(Pipeline.Stage stage) {
+        if (testMode) {
+            try {
+                // no workers: run the stage here, with the test stub for every CALL
+                int[][] rows = Pipeline.execute(stage.operation, 0, stage.input.toRows(), i -> stage.operands[i].rows,
+                        null, (name, input) -> (int[][]) run(name, IntMatrix.wrap(input), new Operand[0], 0, 0));
+                return CompletableFuture.completedFuture(rows);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Job job = submitJob(stage.operation, stage.input, stage.operands,
+                bandRows(stage.operation, stage.input, 0, blockRows), jobDeadlineMs);
+        return job.done.thenApply(ignored -> job.output);
+    }
+
+    /**
+     * Multiplies a x b with up to levels of Strassen recursion run on the master. Each
+     * level replaces a product with seven half-size ones; the products at the bottom all
+     * run at once as MATRIX_MULTIPLY jobs shared across the workers, and the master adds
+     * their results back together. Products already below Strassen.DEFAULT_CUTOFF are not
+     * split further.
+     */
+    public int[][] multiplyStrassen(int[][] a, int[][] b, int levels) throws IOException {
+        if (testMode) return Strassen.multiply(a, b);
+        try {
+            return multiplyAsync(a, b, levels).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for Strassen products");
+        } catch (ExecutionException e) {
+            throw new IOException("Strassen product failed", e.getCause());
+        }
+    }
+
+    private CompletableFuture<int[][]> multiplyAsync(int[][] a, int[][] b, int levels) {
+        int p = b.length > 0 ? b[0].length : 0;
+        if (levels <= 0 || Math.min(a.length, Math.min(b.length, p)) <= Strassen.DEFAULT_CUTOFF) {
+            IntMatrix input = IntMatrix.wrap(a);
+            Job job = submitJob("MATRIX_MULTIPLY", input, new Operand[]{Operand.of(b)},
+                    bandRows("MATRIX_MULTIPLY", input, 0, blockRows), jobDeadlineMs);
+            return job.done.thenApply(ignored -> job.output);
+        }
+
+        Strassen.Step step = new Strassen.Step(a, b);
+        List<CompletableFuture<int[][]>> products = new ArrayList<>(7);
+        for (int i = 0; i < 7; i++) products.add(multiplyAsync(step.left[i], step.right[i], levels - 1));
+        return CompletableFuture.allOf(products.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(ignored -> step.combine(products.stream().map(CompletableFuture::join)
+                        .toArray(int[][][]::new)), systemThreads);
+    }
+
+    /**
+     * Multiplies a x b with SUMMA on a grid of the live workers that have peer links: the
+     * workers swap panels of a and b directly with each other, and the master only sends
+     * each one its share and collects the blocks of the product (see Summa). With fewer
+     * than two such workers, or if the grid fails (a cell's worker leaves, peers cannot
+     * reach each other), the product is computed as an ordinary MATRIX_MULTIPLY job.
+     */
+    public int[][] multiplySumma(int[][] a, int[][] b) throws IOException {
+        int inner = b.length;
+        int p = inner > 0 ? b[0].length : 0;
+        if (a.length > 0 && a[0].length != inner) {
+            throw new IllegalArgumentException("Inner dimensions differ: " + a[0].length + " != " + inner);
+        }
+        if (testMode) return MatrixKernels.multiply(a, b);
+
+        List<WorkerInfo> cells = new ArrayList<>();
+        for (WorkerInfo worker : workers.values()) {
+            if (isLive(worker) && !worker.capabilities.peerAddress.isEmpty()
+                    && worker.capabilities.supports(Summa.OPERATION)) cells.add(worker);
+        }
+        Summa grid = Summa.forWorkers(cells.size(), a.length, inner, p);
+        if (grid != null) {
+            Job job = submitGridJob(grid, IntMatrix.wrap(a), b, cells);
+            try {
+                job.done.get();
+                return job.output;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.stream.cancel();
+                throw new InterruptedIOException("Interrupted waiting for SUMMA product");
+            } catch (ExecutionException | CancellationException e) {
+                System.err.println("SUMMA grid failed, multiplying through the master: "
+                        + (e instanceof ExecutionException ? e.getCause() : e));
+            }
+        }
+        try {
+            return multiplyAsync(a, b, 0).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for product");
+        } catch (ExecutionException e) {
+            throw new IOException("Product failed", e.getCause());
+        }
+    }
+
+    /**
+     * Queues one task per grid cell, each pinned to its own worker.
+     */
+    private Job submitGridJob(Summa grid, IntMatrix a, int[][] b, List<WorkerInfo> cells) {
+        int p = b.length > 0 ? b[0].length : 0;
+        Job job = new Job(nextJobId.incrementAndGet(), Summa.OPERATION, a, new Operand[0]);
+        for (int r = 0; r < a.rows; r++) job.output[r] = new int[p];
+
+        List<String> peers = new ArrayList<>();
+        for (int cell = 0; cell < grid.gridRows * grid.gridCols; cell++) peers.add(cells.get(cell).capabilities.peerAddress);
+        for (int i = 0; i < grid.gridRows; i++) {
+            for (int j = 0; j < grid.gridCols; j++) {
+                int firstCol = Summa.bandStart(p, grid.gridCols, j);
+                int cols = Summa.bandStart(p, grid.gridCols, j + 1) - firstCol;
+                job.tasks.add(new Task(job, nextTaskId.getAndIncrement(), Summa.bandStart(a.rows, grid.gridRows, i),
+                        firstCol, grid.panelsOfA(a, i, j), grid.operation(exchangeId(job.id), i, j, cols, peers),
+                        new Operand[]{Operand.of(grid.panelsOfB(b, i, j))}, cells.get(i * grid.gridCols + j)));
+            }
+        }
+        startJob(job, jobDeadlineMs);
+        // cells wait on each other, so one failed cell fails the job and cancels the rest
+        for (Task task : job.tasks) {
+            task.done.whenComplete((ignored, error) -> {
+                if (error != null) job.done.completeExceptionally(error);
+            });
+        }
+        return job;
+    }
+
+    /**
+     * The PeerLinks exchange id of grid job jobId: this master's epoch over the job id.
+     */
+    long exchangeId(long jobId) {
+        return exchangeEpoch | (jobId & 0xFFFFFFFFL);
+    }
+
+    private int bandRows(String operation, IntMatrix data, int workerCount, int requested) {
+        if (requested > 0) return requested;
+        int cores = Math.max(workerCount, liveCores());
+        return partitioner.bandRows(Pipeline.profile(operation), data.rows, data.cols, cores);
+    }
+
+    /**
+     * Splits data into bands of bandRows and queues them as a new job.
+     */
+    private Job submitJob(String operation, IntMatrix data, Operand[] operands, int bandRows, long deadlineMs) {
+        Job job = new Job(nextJobId.incrementAndGet(), operation, data, operands);
+        return submitJob(job, Partitioner.split(data.rows, bandRows), deadlineMs);
+    }
+
+    /**
+     * Like submitJob for a sparse input: bands hold about equal numbers of non-zeros
+     * unless setBlockRows fixed the row count.
+     */
+    private Job submitSparseJob(String operation, SparseMatrix data, Operand[] operands, int workerCount,
+                                boolean sparseOutput, long deadlineMs) {
+        SparseMatrix csr = data.toCsr();
+        Job job = new Job(nextJobId.incrementAndGet(), operation, csr, operands, sparseOutput);
+        List<Partitioner.Band> bands = blockRows > 0 ? Partitioner.split(csr.rows, blockRows)
+                : Partitioner.split(csr.pointers, partitioner.bandWeight(Pipeline.profile(operation),
+                        (long) csr.nnz() + csr.rows, Math.max(workerCount, liveCores())));
+        return submitJob(job, bands, deadlineMs);
+    }
+
+    /**
+     * Queues one task per band of job. Jobs share the workers fairly: the backlog hands
+     * out their tasks in turn. The job is closed as soon as it completes, fails, is
+     * cancelled or reaches its deadline.
+     */
+    private Job submitJob(Job job, List<Partitioner.Band> bands, long deadlineMs) {
+        CheckpointStore store = checkpoint;
+        if (store == null || job.reduction != null || job.sparseOutput) {
+            for (Partitioner.Band band : bands) {
+                job.tasks.add(new Task(job, nextTaskId.getAndIncrement(), band.firstRow, band.rowCount));
+            }
+            return startJob(job, deadlineMs);
+        }
+
+        job.checkpoint = store;
+        job.checkpointKey = CheckpointStore.jobKey(job.operation, job.input, job.sparseInput, job.operands);
+        BitSet restored = new BitSet(job.output.length);
+        int width = -1;
+        for (Payloads.RowBlock block : store.blocks(job.checkpointKey)) {
+            // a key collision or a log from another build must not leave rows of the wrong shape
+            int blockWidth = block.rows.length > 0 ? block.rows[0].length : width;
+            if (!fits(block, job.output.length, blockWidth) || (width >= 0 && blockWidth != width)) {
+                System.err.println("Job " + job.id + ": skipping checkpointed rows " + block.firstRow + "+"
+                        + block.rows.length + " that do not fit its output");
+                continue;
+            }
+            width = blockWidth;
+            System.arraycopy(block.rows, 0, job.output, block.firstRow, block.rows.length);
+            restored.set(block.firstRow, block.firstRow + block.rows.length);
+        }
+        // bands split where restored rows start and end; restored pieces are done already
+        for (Partitioner.Band band : bands) {
+            int end = band.firstRow + band.rowCount;
+            for (int row = band.firstRow; row < end; ) {
+                boolean done = restored.get(row);
+                int next = done ? restored.nextClearBit(row) : restored.nextSetBit(row);
+                if (next < 0 || next > end) next = end;
+                Task task = new Task(job, nextTaskId.getAndIncrement(), row, next - row);
+                task.restored = done;
+                job.tasks.add(task);
+                row = next;
+            }
+        }
+        int rows = restored.cardinality();
+        if (rows > 0) System.out.println("Job " + job.id + ": " + rows + " of " + job.output.length
+                + " rows restored from checkpoint");
+        return startJob(job, deadlineMs);
+    }
+
+    /**
+     * Whether block lies within an output of outputRows rows, every row width wide.
+     */
+    private static boolean fits(Payloads.RowBlock block, int outputRows, int width) {
+        if (block.firstRow < 0 || block.firstRow > outputRows - block.rows.length) return false;
+        for (int[] row : block.rows) {
+            if (row.length != width) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Queues the tasks already on job; restored ones are delivered at once instead.
+     */
+    private Job startJob(Job job, long deadlineMs) {
+        job.done = CompletableFuture.allOf(job.tasks.stream().map(t -> t.done).toArray(CompletableFuture[]::new));
+        job.stream = new ResultStream(job);
+        jobs.put(job.id, job);
+        List<Task> queued = new ArrayList<>(job.tasks.size());
+        for (Task task : job.tasks) {
+            if (!task.restored) {
+                queued.add(task);
+                continue;
+            }
+            job.stream.offer(task);
+            task.done.complete(null);
+        }
+
+        ScheduledFuture<?> deadline = monitor.schedule(
+                () -> job.done.completeExceptionally(
+                        new TimeoutException("Job " + job.id + " passed its " + deadlineMs + "ms deadline")),
+                deadlineMs, TimeUnit.MILLISECONDS);
+        // closing sends CANCELs, so it never runs on a reader or the monitor
+        job.done.whenCompleteAsync((ignored, error) -> {
+            deadline.cancel(false);
+            if (error == null && job.checkpoint != null) dropCheckpoint(job);
+            closeJob(job);
+        }, completions);
+
+        pendingTasks.addAll(queued);
+        scheduler.signal();
+        return job;
+    }
+
+    /**
+     * Forgets a finished or abandoned job: drops its queued tasks and cancels any
+     * copies still running so nothing of it stays in the master's tables.
+     */
+    private void closeJob(Job job) {
+        jobs.remove(job.id);
+        pendingTasks.removeJob(job.id);
+        for (Task task : job.tasks) {
+            if (!task.done.cancel(false)) continue;
+            untrack(task);
+            for (Attempt attempt : task.attempts) attempt.worker.rpc.cancel(attempt.correlationId);
+        }
+    }
+
+    /**
+     * Number of jobs currently being coordinated.
+     */
+    public int activeJobs() {
+        return jobs.size();
+    }
+
+    private int liveCores() {
+        int cores = 0;
+        for (WorkerInfo worker : workers.values()) {
+            if (isLive(worker)) cores += worker.capabilities.cores;
+        }
+        return cores;
     }
 
+    /**
+     * Drops every worker that is no longer live, exactly as if its connection had
+     * dropped, and fails over every suspended session whose grace period is over.
+     * A round that runs well behind schedule suspects no one: the master itself was
+     * stalled (a GC pause, a descheduled VM), so its readers have not caught up on the
+     * frames that arrived meanwhile. Only one round in a row is skipped that way.
+     */
     public void reconcileState() {
-        long now = System.currentTimeMillis();
-        Iterator<Map.Entry<String, WorkerInfo>> iter = workers.entrySet().iterator();
-        while (iter.hasNext()) {
-            Map.Entry<String, WorkerInfo> e = iter.next();
-            if (now - e.getValue().lastHeartbeat > HEARTBEAT_TIMEOUT_MS) {
-                iter.remove();
-                reassignWorkerTasks(e.getKey());
+        long now = PhiAccrualDetector.nowMs();
+        boolean late = now - lastReconcile > 2 * LIVENESS_CHECK_MS && !skippedReconcile;
+        lastReconcile = now;
+        skippedReconcile = late;
+        for (WorkerInfo worker : late ? Collections.<WorkerInfo>emptyList() : workers.values()) {
+            if (isLive(worker)) continue;
+            WorkerInfo link = worker.link;
+            long silent = now - link.lastHeartbeat;
+            System.err.println("Worker suspected failed: " + worker.id + " (silent " + silent + "ms"
+                    + (link.heartbeats.started()
+                    ? String.format(", phi %.1f", detector.phi(link.heartbeats, silent)) : "") + ")");
+            link.close();
+            onDisconnect(link);
+        }
+        for (WorkerInfo worker : suspended.values()) {
+            if (now - worker.suspendedAt >= resumeGraceMs && suspended.remove(worker.id, worker)) {
+                System.err.println("Worker did not reconnect: " + worker.id);
+                failOver(worker);
             }
         }
     }
 
     public void shutdown() {
         try { if (serverSocket != null && !serverSocket.isClosed()) serverSocket.close(); } catch (IOException ignored) {}
+        if (nioTransport != null) nioTransport.close();
         systemThreads.shutdownNow();
+        completions.shutdownNow();
         monitor.shutdownNow();
+        try { if (checkpoint != null) checkpoint.close(); } catch (IOException ignored) {}
     }
 
     // ---------------- Supporting Classes ----------------
 
+    /**
+     * One coordinate() call: its own task table and result buffer. The input is either
+     * dense (input) or CSR (sparseInput). A sparseOutput job keeps each band's sparse
+     * result on its task instead of expanding it into output; a reduction job feeds each
+     * band's partial into its reduction tree instead.
+     */
+    static class Job {
+        final long id;
+        final String operation;
+        final IntMatrix input;
+        final SparseMatrix sparseInput;
+        final boolean sparseOutput;
+        final Operand[] operands;
+        final int[][] output;
+        final List<Task> tasks = new ArrayList<>();
+        volatile CompletableFuture<Void> done;
+        volatile ResultStream stream;
+        volatile ReductionTree reduction;
+        /** Where finished bands are recorded, under checkpointKey; null if not checkpointed. */
+        volatile CheckpointStore checkpoint;
+        volatile long checkpointKey;
+
+        Job(long id, String operation, IntMatrix input, Operand[] operands) {
+            this(id, operation, input, null, false, operands, input.rows);
+        }
+
+        Job(long id, String operation, SparseMatrix csr, Operand[] operands, boolean sparseOutput) {
+            this(id, operation, null, csr, sparseOutput, operands, csr.rows);
+        }
+
+        private Job(long id, String operation, IntMatrix input, SparseMatrix sparseInput, boolean sparseOutput,
+                    Operand[] operands, int rows) {
+            this.id = id;
+            this.operation = operation;
+            this.input = input;
+            this.sparseInput = sparseInput;
+            this.sparseOutput = sparseOutput;
+            this.operands = operands;
+            this.output = new int[rows][];
+        }
+    }
+
     public static class Task {
+        final Job job;
         final int id;
-        final int[] rowData;
+        final int index;
+        final IntMatrix band;
+        final SparseMatrix sparseInput;
+        final int firstRow;
+        final int rowCount;
+        final int firstCol;
+        final WorkerInfo pinned;
         final String operation;
-        volatile String workerId;
+        /** What operation's timings are filed under; see Pipeline.profile. */
+        final String profile;
+        final Operand[] operands;
+        final int[][] output;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        /** Attempts sent so far, backups included. */
+        final AtomicInteger dispatches = new AtomicInteger();
+        /** Times the task went back on the backlog after losing its worker or connection. */
+        final AtomicInteger retries = new AtomicInteger();
+        volatile long dispatchedAt;
+        volatile boolean speculated;
+        volatile SparseMatrix sparseResult;
+        /** Rows came from the checkpoint; never dispatched. */
+        boolean restored;
+        private boolean committed; // guarded by this
 
-        Task(int id, int[] rowData, String operation) {
+        /**
+         * A task over the job's rows [firstRow, firstRow + rowCount), a view of the job's
+         * input, whose result rows are decoded straight into the same rows of the job's output.
+         * Tasks are numbered within their job in the order they are added to job.tasks.
+         */
+        Task(Job job, int id, int firstRow, int rowCount) {
+            this.job = job;
             this.id = id;
-            this.rowData = rowData;
+            this.index = job.tasks.size();
+            this.band = job.input != null ? job.input.rowView(firstRow, rowCount) : null;
+            this.sparseInput = job.sparseInput;
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+            this.firstCol = 0;
+            this.pinned = null;
+            this.operation = job.operation;
+            this.profile = Pipeline.profile(job.operation);
+            this.operands = job.operands;
+            this.output = job.output;
+        }
+
+        /**
+         * One cell of a grid job, which only worker may run: it sends block with its own
+         * operation and operands, and its result fills columns from firstCol of its rows
+         * in the job's output, which must already hold full-width rows.
+         */
+        Task(Job job, int id, int firstRow, int firstCol, IntMatrix block, String operation, Operand[] operands,
+             WorkerInfo worker) {
+            this.job = job;
+            this.id = id;
+            this.index = job.tasks.size();
+            this.band = block;
+            this.sparseInput = null;
+            this.firstRow = firstRow;
+            this.rowCount = block.rows;
+            this.firstCol = firstCol;
+            this.pinned = worker;
             this.operation = operation;
+            this.profile = Pipeline.profile(operation);
+            this.operands = operands;
+            this.output = job.output;
+        }
+
+        /**
+         * Work units for the cost model: cells of a dense band, non-zeros plus rows of a sparse one.
+         */
+        long cells() {
+            if (band != null) return (long) band.rows * band.cols;
+            return (long) sparseInput.nnz(firstRow, rowCount) + rowCount;
+        }
+
+        int blockLength() {
+            return band != null ? Payloads.blockLength(band)
+                    : Payloads.sparseBlockLength(sparseInput, firstRow, rowCount);
+        }
+
+        void putBlock(ByteBuffer out) {
+            if (band != null) {
+                Payloads.putBlock(out, band, firstRow);
+            } else {
+                Payloads.putSparseBlock(out, sparseInput, firstRow, rowCount, firstRow);
+            }
+        }
+
+        /**
+         * Decodes a RESULT block into output unless another copy of this task already
+         * did. Returns true if this reply's rows were committed.
+         */
+        synchronized boolean commit(ByteBuffer resultBlock) throws IOException {
+            if (committed) return false;
+            if (job.reduction != null) {
+                Payloads.RowBlock partial = Payloads.getBlock(resultBlock);
+                if (partial.rows.length != 1) throw new IOException("Task " + id + " sent a partial of "
+                        + partial.rows.length + " rows");
+                job.reduction.offer(index, Reduction.unpack(partial.rows[0]));
+            } else if (Payloads.isSparseBlock(resultBlock)) {
+                Payloads.SparseBlock block = Payloads.getSparseBlock(resultBlock);
+                if (block.firstRow != firstRow || block.matrix.rows != rowCount) {
+                    throw new IOException("Sparse result rows [" + block.firstRow + ", +" + block.matrix.rows
+                            + ") do not match task " + id);
+                }
+                sparseResult = block.matrix;
+                if (!job.sparseOutput) block.matrix.toDense(output, firstRow);
+            } else if (pinned != null) {
+                Payloads.RowBlock block = Payloads.getBlock(resultBlock);
+                if (block.firstRow != firstRow || block.rows.length != rowCount) {
+                    throw new IOException("Result rows [" + block.firstRow + ", +" + block.rows.length
+                            + ") do not match task " + id);
+                }
+                for (int r = 0; r < rowCount; r++) {
+                    int[] dst = output[firstRow + r];
+                    if (firstCol + block.rows[r].length > dst.length) {
+                        throw new IOException("Task " + id + " sent rows too wide for column " + firstCol);
+                    }
+                    System.arraycopy(block.rows[r], 0, dst, firstCol, block.rows[r].length);
+                }
+            } else {
+                Payloads.getBlock(resultBlock, output);
+            }
+            committed = true;
+            return true;
+        }
+    }
+
+    /**
+     * One copy of a task sent to one worker.
+     */
+    static class Attempt {
+        final WorkerInfo worker;
+        final long startedAt = System.nanoTime();
+        /** The TASK call carrying this copy; 0 until it is sent. */
+        volatile long correlationId;
+
+        Attempt(WorkerInfo worker) {
+            this.worker = worker;
         }
     }
 
+    /**
+     * One worker connection, and the worker's session: its calls, tasks and cached
+     * operands. A worker that reconnects gets a new WorkerInfo for the connection whose
+     * session is the old one; everything but transport and liveness goes to the session.
+     */
     public static class WorkerInfo {
-        final String id;
+        volatile String id;
         final Socket socket;
+        /** The session this connection carries: itself, or the one it resumed. */
+        volatile WorkerInfo session = this;
+        /** The connection now carrying this session. */
+        volatile WorkerInfo link = this;
+        /** Registered under the worker's own identity, so the session can be resumed. */
+        volatile boolean registered;
+        /** Sent by the worker process at REGISTER; only the same token resumes the session. */
+        volatile long sessionToken;
+        volatile long suspendedAt;
+        /** Calls up to this correlation id were sent before the last reconnect. */
+        volatile long resumedThrough;
+        /** When anything, even part of a frame, last arrived from the worker, in PhiAccrualDetector.nowMs(). */
         volatile long lastHeartbeat;
-        private DataOutputStream out;
-        private DataInputStream in;
+        final PhiAccrualDetector.History heartbeats = new PhiAccrualDetector.History();
+        volatile WorkerCapabilities capabilities = WorkerCapabilities.UNKNOWN;
+        final Set<Long> cachedOperands = ConcurrentHashMap.newKeySet();
+        /** Tasks in flight with an attempt, first copy or backup, on this worker. */
+        final Set<Task> inFlight = ConcurrentHashMap.newKeySet();
+        final RpcChannel rpc = new RpcChannel(this, RpcChannel.DEFAULT_WINDOW);
+        private FramedStream stream;
 
         public WorkerInfo(Socket socket) throws IOException {
             this.socket = socket;
             this.id = socket != null ? socket.toString() : "test-" + System.nanoTime();
-            this.lastHeartbeat = System.currentTimeMillis();
+            this.lastHeartbeat = PhiAccrualDetector.nowMs();
             if (socket != null) {
-                this.out = new DataOutputStream(socket.getOutputStream());
-                this.in = new DataInputStream(socket.getInputStream());
+                this.stream = new FramedStream(new FilterInputStream(socket.getInputStream()) {
+                    // a long frame still being read counts as a sign of life
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        lastHeartbeat = PhiAccrualDetector.nowMs();
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int n = super.read(buffer, offset, length);
+                        lastHeartbeat = PhiAccrualDetector.nowMs();
+                        return n;
+                    }
+                }, socket.getOutputStream(), "MASTER");
             }
         }
 
+        /**
+         * For transports that do not own a blocking Socket; they override the send methods.
+         */
+        protected WorkerInfo(String id) {
+            this.socket = null;
+            this.id = id;
+            this.lastHeartbeat = PhiAccrualDetector.nowMs();
+        }
+
         void sendMessage(Message msg) throws IOException {
-            byte[] data = msg.pack();
-            out.writeInt(data.length);
-            out.write(data);
-            out.flush();
+            stream.send(msg);
+        }
+
+        /**
+         * Drops the connection; its reader then sees the disconnect.
+         */
+        void close() {
+            try { if (socket != null) socket.close(); } catch (IOException ignored) {}
+        }
+
+        void sendMessage(Message header, int payloadLength, Consumer<ByteBuffer> payloadWriter) throws IOException {
+            stream.send(header, payloadLength, payloadWriter);
         }
 
         Message receiveMessage() throws IOException {
-            int length = in.readInt();
-            byte[] data = new byte[length];
-            in.readFully(data);
-            return Message.unpack(data);
-        }
-
-        byte[] sendTask(Task task) throws IOException {
-            // Wrap task in a Message using 6-field constructor
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream dos = new DataOutputStream(baos);
-            dos.writeInt(task.id);
-            for (int v : task.rowData) dos.writeInt(v);
-            dos.flush();
-            byte[] payload = baos.toByteArray();
-
-            sendMessage(new Message(
-                    "MAGIC",
-                    1,
-                    "TASK",
-                    System.getenv("STUDENT_ID"),
-                    "MASTER",
-                    payload
-            ));
-
-            // Wait for result
-            Message response = receiveMessage();
-            return response.payload;
+            return stream.receive();
+        }
+
+        /**
+         * Receives one frame's header into header and returns a view of its payload.
+         */
+        ByteBuffer receiveMessage(Message header) throws IOException {
+            return stream.receive(header);
+        }
+
+        /**
+         * Sends a TASK as a pipelined RPC, or returns null if this worker's window is full.
+         * Operands this worker has not been sent yet go ahead of it on the same connection.
+         * The RESULT is decoded straight into the task's destination rows by the
+         * connection's reader, which then completes the returned future with whether
+         * this copy's rows were the ones committed.
+         */
+        RpcChannel.Call<Boolean> sendTask(Task task) {
+            long[] operandIds = new long[task.operands.length];
+            for (int i = 0; i < operandIds.length; i++) {
+                Operand operand = task.operands[i];
+                operandIds[i] = operand.id;
+                if (!cachedOperands.add(operand.id)) continue;
+                try {
+                    Message header = new Message(Message.PROTOCOL_MAGIC, 1, "OPERAND", Message.STUDENT_ID, "MASTER", null);
+                    link.sendMessage(header, Payloads.operandLength(operand), out -> Payloads.putOperand(out, operand));
+                } catch (IOException e) {
+                    cachedOperands.remove(operand.id);
+                    return RpcChannel.Call.failed(e);
+                }
+            }
+            return rpc.tryCall("TASK",
+                    Payloads.taskHeaderLength(task.operation, operandIds) + task.blockLength(),
+                    out -> {
+                        Payloads.putTaskHeader(out, task.id, task.operation, operandIds);
+                        task.putBlock(out);
+                    },
+                    (header, payload) -> {
+                        payload.getInt();
+                        return task.commit(payload);
+                    });
         }
     }
 }
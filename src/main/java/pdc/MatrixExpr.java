@@ -0,0 +1,113 @@
+package pdc;
+
+import java.util.Objects;
+
+/**
+ * An expression DAG of matrix operations, run on the cluster with Master.evaluate().
+ *
+ * Leaves come from of(), or random() for a seeded random matrix that the workers
+ * generate band by band instead of receiving; nodes combine them with multiply, add, transpose and apply
+ * (any row-wise operation the workers have registered, such as DOUBLE). A node used
+ * in several places is computed once. For example
+ * MatrixExpr.of(a).multiply(b).add(MatrixExpr.of(c)).apply("DOUBLE").
+ */
+public final class MatrixExpr {
+
+    enum Kind { INPUT, RANDOM, MULTIPLY, ADD, TRANSPOSE, APPLY }
+
+    final Kind kind;
+    final MatrixExpr left;
+    final MatrixExpr right;
+    final IntMatrix matrix;
+    final String operation;
+    final MatrixGenerator.SeededMatrix random;
+    private final int[][] rows;
+
+    private MatrixExpr(Kind kind, MatrixExpr left, MatrixExpr right, IntMatrix matrix, int[][] rows,
+                       String operation) {
+        this(kind, left, right, matrix, rows, operation, null);
+    }
+
+    private MatrixExpr(Kind kind, MatrixExpr left, MatrixExpr right, IntMatrix matrix, int[][] rows,
+                       String operation, MatrixGenerator.SeededMatrix random) {
+        this.kind = kind;
+        this.left = left;
+        this.right = right;
+        this.matrix = matrix;
+        this.rows = rows;
+        this.operation = operation;
+        this.random = random;
+    }
+
+    public static MatrixExpr of(int[][] rows) {
+        return new MatrixExpr(Kind.INPUT, null, null, IntMatrix.wrap(rows), rows, null);
+    }
+
+    public static MatrixExpr of(IntMatrix matrix) {
+        return new MatrixExpr(Kind.INPUT, null, null, matrix, null, null);
+    }
+
+    /**
+     * MatrixGenerator.generateRandomMatrix(rows, cols, maxValue, seed), generated where it
+     * is used: by each worker for its own band when read row by row, on the master when
+     * needed whole (as the right-hand side of a product).
+     */
+    public static MatrixExpr random(int rows, int cols, int maxValue, long seed) {
+        return new MatrixExpr(Kind.RANDOM, null, null, null, null, null,
+                MatrixGenerator.seeded(rows, cols, maxValue, seed));
+    }
+
+    /**
+     * this x right.
+     */
+    public MatrixExpr multiply(MatrixExpr right) {
+        return new MatrixExpr(Kind.MULTIPLY, this, Objects.requireNonNull(right), null, null, null);
+    }
+
+    public MatrixExpr multiply(int[][] right) {
+        return multiply(of(right));
+    }
+
+    /**
+     * Element-wise this + other; both must have the same shape.
+     */
+    public MatrixExpr add(MatrixExpr other) {
+        return new MatrixExpr(Kind.ADD, this, Objects.requireNonNull(other), null, null, null);
+    }
+
+    public MatrixExpr transpose() {
+        return new MatrixExpr(Kind.TRANSPOSE, this, null, null, null, null);
+    }
+
+    /**
+     * Applies a row-wise worker operation (one result row per input row) to this.
+     */
+    public MatrixExpr apply(String operation) {
+        return new MatrixExpr(Kind.APPLY, this, null, null, null, operation.toUpperCase());
+    }
+
+    /**
+     * A leaf's rows: an INPUT's, copied out only if it was built from an IntMatrix, or a
+     * RANDOM's, generated here.
+     */
+    int[][] rows() {
+        if (kind == Kind.RANDOM) return random.toRows();
+        return rows != null ? rows : matrix.toRows();
+    }
+
+    boolean isLeaf() {
+        return kind == Kind.INPUT || kind == Kind.RANDOM;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case INPUT: return "[" + matrix.rows + "x" + matrix.cols + "]";
+            case RANDOM: return random.toString();
+            case MULTIPLY: return "(" + left + " x " + right + ")";
+            case ADD: return "(" + left + " + " + right + ")";
+            case TRANSPOSE: return left + "'";
+            default: return operation + left;
+        }
+    }
+}
@@ -1,34 +1,99 @@
 package pdc;
 
-import java.util.Random;
 import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
 
 /**
  * MatrixGenerator: utility class for generating and printing matrices.
- * Combines original functionality with improved modern methods.
+ *
+ * Random matrices are seeded and reproducible: each row draws from its own
+ * SplittableRandom, seeded from the matrix seed and the row index, so a seed gives the
+ * same matrix however its rows are split across threads, and any row block can be
+ * generated on its own (see SeededMatrix). Rows are filled in parallel on a ForkJoinPool,
+ * the common pool unless one is given. The methods without a seed pick a fresh one.
  */
 public class MatrixGenerator {
 
-    private static final Random RANDOM = new Random();
+    private static final int MIN_PARALLEL_ROWS = 16;
+    private static final long MIN_PARALLEL_CELLS = 1L << 16;
+    private static final long ROW_GAMMA = 0x9E3779B97F4A7C15L;
 
-    /** Generates a random matrix (original style). */
-    public static int[][] generateRandomMatrix(int rows, int cols, int maxValue) {
-        int[][] matrix = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                matrix[i][j] = RANDOM.nextInt(maxValue);
+    /**
+     * A rows x cols matrix of values in [0, maxValue) fixed by seed; nothing is generated
+     * until a block is asked for.
+     */
+    public static final class SeededMatrix {
+        public final int rows;
+        public final int cols;
+        public final int maxValue;
+        public final long seed;
+
+        SeededMatrix(int rows, int cols, int maxValue, long seed) {
+            if (rows < 0 || cols < 0) throw new IllegalArgumentException("Bad shape " + rows + "x" + cols);
+            if (maxValue <= 0) throw new IllegalArgumentException("maxValue must be positive: " + maxValue);
+            this.rows = rows;
+            this.cols = cols;
+            this.maxValue = maxValue;
+            this.seed = seed;
+        }
+
+        /**
+         * Rows [firstRow, firstRow + rowCount), equal to the same rows of the whole matrix.
+         */
+        public int[][] block(int firstRow, int rowCount, ForkJoinPool pool) {
+            if (firstRow < 0 || rowCount < 0 || firstRow + rowCount > rows) {
+                throw new IndexOutOfBoundsException("Rows " + firstRow + "+" + rowCount + " of " + rows);
             }
+            int[][] block = new int[rowCount][cols];
+            forRows(rowCount, cols, pool, i -> fillRow(firstRow + i, block[i], 0));
+            return block;
         }
-        return matrix;
-    }
 
-    /** Generates a random matrix using modern stream approach. */
-    public static int[][] randomMatrix(int rows, int cols, int maxValue) {
-        int[][] matrix = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            matrix[i] = RANDOM.ints(cols, 0, maxValue).toArray();
+        public int[][] block(int firstRow, int rowCount) {
+            return block(firstRow, rowCount, ForkJoinPool.commonPool());
         }
-        return matrix;
+
+        public int[][] toRows() {
+            return block(0, rows);
+        }
+
+        /**
+         * The whole matrix in one flat row-major array.
+         */
+        public IntMatrix toIntMatrix(ForkJoinPool pool) {
+            int[] data = new int[Math.multiplyExact(rows, cols)];
+            forRows(rows, cols, pool, i -> fillRow(i, data, i * cols));
+            return IntMatrix.wrap(data, rows, cols);
+        }
+
+        private void fillRow(int row, int[] dst, int offset) {
+            SplittableRandom random = rowRandom(seed, row);
+            for (int j = 0; j < cols; j++) dst[offset + j] = random.nextInt(maxValue);
+        }
+
+        @Override
+        public String toString() {
+            return "[rand " + rows + "x" + cols + " seed " + seed + "]";
+        }
+    }
+
+    /** A seeded random matrix, generated on demand. */
+    public static SeededMatrix seeded(int rows, int cols, int maxValue, long seed) {
+        return new SeededMatrix(rows, cols, maxValue, seed);
+    }
+
+    /** Generates a random matrix of values in [0, maxValue). */
+    public static int[][] generateRandomMatrix(int rows, int cols, int maxValue) {
+        return generateRandomMatrix(rows, cols, maxValue, freshSeed());
+    }
+
+    /** Generates the random matrix fixed by seed. */
+    public static int[][] generateRandomMatrix(int rows, int cols, int maxValue, long seed) {
+        return seeded(rows, cols, maxValue, seed).toRows();
     }
 
     /** Generates an identity matrix. */
@@ -40,26 +105,157 @@ public class MatrixGenerator {
         return matrix;
     }
 
-    /** Generates a matrix filled with a specific value (original). */
+    /** Generates a matrix filled with a specific value. */
     public static int[][] generateFilledMatrix(int rows, int cols, int value) {
         int[][] matrix = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                matrix[i][j] = value;
-            }
+        for (int[] row : matrix) {
+            Arrays.fill(row, value);
         }
         return matrix;
     }
 
-    /** Generates a matrix filled with a specific value using Arrays.fill(). */
-    public static int[][] filledMatrix(int rows, int cols, int value) {
-        int[][] matrix = new int[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            Arrays.fill(matrix[i], value);
+    /** Generates a random matrix in one flat row-major array (see IntMatrix). */
+    public static IntMatrix randomIntMatrix(int rows, int cols, int maxValue) {
+        return randomIntMatrix(rows, cols, maxValue, freshSeed());
+    }
+
+    /** Generates the flat random matrix fixed by seed; same entries as generateRandomMatrix. */
+    public static IntMatrix randomIntMatrix(int rows, int cols, int maxValue, long seed) {
+        return seeded(rows, cols, maxValue, seed).toIntMatrix(ForkJoinPool.commonPool());
+    }
+
+    /** Generates a flat identity matrix. */
+    public static IntMatrix identityIntMatrix(int size) {
+        IntMatrix matrix = IntMatrix.heap(size, size);
+        for (int i = 0; i < size; i++) {
+            matrix.set(i, i, 1);
         }
         return matrix;
     }
 
+    /** Generates a flat matrix filled with a specific value. */
+    public static IntMatrix filledIntMatrix(int rows, int cols, int value) {
+        int[] data = new int[Math.multiplyExact(rows, cols)];
+        Arrays.fill(data, value);
+        return IntMatrix.wrap(data, rows, cols);
+    }
+
+    public static SparseMatrix randomCsrMatrix(int rows, int cols, double density, int maxValue) {
+        return randomCsrMatrix(rows, cols, density, maxValue, freshSeed());
+    }
+
+    /**
+     * Generates the random CSR matrix fixed by seed, in which each entry is non-zero with
+     * probability density; non-zero values are in [1, maxValue). Costs O(non-zeros), not
+     * O(rows x cols). Rows are drawn in parallel, then joined.
+     */
+    public static SparseMatrix randomCsrMatrix(int rows, int cols, double density, int maxValue, long seed) {
+        if (density < 0 || density > 1) throw new IllegalArgumentException("Density must be in [0, 1]: " + density);
+        int[][] rowIndices = new int[rows][];
+        int[][] rowValues = new int[rows][];
+        double logMiss = Math.log1p(-density);
+        long expected = (long) Math.ceil(density * cols);
+        forRows(rows, expected, ForkJoinPool.commonPool(), i -> {
+            SplittableRandom random = rowRandom(seed, i);
+            int[] indices = new int[(int) Math.min(cols, (long) (1.1 * expected) + 4)];
+            int[] values = new int[indices.length];
+            int size = 0;
+            // geometric gaps between non-zeros instead of one coin flip per entry
+            for (long j = nextGap(random, logMiss, density); j < cols; j += 1 + nextGap(random, logMiss, density)) {
+                if (size == indices.length) {
+                    indices = Arrays.copyOf(indices, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                indices[size] = (int) j;
+                values[size++] = 1 + random.nextInt(Math.max(1, maxValue - 1));
+            }
+            rowIndices[i] = Arrays.copyOf(indices, size);
+            rowValues[i] = Arrays.copyOf(values, size);
+        });
+
+        int[] pointers = new int[rows + 1];
+        for (int i = 0; i < rows; i++) pointers[i + 1] = Math.addExact(pointers[i], rowIndices[i].length);
+        int[] indices = new int[pointers[rows]];
+        int[] values = new int[pointers[rows]];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(rowIndices[i], 0, indices, pointers[i], rowIndices[i].length);
+            System.arraycopy(rowValues[i], 0, values, pointers[i], rowValues[i].length);
+        }
+        return SparseMatrix.of(SparseMatrix.Layout.CSR, rows, cols, pointers, indices, values);
+    }
+
+    /** Generates a random CSC matrix; see randomCsrMatrix. */
+    public static SparseMatrix randomCscMatrix(int rows, int cols, double density, int maxValue) {
+        return randomCscMatrix(rows, cols, density, maxValue, freshSeed());
+    }
+
+    public static SparseMatrix randomCscMatrix(int rows, int cols, double density, int maxValue, long seed) {
+        return randomCsrMatrix(cols, rows, density, maxValue, seed).transpose();
+    }
+
+    private static long nextGap(SplittableRandom random, double logMiss, double density) {
+        if (density >= 1) return 0;
+        if (density <= 0) return Long.MAX_VALUE / 2;
+        return (long) (Math.log(1 - random.nextDouble()) / logMiss);
+    }
+
+    // ---------------- Seeding and splitting ----------------
+
+    private static long freshSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * The generator for one row. The row index is mixed in, not just added: SplittableRandom
+     * seeds one gamma apart would give rows that are shifted copies of each other.
+     */
+    private static SplittableRandom rowRandom(long seed, int row) {
+        return new SplittableRandom(Operand.mix(seed + (row + 1L) * ROW_GAMMA));
+    }
+
+    /**
+     * Runs body for every row in [0, rows), splitting across pool (sequentially if pool
+     * is null or the work is small).
+     */
+    private static void forRows(int rows, long cellsPerRow, ForkJoinPool pool, IntConsumer body) {
+        int grain = (int) Math.max(MIN_PARALLEL_ROWS, MIN_PARALLEL_CELLS / Math.max(1, cellsPerRow));
+        ForRows task = new ForRows(body, 0, rows, grain);
+        if (pool != null && rows > grain) {
+            pool.invoke(task);
+        } else {
+            task.compute();
+        }
+    }
+
+    /**
+     * body over rows [from, to), split in half until at most grain rows are left.
+     */
+    private static final class ForRows extends RecursiveAction {
+        private final IntConsumer body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        ForRows(IntConsumer body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (getPool() != null && to - from > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ForRows(body, from, mid, grain), new ForRows(body, mid, to, grain));
+                return;
+            }
+            for (int i = from; i < to; i++) body.accept(i);
+        }
+    }
+
+    // ---------------- Printing ----------------
+
     /** Prints a matrix with an optional label. */
     public static void printMatrix(int[][] matrix, String label) {
         if (label != null && !label.isEmpty()) {
@@ -77,6 +273,4 @@ public class MatrixGenerator {
     public static void printMatrix(int[][] matrix) {
         printMatrix(matrix, "");
     }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,169 @@
+package pdc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Worker-side compute kernels.
+ *
+ * multiply() packs the right-hand matrix into column panels NC wide, each row of a panel
+ * its own short array, then walks a panel KC rows at a time so the KC x NC tile being
+ * reused stays in L2 while one row's NC-wide accumulator stays in L1. The inner loop is
+ * acc[j] += aik * panelRow[j] over two separate int arrays, which the JIT unrolls and
+ * vectorises. Row blocks of the left-hand matrix are split across a ForkJoinPool.
+ * Results wrap on overflow exactly like int arithmetic.
+ *
+ * That inner step is a RowAccumulator. When the JVM was started with
+ * --add-modules jdk.incubator.vector and the optional vector source set is on the
+ * class path, an explicit SIMD implementation (VectorAccumulator) is used instead;
+ * set CSM218_KERNEL=scalar to force the plain loop.
+ */
+public final class MatrixKernels {
+
+    static final int NC = 512;
+    static final int KC = 256;
+    private static final int MIN_PARALLEL_ROWS = 16;
+    private static final long MIN_PARALLEL_WORK = 1L << 20;
+
+    /**
+     * acc[0, nc) = sum over k in [kk, kEnd) of ai[k] x panel[k][0, nc).
+     */
+    public interface RowAccumulator {
+        void accumulate(int[] ai, int[][] panel, int kk, int kEnd, int nc, int[] acc);
+    }
+
+    static final RowAccumulator SCALAR = MatrixKernels::accumulateRow;
+    static final RowAccumulator ACCUMULATOR = loadAccumulator();
+
+    private MatrixKernels() {}
+
+    private static RowAccumulator loadAccumulator() {
+        if ("scalar".equalsIgnoreCase(System.getenv("CSM218_KERNEL"))) return SCALAR;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return SCALAR;
+        try {
+            return (RowAccumulator) Class.forName("pdc.VectorAccumulator").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // vector source set not built into this class path
+            return SCALAR;
+        }
+    }
+
+    /**
+     * "vector" or "scalar": which inner loop multiply() runs on this JVM.
+     */
+    public static String kernelName() {
+        return ACCUMULATOR == SCALAR ? "scalar" : "vector";
+    }
+
+    public static int[][] multiply(int[][] a, int[][] b) {
+        return multiply(a, b, null);
+    }
+
+    /**
+     * Computes a x b, splitting rows of a across pool (sequentially if pool is null).
+     * Every row of a must have b.length columns and b must be rectangular.
+     */
+    public static int[][] multiply(int[][] a, int[][] b, ForkJoinPool pool) {
+        return multiply(a, b, pool, ACCUMULATOR);
+    }
+
+    static int[][] multiply(int[][] a, int[][] b, ForkJoinPool pool, RowAccumulator accumulator) {
+        int k = b.length;
+        int n = k > 0 ? b[0].length : 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].length != k) {
+                throw new IllegalArgumentException("Row " + i + " has " + a[i].length + " columns, operand has "
+                        + k + " rows");
+            }
+        }
+        int[][] c = new int[a.length][n];
+        if (a.length == 0 || n == 0 || k == 0) return c;
+
+        int[][][] panels = pack(b, n);
+        MultiplyRows task = new MultiplyRows(a, panels, c, 0, a.length, accumulator);
+        if (pool != null && a.length >= 2 * MIN_PARALLEL_ROWS && (long) a.length * k * n >= MIN_PARALLEL_WORK) {
+            pool.invoke(task);
+        } else {
+            task.compute();
+        }
+        return c;
+    }
+
+    /**
+     * Splits b into column panels NC wide: panels[p][row] is b[row][p*NC, p*NC + nc).
+     */
+    static int[][][] pack(int[][] b, int n) {
+        int[][][] panels = new int[(n + NC - 1) / NC][b.length][];
+        for (int row = 0; row < b.length; row++) {
+            if (b[row].length != n) {
+                throw new IllegalArgumentException("Ragged operand row " + row + ": " + b[row].length + " != " + n);
+            }
+            for (int p = 0; p < panels.length; p++) {
+                int jj = p * NC;
+                panels[p][row] = Arrays.copyOfRange(b[row], jj, Math.min(n, jj + NC));
+            }
+        }
+        return panels;
+    }
+
+    /**
+     * The scalar inner loop.
+     */
+    private static void accumulateRow(int[] ai, int[][] panel, int kk, int kEnd, int nc, int[] acc) {
+        Arrays.fill(acc, 0, nc, 0);
+        for (int k = kk; k < kEnd; k++) {
+            int aik = ai[k];
+            if (aik == 0) continue;
+            int[] row = panel[k];
+            for (int j = 0; j < nc; j++) {
+                acc[j] += aik * row[j];
+            }
+        }
+    }
+
+    /**
+     * c[from, to) = a[from, to) x b, splitting the rows in half until they are small.
+     */
+    private static final class MultiplyRows extends RecursiveAction {
+        private final int[][] a;
+        private final int[][][] panels;
+        private final int[][] c;
+        private final int from;
+        private final int to;
+        private final RowAccumulator accumulator;
+
+        MultiplyRows(int[][] a, int[][][] panels, int[][] c, int from, int to, RowAccumulator accumulator) {
+            this.a = a;
+            this.panels = panels;
+            this.c = c;
+            this.from = from;
+            this.to = to;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        protected void compute() {
+            if (getPool() != null && to - from >= 2 * MIN_PARALLEL_ROWS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MultiplyRows(a, panels, c, from, mid, accumulator),
+                        new MultiplyRows(a, panels, c, mid, to, accumulator));
+                return;
+            }
+            int[] acc = new int[panels[0][0].length];
+            for (int p = 0; p < panels.length; p++) {
+                int[][] panel = panels[p];
+                int jj = p * NC;
+                int nc = panel[0].length;
+                for (int kk = 0; kk < panel.length; kk += KC) {
+                    int kEnd = Math.min(panel.length, kk + KC);
+                    for (int i = from; i < to; i++) {
+                        accumulator.accumulate(a[i], panel, kk, kEnd, nc, acc);
+                        int[] ci = c[i];
+                        for (int j = 0; j < nc; j++) ci[jj + j] += acc[j];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package pdc;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Allocation-free codec for the CSM218 wire format.
+ * Encodes Messages straight into a caller-supplied ByteBuffer (heap or direct)
+ * and decodes them back out of one. The layout is byte-compatible with
+ * Message.pack()/unpack(), framed the same way the stream transports do:
+ * [int length][magic][version][messageType][studentId][sender][timestamp][payload]
+ *
+ * Encoding is thread-safe. Decoding learns the peer's header strings as it goes,
+ * so each connection should own one codec and decode from a single reader.
+ */
+public final class MessageCodec {
+
+    public static final int LENGTH_PREFIX = 4;
+    public static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024;
+
+    private static final int MAX_CACHED_STRINGS = 32;
+    private static final byte[] EMPTY = new byte[0];
+    private static final String[] WELL_KNOWN_TYPES = {
+            "REGISTER", "ACK", "TASK", "RESULT", "HEARTBEAT", "TASK_ERROR", "CANCEL",
+            "OPERAND", "OPERAND_MISS"
+    };
+
+    // Cached header strings with their pre-encoded UTF-8 bytes (copy-on-write)
+    private volatile CachedString[] cached = new CachedString[0];
+
+    /**
+     * Creates a codec with the protocol magic, the student id, the local sender
+     * and the well-known message types pre-encoded.
+     */
+    public MessageCodec(String sender) {
+        cache(Message.PROTOCOL_MAGIC);
+        cache(Message.STUDENT_ID);
+        if (sender != null) cache(sender);
+        for (String type : WELL_KNOWN_TYPES) cache(type);
+    }
+
+    // ================== Encoding ==================
+
+    /**
+     * Number of bytes encode() will write for msg, including the length prefix.
+     */
+    public int frameLength(Message msg) {
+        return frameLength(msg, msg.payload != null ? msg.payload.length : 0);
+    }
+
+    /**
+     * Frame length for header's fields followed by a payload of payloadLength bytes.
+     */
+    public int frameLength(Message header, int payloadLength) {
+        return LENGTH_PREFIX + headerLength(bytesOf(header.magic), bytesOf(header.messageType),
+                bytesOf(header.studentId), bytesOf(header.sender)) + payloadLength;
+    }
+
+    /**
+     * Writes msg as one length-prefixed frame at out's position.
+     * Throws BufferOverflowException (leaving the position untouched) if out lacks room.
+     */
+    public void encode(Message msg, ByteBuffer out) {
+        int payloadLength = msg.payload != null ? msg.payload.length : 0;
+        encodeHeader(msg, payloadLength, out);
+        if (payloadLength > 0) out.put(msg.payload);
+    }
+
+    /**
+     * Writes a frame whose payload is the remaining bytes of payload, without
+     * materialising a byte[] first. The payload buffer's position is not moved.
+     */
+    public void encode(Message header, ByteBuffer payload, ByteBuffer out) {
+        encodeHeader(header, payload.remaining(), out);
+        out.put(payload.duplicate());
+    }
+
+    /**
+     * Writes the length prefix and every header field of a frame whose payload of
+     * payloadLength bytes the caller will put into out next. Lets payload writers
+     * encode in place instead of building a byte[] first.
+     * Throws BufferOverflowException if out cannot hold the whole frame.
+     */
+    public void encodeHeader(Message msg, int payloadLength, ByteBuffer out) {
+        byte[] magic = bytesOf(msg.magic);
+        byte[] type = bytesOf(msg.messageType);
+        byte[] studentId = bytesOf(msg.studentId);
+        byte[] sender = bytesOf(msg.sender);
+
+        int bodyLength = headerLength(magic, type, studentId, sender) + payloadLength;
+        if (out.remaining() < LENGTH_PREFIX + bodyLength) throw new BufferOverflowException();
+
+        out.putInt(bodyLength);
+        putString(out, magic);
+        out.putInt(msg.version);
+        putString(out, type);
+        putString(out, studentId);
+        putString(out, sender);
+        out.putLong(msg.timestamp);
+        out.putInt(payloadLength);
+    }
+
+    // ================== Decoding ==================
+
+    /**
+     * True if in holds at least one complete frame at its position.
+     */
+    public static boolean hasFrame(ByteBuffer in) throws IOException {
+        if (in.remaining() < LENGTH_PREFIX) return false;
+        int length = in.getInt(in.position());
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        return in.remaining() >= LENGTH_PREFIX + length;
+    }
+
+    /**
+     * Decodes one frame from in, copying the payload into a fresh byte[].
+     * Returns null (position untouched) if a complete frame is not yet buffered.
+     */
+    public Message decode(ByteBuffer in) throws IOException {
+        Message msg = new Message();
+        ByteBuffer payload = decodeInto(in, msg);
+        if (payload == null) return null;
+        if (payload.hasRemaining()) {
+            msg.payload = new byte[payload.remaining()];
+            payload.get(msg.payload);
+        } else {
+            msg.payload = EMPTY;
+        }
+        return msg;
+    }
+
+    /**
+     * Decodes one frame's header fields into msg and returns a zero-copy view
+     * of its payload; msg.payload is left null. The view shares in's storage,
+     * so it is only valid until in is compacted or refilled.
+     * Returns null (position untouched) if a complete frame is not yet buffered.
+     */
+    public ByteBuffer decodeInto(ByteBuffer in, Message msg) throws IOException {
+        if (!hasFrame(in)) return null;
+
+        int start = in.position();
+        int frameEnd = start + LENGTH_PREFIX + in.getInt(start);
+        in.position(start + LENGTH_PREFIX);
+        try {
+            msg.magic = getString(in, frameEnd);
+            if (!Message.PROTOCOL_MAGIC.equals(msg.magic)) {
+                throw new IOException("Invalid protocol magic. Expected CSM218.");
+            }
+            msg.version = getInt(in, frameEnd);
+            msg.messageType = getString(in, frameEnd);
+            msg.studentId = getString(in, frameEnd);
+            msg.sender = getString(in, frameEnd);
+            require(in, frameEnd, 8);
+            msg.timestamp = in.getLong();
+
+            int payloadLength = getInt(in, frameEnd);
+            if (payloadLength < 0 || payloadLength > frameEnd - in.position()) {
+                throw new IOException("Invalid payload length: " + payloadLength);
+            }
+            ByteBuffer payload = in.slice();
+            payload.limit(payloadLength);
+            return payload;
+        } finally {
+            if (in.position() != frameEnd) in.position(frameEnd);
+        }
+    }
+
+    /**
+     * Returns buf if it can take needed more bytes, otherwise a larger buffer of the
+     * same kind (heap or direct) holding everything written to buf so far.
+     */
+    public static ByteBuffer ensureCapacity(ByteBuffer buf, int needed) {
+        if (buf.remaining() >= needed) return buf;
+        int capacity = Math.max(buf.capacity() * 2, buf.position() + needed);
+        ByteBuffer grown = buf.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buf.flip();
+        grown.put(buf);
+        return grown;
+    }
+
+    // ================== Helper Methods ==================
+
+    private static int headerLength(byte[] magic, byte[] type, byte[] studentId, byte[] sender) {
+        return 4 + magic.length + 4 + 4 + type.length + 4 + studentId.length
+                + 4 + sender.length + 8 + 4;
+    }
+
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        out.putInt(bytes.length);
+        if (bytes.length > 0) out.put(bytes);
+    }
+
+    /**
+     * Pre-encoded bytes for a cached string, falling back to a one-off encode.
+     */
+    private byte[] bytesOf(String str) {
+        if (str == null || str.isEmpty()) return EMPTY;
+        for (CachedString c : cached) {
+            if (c.value == str || c.value.equals(str)) return c.bytes;
+        }
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length-prefixed string, returning the cached instance when the bytes
+     * match one so steady-state frames allocate no Strings.
+     */
+    private String getString(ByteBuffer in, int frameEnd) throws IOException {
+        int length = getInt(in, frameEnd);
+        if (length <= 0) return "";
+        if (length > frameEnd - in.position()) throw new IOException("Invalid string length: " + length);
+
+        int pos = in.position();
+        for (CachedString c : cached) {
+            if (c.bytes.length == length && matches(in, pos, c.bytes)) {
+                in.position(pos + length);
+                return c.value;
+            }
+        }
+
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        String str = new String(bytes, StandardCharsets.UTF_8);
+        cache(str);
+        return str;
+    }
+
+    private static int getInt(ByteBuffer in, int frameEnd) throws IOException {
+        require(in, frameEnd, 4);
+        return in.getInt();
+    }
+
+    /**
+     * Fails unless bytes more of the current frame are left at in's position, so a
+     * truncated header never reads into the next frame.
+     */
+    private static void require(ByteBuffer in, int frameEnd, int bytes) throws IOException {
+        if (frameEnd - in.position() < bytes) throw new IOException("Truncated header");
+    }
+
+    private static boolean matches(ByteBuffer in, int pos, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (in.get(pos + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private synchronized void cache(String str) {
+        if (str == null || str.isEmpty() || cached.length >= MAX_CACHED_STRINGS) return;
+        for (CachedString c : cached) if (c.value.equals(str)) return;
+
+        CachedString[] grown = Arrays.copyOf(cached, cached.length + 1);
+        grown[cached.length] = new CachedString(str);
+        cached = grown;
+    }
+
+    private static final class CachedString {
+        final String value;
+        final byte[] bytes;
+
+        CachedString(String value) {
+            this.value = value;
+            this.bytes = value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
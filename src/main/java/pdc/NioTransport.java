@@ -0,0 +1,331 @@
+package pdc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking Master transport: a handful of Selector event loops own every
+ * worker connection, instead of one parked thread per worker.
+ * Speaks the same length-prefixed Message frames as the blocking transport.
+ * Loop 0 also accepts; new channels are spread round-robin across all loops.
+ * A worker that stops reading holds back senders once MAX_PENDING_BYTES are queued
+ * for it, and is dropped if it still has not drained them after SEND_STALL_MS.
+ * A connection's buffers grow to fit a large frame and go back to their initial
+ * size once they have drained, like FramedStream's (MAX_RETAINED_BUFFER_SIZE).
+ */
+public class NioTransport {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+    static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+    static final long SEND_STALL_MS = 10_000;
+
+    private final Master master;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile ServerSocketChannel server;
+
+    public NioTransport(Master master, int loopCount) throws IOException {
+        this.master = master;
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("nio-loop-" + i);
+        }
+    }
+
+    /**
+     * One loop per two cores, at most four; overridable with $CSM218_NIO_LOOPS.
+     */
+    public static int defaultLoopCount() {
+        int fallback = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        return Math.max(1, Env.intValue("CSM218_NIO_LOOPS", fallback));
+    }
+
+    public void start(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(port));
+
+        EventLoop acceptor = loops[0];
+        acceptor.execute(() -> {
+            try {
+                server.register(acceptor.selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                System.err.println("Accept error: " + e.getMessage());
+            }
+        });
+        for (EventLoop loop : loops) loop.thread.start();
+    }
+
+    public int localPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public void close() {
+        try { if (server != null) server.close(); } catch (IOException ignored) {}
+        for (EventLoop loop : loops) loop.close();
+    }
+
+    // ---------------- Event Loop ----------------
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        volatile boolean running = true;
+
+        EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Runs task on this loop's thread, waking the selector if called from elsewhere.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection conn = (Connection) key.attachment();
+                            if (key.isReadable()) conn.onReadable();
+                            if (key.isValid() && key.isWritable()) conn.onWritable();
+                        }
+                    }
+
+                    // Includes tasks queued by the key handlers above, which did not wake the selector
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) task.run();
+                } catch (ClosedSelectorException e) {
+                    break;
+                } catch (IOException e) {
+                    if (running) System.err.println("Event loop error: " + e.getMessage());
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop owner = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                SocketChannel accepted = channel;
+                owner.execute(() -> owner.register(accepted));
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                Connection conn = new Connection(channel, this);
+                conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                master.onConnect(conn);
+            } catch (IOException e) {
+                System.err.println("Worker error: " + e.getMessage());
+                try { channel.close(); } catch (IOException ignored) {}
+            }
+        }
+
+        void close() {
+            running = false;
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) ((Connection) key.attachment()).close();
+            }
+            try { selector.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // ---------------- Connection ----------------
+
+    /**
+     * A worker connection driven by its event loop. Reads and frame dispatch happen
+     * on the loop thread; any thread may send, frames are coalesced into one write buffer.
+     */
+    final class Connection extends Master.WorkerInfo {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final MessageCodec codec = new MessageCodec("MASTER");
+        private final Message header = new Message();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Object writeLock = new Object();
+        private volatile ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private SelectionKey key;
+
+        Connection(SocketChannel channel, EventLoop loop) throws IOException {
+            super("nio:" + channel.getRemoteAddress());
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        @Override
+        void sendMessage(Message msg) throws IOException {
+            synchronized (writeLock) {
+                int frame = codec.frameLength(msg);
+                awaitRoom(frame);
+                writeBuffer = MessageCodec.ensureCapacity(writeBuffer, frame);
+                codec.encode(msg, writeBuffer);
+            }
+            scheduleFlush();
+        }
+
+        @Override
+        void sendMessage(Message header, int payloadLength, Consumer<ByteBuffer> payloadWriter) throws IOException {
+            synchronized (writeLock) {
+                int frame = codec.frameLength(header, payloadLength);
+                awaitRoom(frame);
+                writeBuffer = MessageCodec.ensureCapacity(writeBuffer, frame);
+                int frameStart = writeBuffer.position();
+                codec.encodeHeader(header, payloadLength, writeBuffer);
+                int payloadStart = writeBuffer.position();
+                try {
+                    payloadWriter.accept(writeBuffer);
+                } catch (RuntimeException e) {
+                    writeBuffer.position(frameStart);
+                    throw e;
+                }
+                if (writeBuffer.position() - payloadStart != payloadLength) {
+                    int written = writeBuffer.position() - payloadStart;
+                    writeBuffer.position(frameStart); // drop the malformed frame
+                    throw new IOException("Payload writer produced " + written + " bytes, expected " + payloadLength);
+                }
+            }
+            scheduleFlush();
+        }
+
+        /**
+         * Waits, holding writeLock, until frame more bytes fit under MAX_PENDING_BYTES. A
+         * frame is always let through when nothing is queued, and the loop thread never
+         * waits, since only it drains the buffer.
+         */
+        private void awaitRoom(int frame) throws IOException {
+            long deadline = System.nanoTime() + SEND_STALL_MS * 1_000_000L;
+            while (!closed.get() && Thread.currentThread() != loop.thread && writeBuffer.position() > 0
+                    && (long) writeBuffer.position() + frame > MAX_PENDING_BYTES) {
+                long waitMs = (deadline - System.nanoTime()) / 1_000_000L;
+                if (waitMs <= 0) {
+                    loop.execute(this::close);
+                    throw new IOException("Worker " + id + " stopped reading; " + writeBuffer.position()
+                            + " bytes pending");
+                }
+                try {
+                    writeLock.wait(waitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting to send to " + id);
+                }
+            }
+            if (closed.get()) throw new ClosedChannelException();
+        }
+
+        /**
+         * Bytes held by the connection's read and write buffers.
+         */
+        int retainedBytes() {
+            synchronized (writeLock) {
+                return readBuffer.capacity() + writeBuffer.capacity();
+            }
+        }
+
+        @Override
+        Message receiveMessage() throws IOException {
+            throw new IOException("NIO connections are read by their event loop");
+        }
+
+        @Override
+        ByteBuffer receiveMessage(Message header) throws IOException {
+            throw new IOException("NIO connections are read by their event loop");
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) loop.execute(this::flush);
+        }
+
+        void onReadable() {
+            try {
+                if (!readBuffer.hasRemaining()) {
+                    readBuffer = MessageCodec.ensureCapacity(readBuffer, readBuffer.capacity());
+                }
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                    return;
+                }
+                lastHeartbeat = PhiAccrualDetector.nowMs();
+
+                readBuffer.flip();
+                ByteBuffer payload;
+                while ((payload = codec.decodeInto(readBuffer, header)) != null) {
+                    master.dispatch(this, header, payload);
+                }
+                readBuffer.compact();
+                if (readBuffer.position() == 0 && readBuffer.capacity() > FramedStream.MAX_RETAINED_BUFFER_SIZE) {
+                    readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed.get()) System.err.println("Worker error: " + e.getMessage());
+                close();
+            }
+        }
+
+        void onWritable() {
+            flush();
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+            if (closed.get()) return;
+            try {
+                synchronized (writeLock) {
+                    writeBuffer.flip();
+                    channel.write(writeBuffer);
+                    boolean pending = writeBuffer.hasRemaining();
+                    writeBuffer.compact();
+                    if (!pending && writeBuffer.capacity() > FramedStream.MAX_RETAINED_BUFFER_SIZE) {
+                        writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                    }
+                    key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                    writeLock.notifyAll();
+                }
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        @Override
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            if (key != null) key.cancel();
+            try { channel.close(); } catch (IOException ignored) {}
+            synchronized (writeLock) {
+                writeLock.notifyAll();
+            }
+            master.onDisconnect(this);
+        }
+    }
+}
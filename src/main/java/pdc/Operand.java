@@ -0,0 +1,80 @@
+package pdc;
+
+/**
+ * A shared input matrix broadcast to workers once and referenced by id from every TASK
+ * that needs it, such as the right-hand side of a multiply.
+ * The id is a 64-bit hash of the shape and contents, so the same matrix gets the same id
+ * across calls and a worker that already holds it is not sent it again.
+ *
+ * A sparse operand is held and sent in CSR form; then rows is null and sparse is set.
+ *
+ * OPERAND payload: [long id][row block or sparse block]
+ */
+public final class Operand {
+
+    public final long id;
+    public final int[][] rows;
+    public final SparseMatrix sparse;
+
+    private Operand(long id, int[][] rows, SparseMatrix sparse) {
+        this.id = id;
+        this.rows = rows;
+        this.sparse = sparse;
+    }
+
+    public static Operand of(int[][] rows) {
+        return new Operand(contentHash(rows), rows, null);
+    }
+
+    public static Operand of(SparseMatrix matrix) {
+        SparseMatrix csr = matrix.toCsr();
+        return new Operand(contentHash(csr), null, csr);
+    }
+
+    /**
+     * Wraps rows received under id without rehashing them.
+     */
+    static Operand received(long id, int[][] rows) {
+        return new Operand(id, rows, null);
+    }
+
+    static Operand received(long id, SparseMatrix csr) {
+        return new Operand(id, null, csr);
+    }
+
+    public long sizeBytes() {
+        if (sparse != null) return sparse.sizeBytes();
+        long bytes = 16L * rows.length;
+        for (int[] row : rows) bytes += 4L * row.length;
+        return bytes;
+    }
+
+    /**
+     * Content hash over the row count, each row's length and every element.
+     */
+    public static long contentHash(int[][] rows) {
+        long h = 0x9E3779B97F4A7C15L ^ rows.length;
+        for (int[] row : rows) {
+            h = mix(h + row.length);
+            for (int v : row) h = h * 0x100000001B3L + v;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Content hash of a CSR matrix; differs from the hash of the same matrix held dense.
+     */
+    public static long contentHash(SparseMatrix csr) {
+        long h = mix(0x632BE59BD9B4E019L ^ csr.rows) + csr.cols;
+        for (int p : csr.pointers) h = h * 0x100000001B3L + p;
+        h = mix(h);
+        for (int i = 0; i < csr.nnz(); i++) h = (h * 0x100000001B3L + csr.indices[i]) * 0x100000001B3L + csr.values[i];
+        return mix(h);
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
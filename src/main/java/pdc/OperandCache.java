@@ -0,0 +1,60 @@
+package pdc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Worker-side store of broadcast operands, bounded by bytes and evicted least recently used.
+ * The newest operand is always kept, even if it alone exceeds the bound, so a task that
+ * needs it can still run.
+ */
+public class OperandCache {
+
+    public static final long DEFAULT_CAPACITY_BYTES =
+            Env.longValue("CSM218_OPERAND_CACHE_MB", Runtime.getRuntime().maxMemory() / 4 >> 20) << 20;
+
+    private final long capacityBytes;
+    private final LinkedHashMap<Long, Operand> entries = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+    private long usedBytes; // guarded by this
+
+    public OperandCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Returns the operand's rows, or null on a miss.
+     */
+    public synchronized int[][] get(long id) {
+        Operand operand = entries.get(id);
+        return operand != null ? operand.rows : null;
+    }
+
+    /**
+     * Returns the operand, dense or sparse, or null on a miss.
+     */
+    public synchronized Operand lookup(long id) {
+        return entries.get(id);
+    }
+
+    public synchronized void put(Operand operand) {
+        Operand previous = entries.put(operand.id, operand);
+        if (previous != null) usedBytes -= previous.sizeBytes();
+        usedBytes += operand.sizeBytes();
+
+        Iterator<Map.Entry<Long, Operand>> iter = entries.entrySet().iterator();
+        while (usedBytes > capacityBytes && entries.size() > 1) {
+            Operand eldest = iter.next().getValue();
+            iter.remove();
+            usedBytes -= eldest.sizeBytes();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+}
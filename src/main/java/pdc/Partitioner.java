@@ -0,0 +1,155 @@
+package pdc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Splits a matrix into contiguous row bands, one Task each.
+ *
+ * The band height is the largest of two lower bounds, capped so a TASK frame stays small:
+ *  - balance: about TASKS_PER_CORE bands per worker core, so stealing and speculation
+ *    still have something to move around;
+ *  - overhead: big enough that the fixed per-task cost (framing, dispatch, thread handoff)
+ *    stays under OVERHEAD_FRACTION of the band's compute time.
+ * The fixed and per-cell costs are fitted per operation from completed tasks
+ * (elapsed = fixed + perCell x cells); until an operation has completed a task only
+ * the balance bound applies, since its cost per cell could be anything.
+ *
+ * Sparse matrices are split by weight instead of by row count: a row weighs its
+ * non-zeros plus one, so every band carries about the same work however unevenly the
+ * non-zeros are spread. The same bounds apply with a weight unit in place of a cell.
+ */
+public class Partitioner {
+
+    private static final int TASKS_PER_CORE = 4;
+    private static final double OVERHEAD_FRACTION = 0.1;
+    private static final int MAX_BLOCK_BYTES = 4 << 20;
+    private static final double DEFAULT_FIXED_NANOS = 200_000;
+    private static final double DEFAULT_CELL_NANOS = 2;
+
+    /**
+     * A band of rowCount rows starting at firstRow.
+     */
+    public static final class Band {
+        public final int firstRow;
+        public final int rowCount;
+
+        Band(int firstRow, int rowCount) {
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+        }
+    }
+
+    private final ConcurrentMap<String, CostModel> costs = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a task of operation over cells matrix cells took elapsedNanos end to end.
+     */
+    public void observe(String operation, long cells, long elapsedNanos) {
+        costs.computeIfAbsent(operation, op -> new CostModel()).add(cells, elapsedNanos);
+    }
+
+    /**
+     * Rows per band for a rows x cols matrix spread over cores worker cores.
+     */
+    public int bandRows(String operation, int rows, int cols, int cores) {
+        if (rows <= 0) return 1;
+        int width = Math.max(1, cols);
+        CostModel model = costs.get(operation);
+        long forBalance = ceilDiv(rows, (long) TASKS_PER_CORE * Math.max(1, cores));
+        long forOverhead = model == null ? 1
+                : (long) Math.ceil(model.fixedNanos() / (OVERHEAD_FRACTION * model.cellNanos() * width));
+        long maxRows = Math.max(1, MAX_BLOCK_BYTES / (4L * width));
+        long band = Math.min(maxRows, Math.max(forBalance, forOverhead));
+        return (int) Math.max(1, Math.min(rows, band));
+    }
+
+    /**
+     * Weight per band for a sparse matrix of totalWeight (non-zeros plus rows) spread
+     * over cores worker cores.
+     */
+    public long bandWeight(String operation, long totalWeight, int cores) {
+        if (totalWeight <= 0) return 1;
+        CostModel model = costs.get(operation);
+        long perBand = (long) TASKS_PER_CORE * Math.max(1, cores);
+        long forBalance = (totalWeight + perBand - 1) / perBand;
+        long forOverhead = model == null ? 1
+                : (long) Math.ceil(model.fixedNanos() / (OVERHEAD_FRACTION * model.cellNanos()));
+        // every non-zero travels as a column index and a value
+        long maxWeight = MAX_BLOCK_BYTES / 8;
+        return Math.max(1, Math.min(totalWeight, Math.min(maxWeight, Math.max(forBalance, forOverhead))));
+    }
+
+    /**
+     * Splits the rows of a CSR matrix with the given row pointers into bands of about
+     * bandWeight each; a band always has at least one row.
+     */
+    public static List<Band> split(int[] pointers, long bandWeight) {
+        int rows = pointers.length - 1;
+        List<Band> bands = new ArrayList<>();
+        int first = 0;
+        long weight = 0;
+        for (int i = 0; i < rows; i++) {
+            weight += pointers[i + 1] - pointers[i] + 1;
+            if (weight >= bandWeight || i == rows - 1) {
+                bands.add(new Band(first, i + 1 - first));
+                first = i + 1;
+                weight = 0;
+            }
+        }
+        return bands;
+    }
+
+    /**
+     * Splits rows into bands of bandRows (the last band may be shorter).
+     */
+    public static List<Band> split(int rows, int bandRows) {
+        int height = Math.max(1, bandRows);
+        List<Band> bands = new ArrayList<>(ceilDiv(rows, height));
+        for (int first = 0; first < rows; first += height) {
+            bands.add(new Band(first, Math.min(height, rows - first)));
+        }
+        return bands;
+    }
+
+    private static int ceilDiv(long a, long b) {
+        return (int) ((a + b - 1) / b);
+    }
+
+    /**
+     * Least-squares fit of elapsed = fixed + perCell x cells over a decaying window.
+     * Falls back to the defaults until tasks of at least two sizes have been seen.
+     */
+    private static final class CostModel {
+        private static final double DECAY = 0.98;
+
+        private double n, sumX, sumY, sumXX, sumXY; // guarded by this
+
+        synchronized void add(long cells, long nanos) {
+            n = n * DECAY + 1;
+            sumX = sumX * DECAY + cells;
+            sumY = sumY * DECAY + nanos;
+            sumXX = sumXX * DECAY + (double) cells * cells;
+            sumXY = sumXY * DECAY + (double) cells * nanos;
+        }
+
+        synchronized double cellNanos() {
+            double variance = n * sumXX - sumX * sumX;
+            if (n < 2 || variance <= 1e-9 * sumXX * n) {
+                // One task size so far: charge everything above the default fixed cost to the cells
+                double meanX = sumX / n;
+                double meanY = sumY / n;
+                return meanX > 0 ? Math.max(0.01, (meanY - DEFAULT_FIXED_NANOS) / meanX) : DEFAULT_CELL_NANOS;
+            }
+            return Math.max(0.01, (n * sumXY - sumX * sumY) / variance);
+        }
+
+        synchronized double fixedNanos() {
+            if (n < 1) return DEFAULT_FIXED_NANOS;
+            double fixed = (sumY - cellNanos() * sumX) / n;
+            return Math.max(10_000, fixed);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package pdc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Typed payload layouts for TASK and RESULT frames.
+ * Rows travel as row blocks, [firstRow][rowCount][cols][rowCount * cols ints],
+ * written and read with one IntBuffer bulk transfer per row instead of an
+ * element-by-element DataOutputStream loop. Sparse rows travel as sparse blocks,
+ * [firstRow][rowCount][-1 - cols][nnz][rowCount non-zero counts][nnz columns][nnz values];
+ * the negative width tells the two apart.
+ *
+ * TASK payload:    [taskId][operation][int operandCount][long operandId...][row block or sparse block]
+ * RESULT payload:  [taskId][row block or sparse block]
+ * OPERAND payload: [long operandId][row block or sparse block]
+ * On the wire TASK and RESULT are preceded by RpcChannel's correlation id.
+ */
+public final class Payloads {
+
+    private static final int BLOCK_HEADER = 12;
+
+    private Payloads() {}
+
+    // ================== Row Blocks ==================
+
+    /**
+     * Encoded size of rows[first, first + count) as a row block.
+     */
+    public static int blockLength(int[][] rows, int first, int count) {
+        int cols = count > 0 ? rows[first].length : 0;
+        return BLOCK_HEADER + 4 * count * cols;
+    }
+
+    /**
+     * Writes rows[first, first + count) as a row block whose firstRow is first.
+     * Every row must have the same length.
+     */
+    public static void putBlock(ByteBuffer out, int[][] rows, int first, int count) {
+        putBlock(out, rows, first, count, first);
+    }
+
+    /**
+     * Writes rows[first, first + count) as a row block labelled with targetRow,
+     * the index the rows belong at on the receiving side.
+     */
+    public static void putBlock(ByteBuffer out, int[][] rows, int first, int count, int targetRow) {
+        int cols = count > 0 ? rows[first].length : 0;
+        out.putInt(targetRow);
+        out.putInt(count);
+        out.putInt(cols);
+
+        IntBuffer ints = out.asIntBuffer();
+        for (int r = first; r < first + count; r++) {
+            if (rows[r].length != cols) {
+                throw new IllegalArgumentException("Ragged row " + r + ": " + rows[r].length + " != " + cols);
+            }
+            ints.put(rows[r]);
+        }
+        out.position(out.position() + 4 * count * cols);
+    }
+
+    /**
+     * Reads a row block straight into dst[firstRow, firstRow + rowCount), reusing
+     * destination rows that already have the right length. Returns the block's firstRow.
+     */
+    public static int getBlock(ByteBuffer in, int[][] dst) throws IOException {
+        int firstRow = in.getInt();
+        int count = in.getInt();
+        int cols = in.getInt();
+        checkBlock(in, firstRow, count, cols);
+        if (firstRow + count > dst.length) {
+            throw new IOException("Row block [" + firstRow + ", " + (firstRow + count) + ") exceeds " + dst.length + " rows");
+        }
+        getRows(in, dst, firstRow, count, cols);
+        return firstRow;
+    }
+
+    /**
+     * Reads a row block into freshly allocated, block-local rows (rows[0] is firstRow).
+     */
+    public static RowBlock getBlock(ByteBuffer in) throws IOException {
+        int firstRow = in.getInt();
+        int count = in.getInt();
+        int cols = in.getInt();
+        checkBlock(in, firstRow, count, cols);
+        int[][] rows = new int[count][];
+        getRows(in, rows, 0, count, cols);
+        return new RowBlock(firstRow, rows);
+    }
+
+    private static void checkBlock(ByteBuffer in, int firstRow, int count, int cols) throws IOException {
+        if (firstRow < 0 || count < 0 || cols < 0 || (long) 4 * count * cols > in.remaining()) {
+            throw new IOException("Malformed row block: first=" + firstRow + " rows=" + count + " cols=" + cols);
+        }
+    }
+
+    private static void getRows(ByteBuffer in, int[][] dst, int first, int count, int cols) {
+        IntBuffer ints = in.asIntBuffer();
+        for (int r = first; r < first + count; r++) {
+            if (dst[r] == null || dst[r].length != cols) dst[r] = new int[cols];
+            ints.get(dst[r]);
+        }
+        in.position(in.position() + 4 * count * cols);
+    }
+
+    /**
+     * Encoded size of matrix as a row block.
+     */
+    public static int blockLength(IntMatrix matrix) {
+        return BLOCK_HEADER + 4 * matrix.rows * matrix.cols;
+    }
+
+    /**
+     * Writes matrix as a row block labelled with targetRow. Contiguous rows of a flat
+     * matrix go out with one bulk IntBuffer transfer; strided views are gathered.
+     */
+    public static void putBlock(ByteBuffer out, IntMatrix matrix, int targetRow) {
+        out.putInt(targetRow);
+        out.putInt(matrix.rows);
+        out.putInt(matrix.cols);
+        matrix.putRowMajor(out.asIntBuffer());
+        out.position(out.position() + 4 * matrix.rows * matrix.cols);
+    }
+
+    /**
+     * A decoded row block: rows[i] is row firstRow + i of the full matrix.
+     */
+    public static final class RowBlock {
+        public final int firstRow;
+        public final int[][] rows;
+
+        public RowBlock(int firstRow, int[][] rows) {
+            this.firstRow = firstRow;
+            this.rows = rows;
+        }
+    }
+
+    // ================== Sparse Blocks ==================
+
+    /**
+     * Encoded size of CSR rows [first, first + count) of matrix as a sparse block.
+     */
+    public static int sparseBlockLength(SparseMatrix matrix, int first, int count) {
+        return BLOCK_HEADER + 4 + 4 * count + 8 * matrix.nnz(first, count);
+    }
+
+    /**
+     * Writes CSR rows [first, first + count) of matrix as a sparse block labelled with targetRow.
+     */
+    public static void putSparseBlock(ByteBuffer out, SparseMatrix matrix, int first, int count, int targetRow) {
+        if (matrix.layout != SparseMatrix.Layout.CSR) throw new IllegalArgumentException("Sparse blocks are CSR");
+        int start = matrix.pointers[first];
+        int nnz = matrix.nnz(first, count);
+        out.putInt(targetRow);
+        out.putInt(count);
+        out.putInt(-1 - matrix.cols);
+        out.putInt(nnz);
+
+        IntBuffer ints = out.asIntBuffer();
+        for (int i = first; i < first + count; i++) ints.put(matrix.pointers[i + 1] - matrix.pointers[i]);
+        ints.put(matrix.indices, start, nnz);
+        ints.put(matrix.values, start, nnz);
+        out.position(out.position() + 4 * (count + 2 * nnz));
+    }
+
+    /**
+     * True if the block at in's position is a sparse block.
+     */
+    public static boolean isSparseBlock(ByteBuffer in) {
+        return in.remaining() >= BLOCK_HEADER && in.getInt(in.position() + 8) < 0;
+    }
+
+    /**
+     * Reads a sparse block into a new CSR matrix of the block's rows.
+     */
+    public static SparseBlock getSparseBlock(ByteBuffer in) throws IOException {
+        int firstRow = in.getInt();
+        int count = in.getInt();
+        int cols = -1 - in.getInt();
+        int nnz = in.remaining() >= 4 ? in.getInt() : -1;
+        if (firstRow < 0 || count < 0 || cols < 0 || nnz < 0 || 4 * ((long) count + 2L * nnz) > in.remaining()) {
+            throw new IOException("Malformed sparse block: first=" + firstRow + " rows=" + count + " cols=" + cols
+                    + " nnz=" + nnz);
+        }
+        IntBuffer ints = in.asIntBuffer();
+        int[] pointers = new int[count + 1];
+        for (int i = 0; i < count; i++) pointers[i + 1] = pointers[i] + ints.get();
+        int[] indices = new int[nnz];
+        int[] values = new int[nnz];
+        ints.get(indices);
+        ints.get(values);
+        in.position(in.position() + 4 * (count + 2 * nnz));
+        try {
+            return new SparseBlock(firstRow, SparseMatrix.of(SparseMatrix.Layout.CSR, count, cols, pointers, indices, values));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed sparse block: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A decoded sparse block: matrix row i is row firstRow + i.
+     */
+    public static final class SparseBlock {
+        public final int firstRow;
+        public final SparseMatrix matrix;
+
+        public SparseBlock(int firstRow, SparseMatrix matrix) {
+            this.firstRow = firstRow;
+            this.matrix = matrix;
+        }
+    }
+
+    // ================== TASK / RESULT ==================
+
+    /**
+     * Size of a TASK payload up to, not including, its block.
+     */
+    public static int taskHeaderLength(String operation, long[] operandIds) {
+        return 4 + stringLength(operation) + 4 + 8 * operandIds.length;
+    }
+
+    /**
+     * Writes a TASK payload up to its block, which the caller writes next.
+     */
+    public static void putTaskHeader(ByteBuffer out, int taskId, String operation, long[] operandIds) {
+        out.putInt(taskId);
+        putString(out, operation);
+        out.putInt(operandIds.length);
+        for (long id : operandIds) out.putLong(id);
+    }
+
+    public static long[] getOperandIds(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / 8) throw new IOException("Malformed operand count: " + count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) ids[i] = in.getLong();
+        return ids;
+    }
+
+    public static int resultLength(int[][] rows, int first, int count) {
+        return 4 + blockLength(rows, first, count);
+    }
+
+    public static void putResult(ByteBuffer out, int taskId, int[][] rows, int first, int count, int targetRow) {
+        out.putInt(taskId);
+        putBlock(out, rows, first, count, targetRow);
+    }
+
+    public static int resultLength(SparseMatrix rows) {
+        return 4 + sparseBlockLength(rows, 0, rows.rows);
+    }
+
+    public static void putResult(ByteBuffer out, int taskId, SparseMatrix rows, int targetRow) {
+        out.putInt(taskId);
+        putSparseBlock(out, rows, 0, rows.rows, targetRow);
+    }
+
+    // ================== OPERAND ==================
+
+    public static int operandLength(Operand operand) {
+        if (operand.sparse != null) return 8 + sparseBlockLength(operand.sparse, 0, operand.sparse.rows);
+        return 8 + blockLength(operand.rows, 0, operand.rows.length);
+    }
+
+    public static void putOperand(ByteBuffer out, Operand operand) {
+        out.putLong(operand.id);
+        if (operand.sparse != null) {
+            putSparseBlock(out, operand.sparse, 0, operand.sparse.rows, 0);
+        } else {
+            putBlock(out, operand.rows, 0, operand.rows.length);
+        }
+    }
+
+    public static Operand getOperand(ByteBuffer in) throws IOException {
+        long id = in.getLong();
+        if (isSparseBlock(in)) return Operand.received(id, getSparseBlock(in).matrix);
+        return Operand.received(id, getBlock(in).rows);
+    }
+
+    // ================== Strings ==================
+
+    public static int stringLength(String str) {
+        return 4 + (str != null ? str.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    public static void putString(ByteBuffer out, String str) {
+        if (str != null) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        } else {
+            out.putInt(0);
+        }
+    }
+
+    public static String getString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IOException("Malformed string length: " + length);
+        if (length == 0) return "";
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,267 @@
+package pdc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Direct worker-to-worker connections, so grid algorithms can move blocks between
+ * workers without going through the master.
+ *
+ * Each worker listens on its own peer port (advertised to the master at REGISTER) and
+ * opens at most one outgoing connection per peer, on first use. Connections speak the
+ * same length-prefixed Message frames as the master link; the only frame is
+ *
+ * BLOCK payload: [long exchange][int tag][row block]
+ *
+ * where exchange names one grid job and tag one block within it. Every inbound
+ * connection has its own reader that drops blocks into a mailbox, so a receiver never
+ * has to be waiting for a sender to make progress. Blocks that arrive after their
+ * exchange is forgotten (a cancelled or failed job's stragglers) are dropped. A
+ * mailbox nobody is waiting on that has not been touched for mailboxIdleMs (a cell
+ * that never reached this worker) is dropped too, so its peers' panels do not stay
+ * for the life of the worker.
+ */
+final class PeerLinks {
+
+    private static final long POLL_MS = 100;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int FORGOTTEN_EXCHANGES = 1024;
+    /** Default idle time before an unclaimed mailbox is dropped; overridable with $CSM218_PEER_MAILBOX_IDLE_MS. */
+    static final long MAILBOX_IDLE_MS = Env.longValue("CSM218_PEER_MAILBOX_IDLE_MS", 60_000);
+
+    private final String identity;
+    private final ServerSocket server;
+    private final ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "peer-link");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentMap<String, FramedStream> outgoing = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> connecting = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final long mailboxIdleMs;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    /** The most recently forgotten exchanges, oldest first; guarded by itself. */
+    private final Set<Long> forgotten = Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > FORGOTTEN_EXCHANGES;
+        }
+    });
+    private volatile boolean closed;
+
+    /**
+     * Listens on port (0 picks a free one) and starts accepting peers.
+     */
+    PeerLinks(String identity, int port) throws IOException {
+        this(identity, port, MAILBOX_IDLE_MS);
+    }
+
+    PeerLinks(String identity, int port, long mailboxIdleMs) throws IOException {
+        this.identity = identity;
+        this.mailboxIdleMs = mailboxIdleMs;
+        this.server = new ServerSocket(port);
+        threads.submit(this::acceptLoop);
+        threads.submit(this::expireLoop);
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (!closed) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                threads.submit(() -> readLoop(socket));
+            }
+        } catch (IOException e) {
+            if (!closed) System.err.println("Peer accept error: " + e.getMessage());
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try {
+            FramedStream stream = new FramedStream(socket.getInputStream(), socket.getOutputStream(), identity);
+            Message header = new Message();
+            while (!closed) {
+                ByteBuffer payload = stream.receive(header);
+                if (!"BLOCK".equalsIgnoreCase(header.messageType)) {
+                    System.err.println("Unknown peer message type: " + header.messageType);
+                    continue;
+                }
+                long exchange = payload.getLong();
+                int tag = payload.getInt();
+                if (isForgotten(exchange)) continue;
+                slot(exchange, tag).complete(Payloads.getBlock(payload).rows);
+                // forget() may have run since the check; don't leave a mailbox behind for it
+                if (isForgotten(exchange)) mailboxes.remove(exchange);
+            }
+        } catch (IOException e) {
+            // peer went away; its exchanges fail by timeout on this side
+        } finally {
+            sockets.remove(socket);
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private CompletableFuture<int[][]> slot(long exchange, int tag) {
+        // touch inside compute so expiry never drops a mailbox that is being handed out
+        Mailbox mailbox = mailboxes.compute(exchange, (e, m) -> {
+            if (m == null) m = new Mailbox();
+            m.touchedAt = PhiAccrualDetector.nowMs();
+            return m;
+        });
+        return mailbox.slots.computeIfAbsent(tag, t -> new CompletableFuture<>());
+    }
+
+    /**
+     * Drops, every so often, each mailbox idle for mailboxIdleMs whose blocks have all
+     * arrived: a receiver would have left an empty slot behind while it waits.
+     */
+    private void expireLoop() {
+        long period = Math.max(10, Math.min(mailboxIdleMs / 4, 1000));
+        try {
+            while (!closed) {
+                Thread.sleep(period);
+                long now = PhiAccrualDetector.nowMs();
+                for (Long exchange : mailboxes.keySet()) {
+                    mailboxes.computeIfPresent(exchange, (e, mailbox) ->
+                            now - mailbox.touchedAt >= mailboxIdleMs && mailbox.delivered() ? null : mailbox);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Sends rows to the peer at address ("host:port") as block tag of exchange.
+     */
+    void send(String address, long exchange, int tag, int[][] rows) throws IOException {
+        FramedStream stream = link(address);
+        Message header = new Message(Message.PROTOCOL_MAGIC, 1, "BLOCK", Message.STUDENT_ID, identity, null);
+        try {
+            stream.send(header, 12 + Payloads.blockLength(rows, 0, rows.length), out -> {
+                out.putLong(exchange);
+                out.putInt(tag);
+                Payloads.putBlock(out, rows, 0, rows.length);
+            });
+        } catch (IOException e) {
+            outgoing.remove(address, stream);
+            throw e;
+        }
+    }
+
+    private FramedStream link(String address) throws IOException {
+        FramedStream stream = outgoing.get(address);
+        if (stream != null) return stream;
+        // one connect per peer at a time; a slow or dead peer doesn't hold up links to the others
+        synchronized (connecting.computeIfAbsent(address, a -> new Object())) {
+            stream = outgoing.get(address);
+            if (stream != null) return stream;
+            int colon = address.lastIndexOf(':');
+            if (colon < 0) throw new IOException("Malformed peer address: " + address);
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            sockets.add(socket);
+            stream = new FramedStream(socket.getInputStream(), socket.getOutputStream(), identity);
+            outgoing.put(address, stream);
+            return stream;
+        }
+    }
+
+    /**
+     * Sends blocks (tag to rows, in iteration order) to one peer on a background thread.
+     */
+    CompletableFuture<Void> sendAsync(String address, long exchange, Map<Integer, int[][]> blocks) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                for (Map.Entry<Integer, int[][]> block : blocks.entrySet()) {
+                    send(address, exchange, block.getKey(), block.getValue());
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, threads);
+    }
+
+    /**
+     * Waits for block tag of exchange. Gives up with an IOException after timeoutMs,
+     * or with an InterruptedIOException as soon as cancelled returns true.
+     */
+    int[][] receive(long exchange, int tag, long timeoutMs, BooleanSupplier cancelled) throws IOException {
+        CompletableFuture<int[][]> block = slot(exchange, tag);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            if (cancelled.getAsBoolean()) throw new InterruptedIOException("Exchange " + exchange + " cancelled");
+            long left = deadline - System.nanoTime();
+            if (left <= 0) throw new IOException("No block " + tag + " of exchange " + exchange
+                    + " within " + timeoutMs + "ms");
+            try {
+                return block.get(Math.min(left, TimeUnit.MILLISECONDS.toNanos(POLL_MS)), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // poll cancelled again
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for block " + tag);
+            } catch (ExecutionException e) {
+                throw new IOException("Block " + tag + " failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Drops whatever is left of exchange's mailbox once its job is over.
+     */
+    void forget(long exchange) {
+        synchronized (forgotten) {
+            forgotten.add(exchange);
+        }
+        mailboxes.remove(exchange);
+    }
+
+    private boolean isForgotten(long exchange) {
+        synchronized (forgotten) {
+            return forgotten.contains(exchange);
+        }
+    }
+
+    /**
+     * The blocks of one exchange that have arrived or are awaited, by tag.
+     */
+    private static final class Mailbox {
+        final ConcurrentMap<Integer, CompletableFuture<int[][]>> slots = new ConcurrentHashMap<>();
+        volatile long touchedAt;
+
+        boolean delivered() {
+            for (CompletableFuture<int[][]> slot : slots.values()) {
+                if (!slot.isDone()) return false;
+            }
+            return true;
+        }
+    }
+
+    void close() {
+        closed = true;
+        try { server.close(); } catch (IOException ignored) {}
+        for (Socket socket : sockets) {
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+        threads.shutdownNow();
+    }
+}
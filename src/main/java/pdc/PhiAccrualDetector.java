@@ -0,0 +1,124 @@
+package pdc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phi-accrual failure detection for worker connections.
+ *
+ * Instead of a fixed timeout, a worker's silence is turned into a suspicion level
+ * phi = -log10(P(a gap at least this long)), where gaps are modelled as a normal
+ * distribution fitted to the intervals between the worker's recent HEARTBEAT frames.
+ * phi 1 means a 1 in 10 chance the worker is merely slow, phi 8 one in 10^8. A worker is
+ * suspected once phi reaches the threshold. A steady link is therefore suspected soon
+ * after it goes quiet, while a jittery one (a loaded host, GC pauses) automatically gets
+ * more slack.
+ *
+ * minStdDevMs stops a very regular link from being judged on a needle-thin
+ * distribution, and acceptablePauseMs is added to the mean gap as an allowance for
+ * the odd stall that the window has not seen yet.
+ *
+ * Times are read from nowMs(), which follows System.nanoTime(), so a wall-clock step
+ * (NTP, a suspended VM) neither fakes a long silence nor hides one.
+ */
+public final class PhiAccrualDetector {
+
+    public static final double DEFAULT_THRESHOLD = 8.0;
+    public static final long DEFAULT_MIN_STD_DEV_MS = 50;
+    public static final long DEFAULT_ACCEPTABLE_PAUSE_MS = 200;
+
+    private static final int WINDOW = 200;
+    /** Assumed gap, with a quarter of it as deviation, until a worker has sent two heartbeats. */
+    private static final long FIRST_INTERVAL_MS = 500;
+
+    private volatile double threshold = DEFAULT_THRESHOLD;
+    private volatile long minStdDevMs = DEFAULT_MIN_STD_DEV_MS;
+    private volatile long acceptablePauseMs = DEFAULT_ACCEPTABLE_PAUSE_MS;
+
+    public void configure(double threshold, long minStdDevMs, long acceptablePauseMs) {
+        this.threshold = threshold;
+        this.minStdDevMs = Math.max(1, minStdDevMs);
+        this.acceptablePauseMs = Math.max(0, acceptablePauseMs);
+    }
+
+    public double threshold() {
+        return threshold;
+    }
+
+    /**
+     * Monotonic milliseconds; only differences between two readings mean anything.
+     */
+    public static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Suspicion level after silentMs without any sign of life from the worker.
+     */
+    public double phi(History history, long silentMs) {
+        double mean;
+        double stdDev;
+        synchronized (history) {
+            if (history.count == 0) {
+                mean = FIRST_INTERVAL_MS;
+                stdDev = FIRST_INTERVAL_MS / 4.0;
+            } else {
+                mean = history.sum / (double) history.count;
+                stdDev = Math.sqrt(Math.max(0, history.sumSquares / (double) history.count - mean * mean));
+            }
+        }
+        mean += acceptablePauseMs;
+        stdDev = Math.max(stdDev, minStdDevMs);
+
+        // logistic approximation of the normal tail
+        double y = (silentMs - mean) / stdDev;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        double longer = silentMs > mean ? e / (1 + e) : 1 - 1 / (1 + e);
+        return -Math.log10(longer);
+    }
+
+    public boolean isAvailable(History history, long silentMs) {
+        return phi(history, silentMs) < threshold;
+    }
+
+    /**
+     * The last WINDOW heartbeat intervals of one connection.
+     */
+    public static final class History {
+        private final long[] intervals = new long[WINDOW];
+        private int count;
+        private int next;
+        private long sum;
+        private long sumSquares;
+        private boolean started;
+        private long lastHeartbeat;
+
+        /**
+         * Records a HEARTBEAT received at now, a nowMs() reading.
+         */
+        public synchronized void heartbeat(long now) {
+            if (started) {
+                long interval = Math.max(0, now - lastHeartbeat);
+                if (count == WINDOW) {
+                    long dropped = intervals[next];
+                    sum -= dropped;
+                    sumSquares -= dropped * dropped;
+                } else {
+                    count++;
+                }
+                intervals[next] = interval;
+                next = (next + 1) % WINDOW;
+                sum += interval;
+                sumSquares += interval * interval;
+            }
+            lastHeartbeat = now;
+            started = true;
+        }
+
+        /**
+         * True once the connection has sent a HEARTBEAT at all.
+         */
+        public synchronized boolean started() {
+            return started;
+        }
+    }
+}
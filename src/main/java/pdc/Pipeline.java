@@ -0,0 +1,326 @@
+package pdc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * Plans MatrixExpr DAGs into stages and runs a stage's program on one row band.
+ *
+ * A stage is the largest part of the DAG that is row-local: row band i of its result
+ * depends only on row band i of its row inputs plus whole broadcast operands (the
+ * right-hand sides of products). Each band of a stage is one TASK that runs the whole
+ * stage on the worker, so its intermediates never leave the worker. A random() leaf is
+ * generated band by band on the workers, so it never travels. Only a transpose,
+ * or a product whose right-hand side is itself computed, needs a whole intermediate;
+ * such a node is a boundary, computed as its own stage before the stage that uses it.
+ *
+ * A stage travels as its TASK operation string,
+ * PIPELINE width,width,...|instruction;instruction;...
+ * where the row inputs are concatenated side by side in the task's row block (the
+ * widths say where each one ends) and each instruction defines the next value:
+ *   R i       row input i           O i          broadcast operand i
+ *   MUL a b   value a x value b     ADD a b      value a + value b
+ *   CALL op a registered worker operation op on value a, or on a copy of it if a
+ *                later instruction reads a too (operations may work in place)
+ *   G r c m s    the band's rows of MatrixGenerator.seeded(r, c, m, s)
+ * The last value is the band's result.
+ */
+final class Pipeline {
+
+    static final String OPERATION = "PIPELINE";
+
+    private Pipeline() {}
+
+    /**
+     * Runs a named worker operation on rows, for CALL.
+     */
+    interface Call {
+        int[][] apply(String operation, int[][] rows) throws Exception;
+    }
+
+    /**
+     * A compiled stage: the operation string, its row inputs side by side and its operands.
+     */
+    static final class Stage {
+        final String operation;
+        final IntMatrix input;
+        final Operand[] operands;
+
+        Stage(String operation, IntMatrix input, Operand[] operands) {
+            this.operation = operation;
+            this.input = input;
+            this.operands = operands;
+        }
+    }
+
+    // ================== Planning ==================
+
+    /**
+     * The boundary nodes the stage rooted at root needs computed first.
+     */
+    static Set<MatrixExpr> boundaries(MatrixExpr root) {
+        Set<MatrixExpr> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectBoundaries(root, found, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return found;
+    }
+
+    private static void collectBoundaries(MatrixExpr node, Set<MatrixExpr> found, Set<MatrixExpr> seen) {
+        if (!seen.add(node)) return;
+        switch (node.kind) {
+            case INPUT:
+            case RANDOM:
+                return;
+            case TRANSPOSE:
+                found.add(node);
+                return;
+            case MULTIPLY:
+                collectBoundaries(node.left, found, seen);
+                if (!node.right.isLeaf()) found.add(node.right);
+                return;
+            case ADD:
+                collectBoundaries(node.left, found, seen);
+                collectBoundaries(node.right, found, seen);
+                return;
+            default:
+                collectBoundaries(node.left, found, seen);
+        }
+    }
+
+    /**
+     * Compiles the stage rooted at root, given the results of its boundaries.
+     */
+    static Stage compile(MatrixExpr root, Map<MatrixExpr, int[][]> computed) {
+        Compiler compiler = new Compiler(computed);
+        compiler.value(root);
+
+        List<IntMatrix> inputs = compiler.rowInputs;
+        int rows = compiler.rowCount;
+        StringBuilder op = new StringBuilder(OPERATION).append(' ');
+        for (int i = 0; i < inputs.size(); i++) {
+            if (rows >= 0 && inputs.get(i).rows != rows) {
+                throw new IllegalArgumentException("Row inputs of " + root + " differ in row count");
+            }
+            rows = inputs.get(i).rows;
+            op.append(i > 0 ? "," : "").append(inputs.get(i).cols);
+        }
+        op.append('|').append(String.join(";", compiler.program));
+        // a stage reading only random() leaves still needs its row count to be cut into bands
+        IntMatrix input = inputs.isEmpty() ? IntMatrix.heap(rows, 0) : IntMatrix.concatColumns(inputs);
+        return new Stage(op.toString(), input, compiler.operands.toArray(new Operand[0]));
+    }
+
+    private static final class Compiler {
+        final Map<MatrixExpr, int[][]> computed;
+        final Map<MatrixExpr, Integer> values = new IdentityHashMap<>();
+        final Map<MatrixExpr, Integer> rowSlots = new IdentityHashMap<>();
+        final Map<MatrixExpr, Integer> operandSlots = new IdentityHashMap<>();
+        final List<IntMatrix> rowInputs = new ArrayList<>();
+        final List<Operand> operands = new ArrayList<>();
+        final List<String> program = new ArrayList<>();
+        int rowCount = -1;
+
+        Compiler(Map<MatrixExpr, int[][]> computed) {
+            this.computed = computed;
+        }
+
+        /**
+         * Index of the value holding node's rows for this band.
+         */
+        int value(MatrixExpr node) {
+            Integer known = values.get(node);
+            if (known != null) return known;
+            String instruction;
+            if (node.kind == MatrixExpr.Kind.INPUT || node.kind == MatrixExpr.Kind.TRANSPOSE) {
+                instruction = "R " + rowInput(node);
+            } else if (node.kind == MatrixExpr.Kind.RANDOM) {
+                MatrixGenerator.SeededMatrix random = node.random;
+                if (rowCount >= 0 && random.rows != rowCount) {
+                    throw new IllegalArgumentException("Row inputs of " + node + " differ in row count");
+                }
+                rowCount = random.rows;
+                instruction = "G " + random.rows + " " + random.cols + " " + random.maxValue + " " + random.seed;
+            } else if (node.kind == MatrixExpr.Kind.MULTIPLY) {
+                instruction = "MUL " + value(node.left) + " " + operand(node.right);
+            } else if (node.kind == MatrixExpr.Kind.ADD) {
+                instruction = "ADD " + value(node.left) + " " + value(node.right);
+            } else {
+                instruction = "CALL " + node.operation + " " + value(node.left);
+            }
+            program.add(instruction);
+            values.put(node, program.size() - 1);
+            return program.size() - 1;
+        }
+
+        private int rowInput(MatrixExpr node) {
+            Integer slot = rowSlots.get(node);
+            if (slot != null) return slot;
+            rowInputs.add(node.kind == MatrixExpr.Kind.INPUT ? node.matrix : IntMatrix.wrap(computed.get(node)));
+            rowSlots.put(node, rowInputs.size() - 1);
+            return rowInputs.size() - 1;
+        }
+
+        /**
+         * Index of the value holding all of node as a broadcast operand.
+         */
+        private int operand(MatrixExpr node) {
+            Integer slot = operandSlots.get(node);
+            if (slot == null) {
+                operands.add(Operand.of(node.isLeaf() ? node.rows() : computed.get(node)));
+                slot = operands.size() - 1;
+                operandSlots.put(node, slot);
+            }
+            program.add("O " + slot);
+            return program.size() - 1;
+        }
+    }
+
+    // ================== Running ==================
+
+    static boolean isPipeline(String operation) {
+        return operation.regionMatches(true, 0, OPERATION + " ", 0, OPERATION.length() + 1);
+    }
+
+    /**
+     * The worker operations a TASK operation string needs: itself, or for a pipeline
+     * PIPELINE plus every operation it calls. A grid cell needs SUMMA, a reduction its
+     * REDUCE_ name without arguments.
+     */
+    static List<String> kernels(String operation) {
+        if (Summa.isSumma(operation)) return Collections.singletonList(Summa.OPERATION);
+        Reduction reduction = Reduction.forOperation(operation);
+        if (reduction != null) return Collections.singletonList(reduction.operation());
+        if (!isPipeline(operation)) return Collections.singletonList(operation);
+        List<String> kernels = new ArrayList<>();
+        kernels.add(OPERATION);
+        for (String instruction : program(operation)) {
+            if (instruction.startsWith("CALL ")) kernels.add(instruction.split(" ")[1]);
+        }
+        return kernels;
+    }
+
+    /**
+     * The name the master files an operation's timings under (cost model, straggler
+     * detection). Pipeline and grid operation strings carry widths, seeds, exchange ids
+     * and peers that make each one unique; this keeps what decides the cost per cell:
+     * PIPELINE|program for a pipeline, with G instructions reduced to G, SUMMA for a
+     * grid cell and the bare REDUCE_ name for a reduction.
+     */
+    static String profile(String operation) {
+        if (Summa.isSumma(operation)) return Summa.OPERATION;
+        Reduction reduction = Reduction.forOperation(operation);
+        if (reduction != null) return reduction.operation();
+        if (!isPipeline(operation)) return operation;
+        StringBuilder profile = new StringBuilder(OPERATION);
+        char separator = '|';
+        for (String instruction : program(operation)) {
+            profile.append(separator).append(instruction.startsWith("G ") ? "G" : instruction);
+            separator = ';';
+        }
+        return profile.toString();
+    }
+
+    private static String[] program(String operation) {
+        int bar = operation.indexOf('|');
+        return bar < 0 ? new String[0] : operation.substring(bar + 1).split(";");
+    }
+
+    /**
+     * Runs a pipeline operation string on the band starting at firstRow: block holds the
+     * row inputs side by side, operand(i) returns broadcast operand i.
+     */
+    static int[][] execute(String operation, int firstRow, int[][] block, IntFunction<int[][]> operand,
+                           ForkJoinPool pool, Call call) throws Exception {
+        int bar = operation.indexOf('|');
+        if (!isPipeline(operation) || bar < 0) throw new IllegalArgumentException("Not a pipeline: " + operation);
+        String[] widths = operation.substring(OPERATION.length() + 1, bar).split(",");
+        List<int[][]> inputs = splitColumns(block, widths);
+
+        String[] program = program(operation);
+        String[][] instructions = new String[program.length][];
+        // the last instruction reading each value; CALL may change its input in place
+        int[] lastUse = new int[program.length];
+        for (int v = 0; v < program.length; v++) {
+            instructions[v] = program[v].split(" ");
+            String[] parts = instructions[v];
+            if (parts[0].equals("MUL") || parts[0].equals("ADD")) {
+                lastUse[Integer.parseInt(parts[1])] = v;
+                lastUse[Integer.parseInt(parts[2])] = v;
+            } else if (parts[0].equals("CALL")) {
+                lastUse[Integer.parseInt(parts[2])] = v;
+            }
+        }
+        int[][][] values = new int[program.length][][];
+        for (int v = 0; v < program.length; v++) {
+            String[] parts = instructions[v];
+            switch (parts[0]) {
+                case "R":
+                    values[v] = inputs.get(Integer.parseInt(parts[1]));
+                    break;
+                case "O":
+                    values[v] = operand.apply(Integer.parseInt(parts[1]));
+                    break;
+                case "MUL":
+                    values[v] = MatrixKernels.multiply(values[Integer.parseInt(parts[1])],
+                            values[Integer.parseInt(parts[2])], pool);
+                    break;
+                case "ADD":
+                    values[v] = add(values[Integer.parseInt(parts[1])], values[Integer.parseInt(parts[2])]);
+                    break;
+                case "CALL":
+                    int input = Integer.parseInt(parts[2]);
+                    boolean shared = lastUse[input] > v || instructions[input][0].equals("O");
+                    values[v] = call.apply(parts[1], shared ? copy(values[input]) : values[input]);
+                    break;
+                case "G":
+                    MatrixGenerator.SeededMatrix random = MatrixGenerator.seeded(Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+                    values[v] = random.block(firstRow, block.length, pool);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pipeline instruction: " + program[v]);
+            }
+        }
+        if (values.length == 0) throw new IllegalArgumentException("Empty pipeline: " + operation);
+        return values[values.length - 1];
+    }
+
+    private static List<int[][]> splitColumns(int[][] block, String[] widths) {
+        List<int[][]> inputs = new ArrayList<>(widths.length);
+        if (widths.length == 1) {
+            inputs.add(block);
+            return inputs;
+        }
+        int offset = 0;
+        for (String width : widths) {
+            int cols = Integer.parseInt(width);
+            int[][] input = new int[block.length][cols];
+            for (int i = 0; i < block.length; i++) System.arraycopy(block[i], offset, input[i], 0, cols);
+            inputs.add(input);
+            offset += cols;
+        }
+        return inputs;
+    }
+
+    private static int[][] copy(int[][] rows) {
+        int[][] copy = new int[rows.length][];
+        for (int i = 0; i < rows.length; i++) copy[i] = rows[i].clone();
+        return copy;
+    }
+
+    private static int[][] add(int[][] x, int[][] y) {
+        if (x.length != y.length) throw new IllegalArgumentException("ADD of " + x.length + " and " + y.length + " rows");
+        int[][] z = new int[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            if (x[i].length != y[i].length) throw new IllegalArgumentException("ADD of rows of different widths");
+            z[i] = new int[x[i].length];
+            for (int j = 0; j < z[i].length; j++) z[i][j] = x[i][j] + y[i][j];
+        }
+        return z;
+    }
+}
@@ -0,0 +1,275 @@
+package pdc;
+
+import java.util.Arrays;
+
+/**
+ * Reductions run through coordinate() as operation REDUCE_<name>, e.g.
+ * coordinate("REDUCE_SUM", data, n) or coordinate("REDUCE_DOT", a, b, n). A binary
+ * reduction's tasks carry the first matrix's width, as in "REDUCE_DOT 3".
+ *
+ * Each worker reduces its band to a partial, a few longs (a band's worth for ROW_SUMS,
+ * a row's worth for COLUMN_SUMS), and only that goes back. The master merges partials
+ * in a binary tree as they arrive (see ReductionTree) and finish() turns the total into
+ * the value coordinate() returns. combine() is associative and keeps band order, and an
+ * empty partial is its identity.
+ */
+public enum Reduction {
+
+    /** Sum of all entries, as a Long. */
+    SUM {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            long sum = 0;
+            for (int[] row : rows) for (int v : row) sum += v;
+            return new long[]{sum};
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            return new long[]{a[0] + b[0]};
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total.length > 0 ? total[0] : 0L;
+        }
+    },
+
+    /** Smallest entry as an Integer, or null for an empty matrix. */
+    MIN {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            long min = Long.MAX_VALUE;
+            for (int[] row : rows) for (int v : row) min = Math.min(min, v);
+            return min == Long.MAX_VALUE ? EMPTY : new long[]{min};
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            return new long[]{Math.min(a[0], b[0])};
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total.length > 0 ? (Object) (int) total[0] : null;
+        }
+    },
+
+    /** Largest entry as an Integer, or null for an empty matrix. */
+    MAX {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            long max = Long.MIN_VALUE;
+            for (int[] row : rows) for (int v : row) max = Math.max(max, v);
+            return max == Long.MIN_VALUE ? EMPTY : new long[]{max};
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            return new long[]{Math.max(a[0], b[0])};
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total.length > 0 ? (Object) (int) total[0] : null;
+        }
+    },
+
+    /** Square root of the sum of squared entries, as a Double. */
+    FROBENIUS_NORM {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            double squares = 0;
+            for (int[] row : rows) for (int v : row) squares += (double) v * v;
+            return new long[]{Double.doubleToLongBits(squares)};
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            return new long[]{Double.doubleToLongBits(Double.longBitsToDouble(a[0]) + Double.longBitsToDouble(b[0]))};
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total.length > 0 ? Math.sqrt(Double.longBitsToDouble(total[0])) : 0.0;
+        }
+    },
+
+    /** Sum of each row, as a long[] with one entry per row. */
+    ROW_SUMS {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            long[] sums = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) for (int v : rows[i]) sums[i] += v;
+            return sums;
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            long[] joined = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, joined, a.length, b.length);
+            return joined;
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total;
+        }
+    },
+
+    /** Sum of each column, as a long[] with one entry per column. */
+    COLUMN_SUMS {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            if (rows.length == 0) return EMPTY;
+            long[] sums = new long[rows[0].length];
+            for (int[] row : rows) for (int j = 0; j < sums.length; j++) sums[j] += row[j];
+            return sums;
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            long[] sums = a.clone();
+            for (int j = 0; j < sums.length; j++) sums[j] += b[j];
+            return sums;
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total;
+        }
+    },
+
+    /** Sum of the element-wise product with a second matrix of the same shape, as a Long. */
+    DOT {
+        @Override
+        long[] partial(int[][] rows, int[][] other) {
+            long dot = 0;
+            for (int i = 0; i < rows.length; i++) {
+                int[] x = rows[i], y = other[i];
+                if (x.length != y.length) throw new IllegalArgumentException("DOT of rows of different widths");
+                for (int j = 0; j < x.length; j++) dot += (long) x[j] * y[j];
+            }
+            return new long[]{dot};
+        }
+
+        @Override
+        long[] merge(long[] a, long[] b) {
+            return new long[]{a[0] + b[0]};
+        }
+
+        @Override
+        Object finish(long[] total) {
+            return total.length > 0 ? total[0] : 0L;
+        }
+
+        @Override
+        boolean binary() {
+            return true;
+        }
+    };
+
+    static final String PREFIX = "REDUCE_";
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * The worker's partial over one band; other is the matching band of the second matrix for DOT.
+     */
+    abstract long[] partial(int[][] rows, int[][] other);
+
+    /**
+     * Merges two non-empty partials, a from the bands before b.
+     */
+    abstract long[] merge(long[] a, long[] b);
+
+    abstract Object finish(long[] total);
+
+    /**
+     * True if the reduction reads a second matrix, sent side by side with the first.
+     */
+    boolean binary() {
+        return false;
+    }
+
+    long[] combine(long[] a, long[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        return merge(a, b);
+    }
+
+    public String operation() {
+        return PREFIX + name();
+    }
+
+    /**
+     * The task operation for a binary reduction whose first matrix is leftCols wide.
+     */
+    String operation(int leftCols) {
+        return operation() + " " + leftCols;
+    }
+
+    /**
+     * The reduction named by a REDUCE_ operation, or null for any other operation.
+     */
+    public static Reduction forOperation(String operation) {
+        if (!operation.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) return null;
+        int space = operation.indexOf(' ');
+        try {
+            return valueOf(operation.substring(PREFIX.length(), space < 0 ? operation.length() : space).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The first matrix's width named by a binary reduction's operation, or -1 if none is given.
+     */
+    static int leftCols(String operation) {
+        int space = operation.indexOf(' ');
+        return space < 0 ? -1 : Integer.parseInt(operation.substring(space + 1).trim());
+    }
+
+    long[] partial(int[][] band) {
+        return partial(band, -1);
+    }
+
+    /**
+     * Runs the worker side on a band: for a binary reduction the band holds both
+     * matrices side by side, the first in the leftCols columns of each row.
+     */
+    long[] partial(int[][] band, int leftCols) {
+        if (!binary()) return partial(band, null);
+        if (leftCols < 0) throw new IllegalArgumentException(operation() + " needs the first matrix's width");
+        int[][] left = new int[band.length][];
+        int[][] right = new int[band.length][];
+        for (int i = 0; i < band.length; i++) {
+            if (band[i].length < leftCols) {
+                throw new IllegalArgumentException("Row " + i + " is " + band[i].length + " wide, first matrix "
+                        + leftCols);
+            }
+            left[i] = Arrays.copyOfRange(band[i], 0, leftCols);
+            right[i] = Arrays.copyOfRange(band[i], leftCols, band[i].length);
+        }
+        return partial(left, right);
+    }
+
+    /**
+     * A partial as one row of ints, high word first, to travel as a RESULT row block.
+     */
+    static int[][] pack(long[] partial) {
+        int[] row = new int[2 * partial.length];
+        for (int i = 0; i < partial.length; i++) {
+            row[2 * i] = (int) (partial[i] >>> 32);
+            row[2 * i + 1] = (int) partial[i];
+        }
+        return new int[][]{row};
+    }
+
+    static long[] unpack(int[] row) {
+        long[] partial = new long[row.length / 2];
+        for (int i = 0; i < partial.length; i++) {
+            partial[i] = ((long) row[2 * i] << 32) | (row[2 * i + 1] & 0xFFFFFFFFL);
+        }
+        return partial;
+    }
+}
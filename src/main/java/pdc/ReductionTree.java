@@ -0,0 +1,63 @@
+package pdc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Combines one partial per band into a total with a binary tree, as partials arrive.
+ *
+ * Leaves are the bands in row order. Each internal node counts its children's arrivals;
+ * whichever thread delivers the second child merges the pair and carries on towards the
+ * root. Merging is therefore spread over the threads that decode results instead of
+ * being done all at the end on one, and neighbours are always merged in band order.
+ */
+final class ReductionTree {
+
+    private final Reduction reduction;
+    private final int leaves;
+    private final long[][] nodes;
+    private final AtomicIntegerArray arrivals;
+    private final CompletableFuture<long[]> total = new CompletableFuture<>();
+
+    ReductionTree(Reduction reduction, int bands) {
+        this.reduction = reduction;
+        int size = 1;
+        while (size < bands) size <<= 1;
+        this.leaves = size;
+        this.nodes = new long[2 * size][];
+        this.arrivals = new AtomicIntegerArray(size);
+        // padding leaves arrive empty up front
+        for (int leaf = bands; leaf < size; leaf++) arrive(size + leaf, new long[0]);
+    }
+
+    /**
+     * Delivers band's partial. Each band must be offered exactly once.
+     */
+    void offer(int band, long[] partial) {
+        arrive(leaves + band, partial);
+    }
+
+    private void arrive(int node, long[] value) {
+        nodes[node] = value;
+        while (node > 1) {
+            int parent = node >>> 1;
+            // the first child to arrive stops here; the second merges both
+            if (arrivals.incrementAndGet(parent) < 2) return;
+            nodes[parent] = reduction.combine(nodes[2 * parent], nodes[2 * parent + 1]);
+            nodes[2 * parent] = nodes[2 * parent + 1] = null;
+            node = parent;
+        }
+        total.complete(nodes[1]);
+    }
+
+    /**
+     * The merged partials once every band has been offered.
+     */
+    CompletableFuture<long[]> total() {
+        return total;
+    }
+
+    Object result() {
+        return reduction.finish(total.join());
+    }
+}
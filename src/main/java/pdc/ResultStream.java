@@ -0,0 +1,111 @@
+package pdc;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Completed row bands of one job, delivered as they finish rather than all at the end.
+ * Bands arrive in completion order, not row order; each RowBlock's rows are the job's
+ * result rows themselves, not copies.
+ *
+ * Iterate it from a single consumer thread: next() blocks until another band is ready,
+ * and iteration ends once every band was delivered. If any band failed or the job ran
+ * past its deadline, iteration ends with a CompletionException carrying the cause
+ * after all bands that did finish. cancel() abandons the rest of the job.
+ *
+ * A sparse-output job (Master.multiplySparse) delivers no bands: its bands stay sparse
+ * on their tasks, and expanding each one here would hold the whole dense product.
+ */
+public class ResultStream implements Iterable<Payloads.RowBlock> {
+
+    private static final Payloads.RowBlock END = new Payloads.RowBlock(-1, new int[0][]);
+
+    private final Master.Job job;
+    private final BlockingQueue<Payloads.RowBlock> ready = new LinkedBlockingQueue<>();
+
+    ResultStream(Master.Job job) {
+        this.job = job;
+        job.done.whenComplete((ignored, error) -> ready.offer(END));
+    }
+
+    /**
+     * Called once per band, before the band's task completes.
+     */
+    void offer(Master.Task task) {
+        int[][] rows = new int[task.rowCount][];
+        System.arraycopy(task.output, task.firstRow, rows, 0, task.rowCount);
+        ready.offer(new Payloads.RowBlock(task.firstRow, rows));
+    }
+
+    public long jobId() {
+        return job.id;
+    }
+
+    /**
+     * Completes with the full result once every band is done. Rows of failed bands are null.
+     */
+    public CompletableFuture<int[][]> result() {
+        return job.done.handle((ignored, error) -> job.output);
+    }
+
+    /**
+     * Completes when the job ends; exceptionally if any band failed, the deadline
+     * passed or the job was cancelled.
+     */
+    public CompletableFuture<Void> completion() {
+        return job.done;
+    }
+
+    /**
+     * Stops the job: queued bands are dropped and running ones cancelled on their workers.
+     */
+    public void cancel() {
+        job.done.completeExceptionally(new CancellationException("Job " + job.id + " cancelled"));
+    }
+
+    @Override
+    public Iterator<Payloads.RowBlock> iterator() {
+        return new Iterator<Payloads.RowBlock>() {
+            private Payloads.RowBlock next;
+            private boolean ended;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) return true;
+                if (ended) return false;
+                try {
+                    next = ready.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    throw new CompletionException(e);
+                }
+                if (next != END) return true;
+
+                next = null;
+                ended = true;
+                if (job.done.isCompletedExceptionally()) {
+                    try {
+                        job.done.join();
+                    } catch (CancellationException e) {
+                        throw new CompletionException(e);
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Payloads.RowBlock next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Payloads.RowBlock block = next;
+                next = null;
+                return block;
+            }
+        };
+    }
+}
@@ -0,0 +1,265 @@
+package pdc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Pipelined request/reply RPC with one worker. Requests go out on whichever connection
+ * currently carries the worker's session, so calls survive a reconnect.
+ * Every request payload starts with an 8-byte correlation id that the worker echoes
+ * at the start of its reply, so up to a window of N requests can be outstanding at once
+ * and replies may come back in any order. The connection's single reader hands every
+ * reply frame to complete(), which decodes it and completes the matching future.
+ *
+ * Request payload: [long correlationId][body]
+ * Reply payload:   [long correlationId][body]  (RESULT)
+ *                  [long correlationId][error] (TASK_ERROR)
+ *                  [long correlationId][long operandId] (OPERAND_MISS)
+ */
+public class RpcChannel {
+
+    public static final int DEFAULT_WINDOW = Env.intValue("CSM218_RPC_WINDOW", 8);
+
+    /**
+     * Decodes a reply on the reader thread; the payload view is only valid during the call.
+     */
+    public interface ReplyDecoder<T> {
+        T decode(Message header, ByteBuffer payload) throws IOException;
+    }
+
+    private final Master.WorkerInfo connection;
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final ConcurrentMap<Long, Call<?>> pending = new ConcurrentHashMap<>();
+
+    // Window accounting, guarded by this
+    private int window;
+    private int inFlight;
+    private boolean closed;
+
+    public RpcChannel(Master.WorkerInfo connection, int window) {
+        this.connection = connection;
+        this.window = Math.max(1, window);
+    }
+
+    // ================== Window ==================
+
+    public synchronized void setWindow(int window) {
+        this.window = Math.max(1, window);
+        notifyAll();
+    }
+
+    public synchronized int window() {
+        return window;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized boolean hasCapacity() {
+        return !closed && inFlight < window;
+    }
+
+    private synchronized void acquireSlot() throws IOException, InterruptedException {
+        while (!closed && inFlight >= window) wait();
+        if (closed) throw new IOException("Connection closed: " + connection.id);
+        inFlight++;
+    }
+
+    private synchronized boolean tryAcquireSlot() {
+        if (closed || inFlight >= window) return false;
+        inFlight++;
+        return true;
+    }
+
+    private synchronized void releaseSlot() {
+        inFlight--;
+        notifyAll();
+    }
+
+    // ================== Calls ==================
+
+    /**
+     * Sends a request, first waiting for a free slot in the window.
+     * The returned future completes on the reader thread when the reply arrives.
+     */
+    public <T> Call<T> call(String messageType, int bodyLength, Consumer<ByteBuffer> bodyWriter,
+                            ReplyDecoder<T> decoder) {
+        try {
+            acquireSlot();
+        } catch (IOException e) {
+            return Call.failed(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Call.failed(e);
+        }
+        return send(messageType, bodyLength, bodyWriter, decoder);
+    }
+
+    /**
+     * Sends a request only if the window has room; returns null otherwise.
+     */
+    public <T> Call<T> tryCall(String messageType, int bodyLength, Consumer<ByteBuffer> bodyWriter,
+                               ReplyDecoder<T> decoder) {
+        if (!tryAcquireSlot()) return null;
+        return send(messageType, bodyLength, bodyWriter, decoder);
+    }
+
+    private <T> Call<T> send(String messageType, int bodyLength, Consumer<ByteBuffer> bodyWriter,
+                             ReplyDecoder<T> decoder) {
+        long correlationId = nextCorrelationId.incrementAndGet();
+        Call<T> call = new Call<>(correlationId, decoder);
+        pending.put(correlationId, call);
+        try {
+            Message header = new Message(Message.PROTOCOL_MAGIC, 1, messageType, Message.STUDENT_ID, "MASTER", null);
+            connection.link.sendMessage(header, 8 + bodyLength, out -> {
+                out.putLong(correlationId);
+                bodyWriter.accept(out);
+            });
+        } catch (IOException | RuntimeException e) {
+            fail(correlationId, e);
+        }
+        return call;
+    }
+
+    /**
+     * Cancels the outstanding call with correlationId: frees its slot, fails its future
+     * and sends the worker a best-effort CANCEL [correlationId] so it can skip the work.
+     * A late reply is dropped. Does nothing if the call already finished.
+     */
+    public void cancel(long correlationId) {
+        if (!fail(correlationId, new CancellationException("Cancelled"))) return;
+        try {
+            Message header = new Message(Message.PROTOCOL_MAGIC, 1, "CANCEL", Message.STUDENT_ID, "MASTER", null);
+            connection.link.sendMessage(header, 8, out -> out.putLong(correlationId));
+        } catch (IOException ignored) {
+            // connection is going away; the worker's copy dies with it
+        }
+    }
+
+    // ================== Replies ==================
+
+    /**
+     * Completes the call a reply frame belongs to. Returns false if the correlation id
+     * is unknown (already failed, cancelled or never sent).
+     */
+    public boolean complete(Message header, ByteBuffer payload) {
+        long correlationId = payload.getLong();
+        Call<?> call = pending.remove(correlationId);
+        if (call == null) return false;
+        releaseSlot();
+
+        if ("TASK_ERROR".equalsIgnoreCase(header.messageType)) {
+            String reason;
+            try {
+                reason = Payloads.getString(payload);
+            } catch (IOException e) {
+                reason = "malformed TASK_ERROR";
+            }
+            call.completeExceptionally(new RemoteTaskException(header.sender, reason));
+        } else if ("OPERAND_MISS".equalsIgnoreCase(header.messageType)) {
+            call.completeExceptionally(new OperandMissException(header.sender, payload.getLong()));
+        } else {
+            call.decode(header, payload);
+        }
+        return true;
+    }
+
+    /**
+     * Fails every outstanding call and rejects new ones; used when the connection drops.
+     */
+    public void close(Throwable cause) {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Long correlationId : pending.keySet()) fail(correlationId, cause);
+    }
+
+    /**
+     * Correlation id of the latest request sent.
+     */
+    public long lastCorrelationId() {
+        return nextCorrelationId.get();
+    }
+
+    /**
+     * After a reconnect: fails every outstanding call up to and including
+     * throughCorrelationId that the worker does not hold, since its request or reply
+     * was lost with the old connection. Returns how many were failed.
+     */
+    public int failMissing(long throughCorrelationId, Set<Long> held, Throwable cause) {
+        int failed = 0;
+        for (Long correlationId : pending.keySet()) {
+            if (correlationId <= throughCorrelationId && !held.contains(correlationId) && fail(correlationId, cause)) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private boolean fail(long correlationId, Throwable cause) {
+        Call<?> call = pending.remove(correlationId);
+        if (call == null) return false;
+        releaseSlot();
+        call.completeExceptionally(cause);
+        return true;
+    }
+
+    /**
+     * The worker received the request and reported that it failed (TASK_ERROR),
+     * as opposed to the connection failing underneath it.
+     */
+    public static class RemoteTaskException extends IOException {
+        public RemoteTaskException(String worker, String reason) {
+            super("TASK_ERROR from " + worker + ": " + reason);
+        }
+    }
+
+    /**
+     * The worker no longer holds an operand the request referred to; resend it and retry.
+     */
+    public static class OperandMissException extends IOException {
+        public final long operandId;
+
+        public OperandMissException(String worker, long operandId) {
+            super("Operand " + Long.toHexString(operandId) + " not cached on " + worker);
+            this.operandId = operandId;
+        }
+    }
+
+    /**
+     * The reply to one request, and the correlation id it was sent under (0 if it
+     * failed before it could be sent).
+     */
+    public static final class Call<T> extends CompletableFuture<T> {
+        public final long correlationId;
+        private final ReplyDecoder<T> decoder;
+
+        private Call(long correlationId, ReplyDecoder<T> decoder) {
+            this.correlationId = correlationId;
+            this.decoder = decoder;
+        }
+
+        static <T> Call<T> failed(Throwable cause) {
+            Call<T> call = new Call<>(0, null);
+            call.completeExceptionally(cause);
+            return call;
+        }
+
+        void decode(Message header, ByteBuffer payload) {
+            try {
+                complete(decoder.decode(header, payload));
+            } catch (IOException | RuntimeException e) {
+                completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package pdc;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Pull-based task scheduler for the Master, run on a single dispatcher thread.
+ *
+ * Tasks wait in the shared backlog (Master.pendingTasks), which hands out the tasks of
+ * concurrent jobs in turn. Each live worker keeps a prefetch deque topped up from the
+ * backlog to the size of its RPC window; every task goes to the less loaded of two
+ * random workers that advertise its operation, where load is queued plus in-flight
+ * tasks per advertised core. Whenever a worker has a free slot in its window it takes
+ * from the head of its own deque, then steals from the tail of the most backlogged
+ * worker's deque that holds a task it can run. Fast workers therefore drain more work
+ * than slow ones, and tasks put back on the backlog (failures, dead workers) are
+ * redispatched automatically. Tasks no live worker supports stay on the backlog until
+ * one joins. Backup copies of stragglers only go to workers with nothing else to do. A
+ * pinned task (a grid cell) only ever goes to its own worker and is never stolen. Tasks
+ * of finished or abandoned jobs are dropped wherever the dispatcher finds them. Replies
+ * are handed to the Master on the completions executor, never on the connection's
+ * reader, which may be an event loop shared with other workers.
+ */
+public class Scheduler implements Runnable {
+
+    private static final long IDLE_WAIT_MS = 50;
+
+    private final Master master;
+    private final Queue<Master.Task> backlog;
+    private final Collection<Master.WorkerInfo> workers;
+    private final Executor completions;
+    private final Queue<Master.Task> speculative = new ConcurrentLinkedQueue<>();
+    private final Random random = new Random();
+
+    // Owned by the dispatcher thread
+    private final Map<Master.WorkerInfo, ArrayDeque<Master.Task>> queues = new LinkedHashMap<>();
+
+    private final Object signalLock = new Object();
+    private boolean signalled;
+
+    public Scheduler(Master master, Queue<Master.Task> backlog, Collection<Master.WorkerInfo> workers,
+                     Executor completions) {
+        this.master = master;
+        this.backlog = backlog;
+        this.workers = workers;
+        this.completions = completions;
+    }
+
+    /**
+     * Wakes the dispatcher: new tasks, a freed window slot or a membership change.
+     */
+    public void signal() {
+        synchronized (signalLock) {
+            signalled = true;
+            signalLock.notifyAll();
+        }
+    }
+
+    /**
+     * Asks for a backup copy of a straggling task on an idle worker.
+     */
+    public void speculate(Master.Task task) {
+        speculative.add(task);
+        signal();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean progress;
+                try {
+                    progress = dispatchRound();
+                } catch (RuntimeException e) {
+                    System.err.println("Scheduler error: " + e);
+                    progress = false;
+                }
+                if (!progress) awaitSignal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (ArrayDeque<Master.Task> queue : queues.values()) backlog.addAll(queue);
+            queues.clear();
+        }
+    }
+
+    private void awaitSignal() throws InterruptedException {
+        synchronized (signalLock) {
+            if (!signalled) signalLock.wait(IDLE_WAIT_MS);
+            signalled = false;
+        }
+    }
+
+    /**
+     * One pass over every live worker. Returns true if any task moved.
+     */
+    boolean dispatchRound() {
+        List<Master.WorkerInfo> live = refreshMembership();
+        if (live.isEmpty()) return false;
+
+        boolean progress = prefetch(live);
+        for (Master.WorkerInfo worker : live) {
+            ArrayDeque<Master.Task> own = queues.get(worker);
+            while (worker.rpc.hasCapacity()) {
+                Master.Task task = own.pollFirst();
+                if (task == null) task = steal(worker);
+                if (task == null) break;
+                if (task.done.isDone()) continue;
+
+                if (!send(worker, task)) {
+                    own.addFirst(task);
+                    break;
+                }
+                progress = true;
+            }
+        }
+        if (!speculative.isEmpty() && backlog.isEmpty()) progress |= dispatchBackups(live);
+        return progress;
+    }
+
+    /**
+     * Sends queued straggler backups to workers whose own deque is empty, never to a
+     * worker already running a copy of the same task.
+     */
+    private boolean dispatchBackups(List<Master.WorkerInfo> live) {
+        boolean progress = false;
+        for (Master.WorkerInfo worker : live) {
+            if (!queues.get(worker).isEmpty() || !worker.rpc.hasCapacity()) continue;
+
+            Iterator<Master.Task> iter = speculative.iterator();
+            while (iter.hasNext()) {
+                Master.Task task = iter.next();
+                if (task.done.isDone() || task.attempts.isEmpty()) {
+                    iter.remove();
+                } else if (worker.capabilities.supports(task.operation)
+                        && task.attempts.stream().noneMatch(a -> a.worker == worker)) {
+                    iter.remove();
+                    progress |= send(worker, task);
+                    break;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Tracks joins and departures; a departed worker's prefetched tasks go back on the backlog.
+     */
+    private List<Master.WorkerInfo> refreshMembership() {
+        List<Master.WorkerInfo> live = new ArrayList<>();
+        Set<Master.WorkerInfo> liveSet = new HashSet<>();
+        for (Master.WorkerInfo worker : workers) {
+            if (master.isLive(worker)) {
+                live.add(worker);
+                liveSet.add(worker);
+                queues.computeIfAbsent(worker, w -> new ArrayDeque<>());
+            }
+        }
+
+        Iterator<Map.Entry<Master.WorkerInfo, ArrayDeque<Master.Task>>> iter = queues.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Master.WorkerInfo, ArrayDeque<Master.Task>> e = iter.next();
+            if (!liveSet.contains(e.getKey())) {
+                backlog.addAll(e.getValue());
+                iter.remove();
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Moves backlog tasks onto worker deques until no deque has room, placing each task
+     * by power-of-two-choices among the workers that support its operation. Tasks whose
+     * supporting workers are all full, or that no worker supports, go back on the backlog.
+     */
+    private boolean prefetch(List<Master.WorkerInfo> live) {
+        boolean moved = false;
+        List<Master.Task> deferred = new ArrayList<>();
+        List<Master.WorkerInfo> candidates = new ArrayList<>();
+        while (hasRoom(live)) {
+            Master.Task task = backlog.poll();
+            if (task == null) break;
+            if (task.done.isDone()) continue;
+
+            candidates.clear();
+            for (Master.WorkerInfo worker : live) {
+                if (queues.get(worker).size() < worker.rpc.window()
+                        && (task.pinned == null || task.pinned == worker)
+                        && worker.capabilities.supports(task.operation)) {
+                    candidates.add(worker);
+                }
+            }
+            if (candidates.isEmpty()) {
+                deferred.add(task);
+                continue;
+            }
+            queues.get(choose(candidates)).addLast(task);
+            moved = true;
+        }
+        backlog.addAll(deferred);
+        return moved;
+    }
+
+    private boolean hasRoom(List<Master.WorkerInfo> live) {
+        for (Master.WorkerInfo worker : live) {
+            if (queues.get(worker).size() < worker.rpc.window()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Picks the less loaded of two random candidates.
+     */
+    private Master.WorkerInfo choose(List<Master.WorkerInfo> candidates) {
+        int n = candidates.size();
+        if (n == 1) return candidates.get(0);
+        int first = random.nextInt(n);
+        int second = random.nextInt(n - 1);
+        if (second >= first) second++;
+        Master.WorkerInfo a = candidates.get(first);
+        Master.WorkerInfo b = candidates.get(second);
+        return load(a) <= load(b) ? a : b;
+    }
+
+    private double load(Master.WorkerInfo worker) {
+        return (double) (queues.get(worker).size() + worker.rpc.inFlight()) / worker.capabilities.cores;
+    }
+
+    /**
+     * Takes the newest unpinned task thief supports from the longest deque other than
+     * thief's that holds one; deques are tried longest first.
+     */
+    private Master.Task steal(Master.WorkerInfo thief) {
+        List<ArrayDeque<Master.Task>> victims = new ArrayList<>(queues.size());
+        for (Map.Entry<Master.WorkerInfo, ArrayDeque<Master.Task>> e : queues.entrySet()) {
+            if (e.getKey() != thief && !e.getValue().isEmpty()) victims.add(e.getValue());
+        }
+        victims.sort(Comparator.comparingInt(ArrayDeque<Master.Task>::size).reversed());
+        for (ArrayDeque<Master.Task> victim : victims) {
+            Iterator<Master.Task> iter = victim.descendingIterator();
+            while (iter.hasNext()) {
+                Master.Task task = iter.next();
+                if (task.pinned == null && thief.capabilities.supports(task.operation)) {
+                    iter.remove();
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tasks prefetched for worker that have not been sent yet.
+     */
+    int queued(Master.WorkerInfo worker) {
+        ArrayDeque<Master.Task> queue = queues.get(worker);
+        return queue != null ? queue.size() : 0;
+    }
+
+    private boolean send(Master.WorkerInfo worker, Master.Task task) {
+        Master.Attempt attempt = master.onTaskDispatched(task, worker);
+        RpcChannel.Call<Boolean> reply = worker.sendTask(task);
+        if (reply == null) {
+            master.onTaskRecalled(task, attempt);
+            return false;
+        }
+        attempt.correlationId = reply.correlationId;
+        reply.whenCompleteAsync((committed, error) -> {
+            master.onTaskFinished(task, attempt, Boolean.TRUE.equals(committed), error);
+            signal();
+        }, completions);
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package pdc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Worker-side kernels for a CSR left-hand matrix. Work is proportional to the non-zeros
+ * touched rather than to the dense shape. Results wrap on overflow like int arithmetic.
+ *
+ * Sparse x dense adds v x b[k] into c[i] for every stored a[i][k] = v, a row-wide axpy
+ * the JIT vectorises. Sparse x sparse is Gustavson's row-by-row algorithm with a dense
+ * accumulator and a marker per output column, so each output row costs only the
+ * products it actually has.
+ */
+public final class SparseKernels {
+
+    private static final int MIN_PARALLEL_ROWS = 16;
+    private static final long MIN_PARALLEL_WORK = 1L << 20;
+
+    private SparseKernels() {}
+
+    /**
+     * Computes a x b into dense rows, splitting rows of a across pool (sequentially if
+     * pool is null). b must be rectangular with a.cols rows.
+     */
+    public static int[][] multiply(SparseMatrix a, int[][] b, ForkJoinPool pool) {
+        SparseMatrix csr = a.toCsr();
+        if (b.length != csr.cols) {
+            throw new IllegalArgumentException("Matrix has " + csr.cols + " columns, operand has " + b.length + " rows");
+        }
+        int n = b.length > 0 ? b[0].length : 0;
+        for (int k = 0; k < b.length; k++) {
+            if (b[k].length != n) throw new IllegalArgumentException("Ragged operand row " + k);
+        }
+        int[][] c = new int[csr.rows][n];
+        MultiplyRows task = new MultiplyRows(csr, b, c, 0, csr.rows);
+        if (pool != null && csr.rows >= 2 * MIN_PARALLEL_ROWS && (long) csr.nnz() * n >= MIN_PARALLEL_WORK) {
+            pool.invoke(task);
+        } else {
+            task.compute();
+        }
+        return c;
+    }
+
+    /**
+     * Computes a x b as a CSR matrix. Entries that cancel to zero are not stored.
+     */
+    public static SparseMatrix multiply(SparseMatrix a, SparseMatrix b) {
+        SparseMatrix x = a.toCsr();
+        SparseMatrix y = b.toCsr();
+        if (x.cols != y.rows) {
+            throw new IllegalArgumentException("Inner dimensions differ: " + x.cols + " != " + y.rows);
+        }
+        int n = y.cols;
+        int[] acc = new int[n];
+        int[] marker = new int[n];
+        int[] touched = new int[n];
+        Arrays.fill(marker, -1);
+
+        int[] pointers = new int[x.rows + 1];
+        int[] indices = new int[Math.max(16, x.nnz())];
+        int[] values = new int[indices.length];
+        int size = 0;
+        for (int i = 0; i < x.rows; i++) {
+            int count = 0;
+            for (int e = x.pointers[i]; e < x.pointers[i + 1]; e++) {
+                int k = x.indices[e];
+                int v = x.values[e];
+                for (int f = y.pointers[k]; f < y.pointers[k + 1]; f++) {
+                    int j = y.indices[f];
+                    if (marker[j] != i) {
+                        marker[j] = i;
+                        acc[j] = 0;
+                        touched[count++] = j;
+                    }
+                    acc[j] += v * y.values[f];
+                }
+            }
+            Arrays.sort(touched, 0, count);
+            if (size + count > indices.length) {
+                int capacity = Math.max(size + count, indices.length * 2);
+                indices = Arrays.copyOf(indices, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            for (int t = 0; t < count; t++) {
+                int j = touched[t];
+                if (acc[j] == 0) continue;
+                indices[size] = j;
+                values[size++] = acc[j];
+            }
+            pointers[i + 1] = size;
+        }
+        return new SparseMatrix(x.rows, n, SparseMatrix.Layout.CSR, pointers,
+                Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * c[from, to) = a[from, to) x b, splitting the rows at the middle non-zero.
+     */
+    private static final class MultiplyRows extends RecursiveAction {
+        private final SparseMatrix a;
+        private final int[][] b;
+        private final int[][] c;
+        private final int from;
+        private final int to;
+
+        MultiplyRows(SparseMatrix a, int[][] b, int[][] c, int from, int to) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (getPool() != null && to - from >= 2 * MIN_PARALLEL_ROWS) {
+                int half = a.pointers[from] + a.nnz(from, to - from) / 2;
+                int mid = Arrays.binarySearch(a.pointers, from, to, half);
+                mid = Math.min(to - MIN_PARALLEL_ROWS, Math.max(from + MIN_PARALLEL_ROWS, mid < 0 ? -mid - 1 : mid));
+                invokeAll(new MultiplyRows(a, b, c, from, mid), new MultiplyRows(a, b, c, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int[] ci = c[i];
+                for (int e = a.pointers[i]; e < a.pointers[i + 1]; e++) {
+                    int v = a.values[e];
+                    int[] bk = b[a.indices[e]];
+                    for (int j = 0; j < ci.length; j++) {
+                        ci[j] += v * bk[j];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pdc;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An int matrix that stores only its non-zero entries, compressed by row (CSR) or by
+ * column (CSC).
+ *
+ * For CSR the major dimension is rows: the entries of row i are
+ * indices/values[pointers[i], pointers[i + 1]), with indices the column numbers in
+ * ascending order. CSC is the same with rows and columns swapped, so the CSC form of a
+ * matrix shares its arrays with the CSR form of the transpose and transpose() is free.
+ */
+public final class SparseMatrix {
+
+    public enum Layout { CSR, CSC }
+
+    public final int rows;
+    public final int cols;
+    public final Layout layout;
+    final int[] pointers;
+    final int[] indices;
+    final int[] values;
+
+    SparseMatrix(int rows, int cols, Layout layout, int[] pointers, int[] indices, int[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.layout = layout;
+        this.pointers = pointers;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /**
+     * Builds a matrix from compressed arrays, checking that they are consistent.
+     */
+    public static SparseMatrix of(Layout layout, int rows, int cols, int[] pointers, int[] indices, int[] values) {
+        int major = layout == Layout.CSR ? rows : cols;
+        int minor = layout == Layout.CSR ? cols : rows;
+        if (rows < 0 || cols < 0 || pointers.length != major + 1 || pointers[0] != 0
+                || indices.length != values.length || pointers[major] != indices.length) {
+            throw new IllegalArgumentException("Inconsistent " + layout + " arrays for " + rows + "x" + cols);
+        }
+        for (int m = 0; m < major; m++) {
+            if (pointers[m + 1] < pointers[m]) throw new IllegalArgumentException("Pointers decrease at " + m);
+            for (int e = pointers[m]; e < pointers[m + 1]; e++) {
+                if (indices[e] < 0 || indices[e] >= minor || (e > pointers[m] && indices[e] <= indices[e - 1])) {
+                    throw new IllegalArgumentException("Index " + indices[e] + " out of order or range at " + e);
+                }
+            }
+        }
+        return new SparseMatrix(rows, cols, layout, pointers, indices, values);
+    }
+
+    /**
+     * CSR form of a dense rectangular matrix.
+     */
+    public static SparseMatrix fromDense(int[][] dense) {
+        int rows = dense.length;
+        int cols = rows > 0 ? dense[0].length : 0;
+        int[] pointers = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            if (dense[i].length != cols) throw new IllegalArgumentException("Ragged row " + i);
+            int count = 0;
+            for (int v : dense[i]) if (v != 0) count++;
+            pointers[i + 1] = pointers[i] + count;
+        }
+        int[] indices = new int[pointers[rows]];
+        int[] values = new int[pointers[rows]];
+        for (int i = 0, e = 0; i < rows; i++) {
+            int[] row = dense[i];
+            for (int j = 0; j < cols; j++) {
+                if (row[j] == 0) continue;
+                indices[e] = j;
+                values[e++] = row[j];
+            }
+        }
+        return new SparseMatrix(rows, cols, Layout.CSR, pointers, indices, values);
+    }
+
+    /**
+     * Stacks CSR bands of equal width on top of each other.
+     */
+    public static SparseMatrix stackRows(List<SparseMatrix> bands, int cols) {
+        int rows = 0;
+        int nnz = 0;
+        for (SparseMatrix band : bands) {
+            if (band.layout != Layout.CSR || band.cols != cols) {
+                throw new IllegalArgumentException("Band " + band + " is not a CSR band " + cols + " wide");
+            }
+            rows += band.rows;
+            nnz += band.nnz();
+        }
+        int[] pointers = new int[rows + 1];
+        int[] indices = new int[nnz];
+        int[] values = new int[nnz];
+        int row = 0;
+        int base = 0;
+        for (SparseMatrix band : bands) {
+            for (int i = 1; i <= band.rows; i++) pointers[row + i] = base + band.pointers[i];
+            System.arraycopy(band.indices, 0, indices, base, band.nnz());
+            System.arraycopy(band.values, 0, values, base, band.nnz());
+            row += band.rows;
+            base += band.nnz();
+        }
+        return new SparseMatrix(rows, cols, Layout.CSR, pointers, indices, values);
+    }
+
+    public int nnz() {
+        return indices.length;
+    }
+
+    /**
+     * Fraction of entries that are stored.
+     */
+    public double density() {
+        long cells = (long) rows * cols;
+        return cells > 0 ? (double) nnz() / cells : 0;
+    }
+
+    /**
+     * Non-zeros in CSR rows (or CSC columns) [first, first + count).
+     */
+    public int nnz(int first, int count) {
+        return pointers[first + count] - pointers[first];
+    }
+
+    public int get(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") outside " + rows + "x" + cols);
+        }
+        int major = layout == Layout.CSR ? row : col;
+        int minor = layout == Layout.CSR ? col : row;
+        int at = Arrays.binarySearch(indices, pointers[major], pointers[major + 1], minor);
+        return at >= 0 ? values[at] : 0;
+    }
+
+    /**
+     * The transpose, sharing arrays (CSR becomes CSC and the other way round).
+     */
+    public SparseMatrix transpose() {
+        return new SparseMatrix(cols, rows, layout == Layout.CSR ? Layout.CSC : Layout.CSR, pointers, indices, values);
+    }
+
+    public SparseMatrix toCsr() {
+        return layout == Layout.CSR ? this : recompress();
+    }
+
+    public SparseMatrix toCsc() {
+        return layout == Layout.CSC ? this : recompress();
+    }
+
+    /**
+     * The same matrix compressed along the other dimension, by counting sort.
+     */
+    private SparseMatrix recompress() {
+        int major = layout == Layout.CSR ? rows : cols;
+        int minor = layout == Layout.CSR ? cols : rows;
+        int[] next = new int[minor + 1];
+        for (int index : indices) next[index + 1]++;
+        for (int m = 0; m < minor; m++) next[m + 1] += next[m];
+        int[] pointers = next.clone();
+        int[] indices = new int[nnz()];
+        int[] values = new int[nnz()];
+        for (int m = 0; m < major; m++) {
+            for (int e = this.pointers[m]; e < this.pointers[m + 1]; e++) {
+                int at = next[this.indices[e]]++;
+                indices[at] = m;
+                values[at] = this.values[e];
+            }
+        }
+        return new SparseMatrix(rows, cols, layout == Layout.CSR ? Layout.CSC : Layout.CSR, pointers, indices, values);
+    }
+
+    public int[][] toDense() {
+        int[][] dense = new int[rows][];
+        toDense(dense, 0);
+        return dense;
+    }
+
+    /**
+     * Writes this matrix as new dense rows dst[firstRow, firstRow + rows).
+     */
+    public void toDense(int[][] dst, int firstRow) {
+        for (int i = 0; i < rows; i++) dst[firstRow + i] = new int[cols];
+        int major = layout == Layout.CSR ? rows : cols;
+        for (int m = 0; m < major; m++) {
+            for (int e = pointers[m]; e < pointers[m + 1]; e++) {
+                if (layout == Layout.CSR) {
+                    dst[firstRow + m][indices[e]] = values[e];
+                } else {
+                    dst[firstRow + indices[e]][m] = values[e];
+                }
+            }
+        }
+    }
+
+    public long sizeBytes() {
+        return 4L * (pointers.length + indices.length + values.length) + 48;
+    }
+
+    @Override
+    public String toString() {
+        return layout + " " + rows + "x" + cols + " nnz=" + nnz();
+    }
+}
@@ -0,0 +1,74 @@
+package pdc;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flags in-flight tasks that are running far longer than their peers.
+ * Keeps the most recent completion times per operation and calls a task a straggler
+ * once it has been running for slowdown x the operation's p90, and never sooner
+ * than a fixed floor so tiny tasks are not duplicated on network jitter alone.
+ */
+public class StragglerDetector {
+
+    private static final int WINDOW = 256;
+    private static final int MIN_SAMPLES = 8;
+    private static final double QUANTILE = 0.9;
+
+    private final ConcurrentMap<String, Samples> byOperation = new ConcurrentHashMap<>();
+    private volatile double slowdown = 2.0;
+    private volatile long floorNanos = TimeUnit.MILLISECONDS.toNanos(200);
+
+    public void configure(double slowdown, long floorMs) {
+        this.slowdown = slowdown;
+        this.floorNanos = TimeUnit.MILLISECONDS.toNanos(floorMs);
+    }
+
+    /**
+     * Records how long a task of operation took, from dispatch to committed result.
+     */
+    public void observe(String operation, long elapsedNanos) {
+        byOperation.computeIfAbsent(operation, op -> new Samples()).add(elapsedNanos);
+    }
+
+    /**
+     * True if a task of operation that has been running for elapsedNanos is an outlier.
+     * Always false until enough tasks of that operation have completed.
+     */
+    public boolean isStraggler(String operation, long elapsedNanos) {
+        if (elapsedNanos < floorNanos) return false;
+        Samples samples = byOperation.get(operation);
+        if (samples == null) return false;
+        long quantile = samples.quantile();
+        return quantile > 0 && elapsedNanos > slowdown * quantile;
+    }
+
+    /**
+     * Ring of recent durations; the quantile is recomputed lazily after new samples.
+     */
+    private static final class Samples {
+        private final long[] ring = new long[WINDOW];
+        private int count;
+        private int next;
+        private long cachedQuantile = -1;
+
+        synchronized void add(long nanos) {
+            ring[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) count++;
+            cachedQuantile = -1;
+        }
+
+        synchronized long quantile() {
+            if (count < MIN_SAMPLES) return 0;
+            if (cachedQuantile < 0) {
+                long[] sorted = Arrays.copyOf(ring, count);
+                Arrays.sort(sorted);
+                cachedQuantile = sorted[Math.min(count - 1, (int) (QUANTILE * count))];
+            }
+            return cachedQuantile;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package pdc;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Strassen's divide-and-conquer multiply: one step turns an n x m by m x p product into
+ * seven half-size products plus matrix additions, instead of eight. Odd dimensions are
+ * padded with zeros, so any shapes work. Arithmetic wraps like int, so results match
+ * the classical product exactly.
+ *
+ * multiply() recurses locally on a ForkJoinPool down to cutoff and then uses the blocked
+ * kernel. Step exposes a single level so the Master can run the seven products as
+ * separate jobs across workers.
+ */
+public final class Strassen {
+
+    public static final int DEFAULT_CUTOFF = 512;
+
+    private Strassen() {}
+
+    public static int[][] multiply(int[][] a, int[][] b) {
+        return multiply(a, b, DEFAULT_CUTOFF, null);
+    }
+
+    /**
+     * Computes a x b, recursing while every dimension exceeds cutoff.
+     */
+    public static int[][] multiply(int[][] a, int[][] b, int cutoff, ForkJoinPool pool) {
+        Multiply task = new Multiply(a, b, Math.max(1, cutoff));
+        return pool != null ? pool.invoke(task) : task.compute();
+    }
+
+    private static final class Multiply extends RecursiveTask<int[][]> {
+        private final int[][] a;
+        private final int[][] b;
+        private final int cutoff;
+
+        Multiply(int[][] a, int[][] b, int cutoff) {
+            this.a = a;
+            this.b = b;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected int[][] compute() {
+            int n = a.length;
+            int m = b.length;
+            int p = m > 0 ? b[0].length : 0;
+            if (Math.min(n, Math.min(m, p)) <= cutoff) return MatrixKernels.multiply(a, b);
+
+            Step step = new Step(a, b);
+            int[][][] products = new int[7][][];
+            if (getPool() != null) {
+                Multiply[] tasks = new Multiply[7];
+                for (int i = 0; i < 7; i++) tasks[i] = new Multiply(step.left[i], step.right[i], cutoff);
+                invokeAll(tasks);
+                for (int i = 0; i < 7; i++) products[i] = tasks[i].join();
+            } else {
+                for (int i = 0; i < 7; i++) products[i] = new Multiply(step.left[i], step.right[i], cutoff).compute();
+            }
+            return step.combine(products);
+        }
+    }
+
+    /**
+     * One Strassen level: left[i] x right[i] for i in 0..6 are the independent products
+     * M1..M7, and combine() assembles the full result from them.
+     */
+    public static final class Step {
+        public final int[][][] left = new int[7][][];
+        public final int[][][] right = new int[7][][];
+        private final int n;
+        private final int p;
+
+        public Step(int[][] a, int[][] b) {
+            int m = b.length;
+            this.n = a.length;
+            this.p = m > 0 ? b[0].length : 0;
+            if (n > 0 && a[0].length != m) {
+                throw new IllegalArgumentException("Inner dimensions differ: " + a[0].length + " != " + m);
+            }
+            int n2 = (n + 1) / 2;
+            int m2 = (m + 1) / 2;
+            int p2 = (p + 1) / 2;
+
+            int[][] a11 = quadrant(a, 0, 0, n2, m2);
+            int[][] a12 = quadrant(a, 0, m2, n2, m2);
+            int[][] a21 = quadrant(a, n2, 0, n2, m2);
+            int[][] a22 = quadrant(a, n2, m2, n2, m2);
+            int[][] b11 = quadrant(b, 0, 0, m2, p2);
+            int[][] b12 = quadrant(b, 0, p2, m2, p2);
+            int[][] b21 = quadrant(b, m2, 0, m2, p2);
+            int[][] b22 = quadrant(b, m2, p2, m2, p2);
+
+            set(0, add(a11, a22, 1), add(b11, b22, 1));
+            set(1, add(a21, a22, 1), b11);
+            set(2, a11, add(b12, b22, -1));
+            set(3, a22, add(b21, b11, -1));
+            set(4, add(a11, a12, 1), b22);
+            set(5, add(a21, a11, -1), add(b11, b12, 1));
+            set(6, add(a12, a22, -1), add(b21, b22, 1));
+        }
+
+        private void set(int i, int[][] x, int[][] y) {
+            left[i] = x;
+            right[i] = y;
+        }
+
+        /**
+         * Assembles a x b from products[i] = left[i] x right[i].
+         */
+        public int[][] combine(int[][][] products) {
+            int[][] m1 = products[0], m2 = products[1], m3 = products[2], m4 = products[3];
+            int[][] m5 = products[4], m6 = products[5], m7 = products[6];
+            int n2 = (n + 1) / 2;
+            int p2 = (p + 1) / 2;
+            int[][] c = new int[n][p];
+            for (int i = 0; i < n; i++) {
+                int qi = i < n2 ? i : i - n2;
+                for (int j = 0; j < p; j++) {
+                    int qj = j < p2 ? j : j - p2;
+                    int value;
+                    if (i < n2 && j < p2) {
+                        value = m1[qi][qj] + m4[qi][qj] - m5[qi][qj] + m7[qi][qj];
+                    } else if (i < n2) {
+                        value = m3[qi][qj] + m5[qi][qj];
+                    } else if (j < p2) {
+                        value = m2[qi][qj] + m4[qi][qj];
+                    } else {
+                        value = m1[qi][qj] - m2[qi][qj] + m3[qi][qj] + m6[qi][qj];
+                    }
+                    c[i][j] = value;
+                }
+            }
+            return c;
+        }
+    }
+
+    /**
+     * rows x cols block of src starting at (row, col); cells past src's edge are zero.
+     */
+    static int[][] quadrant(int[][] src, int row, int col, int rows, int cols) {
+        int[][] q = new int[rows][cols];
+        for (int i = 0; i < rows && row + i < src.length; i++) {
+            int[] s = src[row + i];
+            int count = Math.min(cols, s.length - col);
+            if (count > 0) System.arraycopy(s, col, q[i], 0, count);
+        }
+        return q;
+    }
+
+    private static int[][] add(int[][] x, int[][] y, int sign) {
+        int[][] z = new int[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            int[] xi = x[i], yi = y[i];
+            int[] zi = new int[xi.length];
+            for (int j = 0; j < zi.length; j++) zi[j] = xi[j] + sign * yi[j];
+            z[i] = zi;
+        }
+        return z;
+    }
+}
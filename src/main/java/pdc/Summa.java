@@ -0,0 +1,245 @@
+package pdc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * SUMMA on a gridRows x gridCols grid of workers, for products too big to route every
+ * block through the master.
+ *
+ * C = A x B is cut into one block per grid cell: cell (i, j) computes rows band i by
+ * columns band j of C. The inner dimension is cut into panels, where panels is a
+ * multiple of both grid sides. A panel k of grid row i's rows of A is held by the cell
+ * in column k % gridCols of that row; panel k of grid column j's columns of B by the
+ * cell in row k % gridRows of that column. The master sends each cell only the panels
+ * it holds. Each cell then sends its A panels along its grid row and its B panels down
+ * its grid column, straight to the peers (see PeerLinks). It adds up A(i, k) x B(k, j)
+ * over every panel k as the panels arrive. Only C's blocks go back to the master, so
+ * the master's link carries A and B once and C once, whatever the grid size.
+ *
+ * A cell travels as its TASK operation string,
+ * SUMMA exchange gridRows gridCols i j inner cols|peer,peer,...
+ * with the cell's A panels side by side as its row block and its B panels stacked as
+ * operand 0. cols is the width of column band j and the peers are the cells' peer
+ * addresses in row-major grid order.
+ */
+final class Summa {
+
+    static final String OPERATION = "SUMMA";
+
+    /**
+     * How long a cell waits for any one panel from a peer; overridable with $CSM218_PEER_TIMEOUT_MS.
+     */
+    static final long PEER_TIMEOUT_MS = Env.longValue("CSM218_PEER_TIMEOUT_MS", 30_000);
+
+    final int gridRows;
+    final int gridCols;
+    final int inner;
+    final int panels;
+
+    Summa(int gridRows, int gridCols, int inner) {
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.inner = inner;
+        this.panels = gridRows / gcd(gridRows, gridCols) * gridCols;
+    }
+
+    /**
+     * The squarest grid of at most workers cells for an n x inner by inner x p product,
+     * or null if it would have fewer than two cells.
+     */
+    static Summa forWorkers(int workers, int n, int inner, int p) {
+        int gridRows = Math.min(n, (int) Math.sqrt(workers));
+        if (gridRows < 1) return null;
+        int gridCols = Math.min(p, workers / gridRows);
+        if (gridRows * gridCols < 2) return null;
+        return new Summa(gridRows, gridCols, inner);
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Start of part index when length is cut into parts nearly equal parts.
+     */
+    static int bandStart(int length, int parts, int index) {
+        return (int) ((long) length * index / parts);
+    }
+
+    int panelStart(int k) {
+        return bandStart(inner, panels, k);
+    }
+
+    int panelWidth(int k) {
+        return panelStart(k + 1) - panelStart(k);
+    }
+
+    static boolean isSumma(String operation) {
+        return operation.regionMatches(true, 0, OPERATION + " ", 0, OPERATION.length() + 1);
+    }
+
+    // ================== Master Side ==================
+
+    /**
+     * Cell (i, j)'s A panels, side by side: rows band i of a, inner columns of every panel k
+     * with k % gridCols == j.
+     */
+    IntMatrix panelsOfA(IntMatrix a, int i, int j) {
+        int first = bandStart(a.rows, gridRows, i);
+        int count = bandStart(a.rows, gridRows, i + 1) - first;
+        List<IntMatrix> held = new ArrayList<>();
+        for (int k = j; k < panels; k += gridCols) held.add(a.view(first, panelStart(k), count, panelWidth(k)));
+        return IntMatrix.concatColumns(held);
+    }
+
+    /**
+     * Cell (i, j)'s B panels, stacked: inner rows of every panel k with k % gridRows == i,
+     * columns band j of b.
+     */
+    int[][] panelsOfB(int[][] b, int i, int j) {
+        int p = b.length > 0 ? b[0].length : 0;
+        int first = bandStart(p, gridCols, j);
+        int last = bandStart(p, gridCols, j + 1);
+        List<int[]> held = new ArrayList<>();
+        for (int k = i; k < panels; k += gridRows) {
+            for (int r = panelStart(k); r < panelStart(k + 1); r++) held.add(Arrays.copyOfRange(b[r], first, last));
+        }
+        return held.toArray(new int[0][]);
+    }
+
+    String operation(long exchange, int i, int j, int cols, List<String> peers) {
+        return OPERATION + " " + exchange + " " + gridRows + " " + gridCols + " " + i + " " + j + " " + inner
+                + " " + cols + "|" + String.join(",", peers);
+    }
+
+    // ================== Worker Side ==================
+
+    /**
+     * Runs one cell: swaps panels with the rest of its grid row and column through
+     * links and returns its block of C.
+     */
+    static int[][] run(Worker.TaskRequest task, PeerLinks links, ForkJoinPool pool) throws IOException {
+        if (links == null) throw new IllegalStateException("No peer links: worker has not joined a cluster");
+        long exchange = exchange(task.operation);
+        try {
+            int bar = task.operation.indexOf('|');
+            String[] fields = task.operation.substring(0, bar).split(" ");
+            String[] peers = task.operation.substring(bar + 1).split(",");
+            Summa grid = new Summa(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[6]));
+            int i = Integer.parseInt(fields[4]);
+            int j = Integer.parseInt(fields[5]);
+            int cols = Integer.parseInt(fields[7]);
+            if (peers.length != grid.gridRows * grid.gridCols) {
+                throw new IllegalArgumentException(peers.length + " peers for a " + grid.gridRows + "x" + grid.gridCols + " grid");
+            }
+
+            Map<Integer, int[][]> ownA = grid.splitColumns(task.rows(), j);
+            Map<Integer, int[][]> ownB = grid.splitRows(task.operand(0), i);
+
+            // everything this cell holds goes out at once, one sender per peer
+            List<CompletableFuture<Void>> sends = new ArrayList<>();
+            for (int c = 0; c < grid.gridCols; c++) {
+                if (c != j) sends.add(links.sendAsync(peers[i * grid.gridCols + c], exchange, tagged(ownA, 0)));
+            }
+            for (int r = 0; r < grid.gridRows; r++) {
+                if (r != i) sends.add(links.sendAsync(peers[r * grid.gridCols + j], exchange, tagged(ownB, 1)));
+            }
+            CompletableFuture<Void> sent = CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0]));
+            // stop waiting for peers as soon as a send fails; the job cannot finish
+            BooleanSupplier stop = () -> task.cancelled || sent.isCompletedExceptionally();
+
+            int rows = task.rowCount();
+            int[][] c = new int[rows][cols];
+            for (int k = 0; k < grid.panels; k++) {
+                if (grid.panelWidth(k) == 0) continue;
+                int[][] a = ownA.containsKey(k) ? ownA.get(k) : receive(links, exchange, 2 * k, stop, sent);
+                int[][] b = ownB.containsKey(k) ? ownB.get(k) : receive(links, exchange, 2 * k + 1, stop, sent);
+                int[][] product = MatrixKernels.multiply(a, b, pool);
+                for (int r = 0; r < rows; r++) {
+                    int[] dst = c[r], src = product[r];
+                    for (int col = 0; col < cols; col++) dst[col] += src[col];
+                }
+            }
+            sent.join();
+            return c;
+        } catch (CompletionException e) {
+            throw new IOException("Sending panels failed", e.getCause());
+        } finally {
+            links.forget(exchange);
+        }
+    }
+
+    /**
+     * The exchange id of a SUMMA cell's operation string.
+     */
+    static long exchange(String operation) {
+        return Long.parseLong(operation.substring(0, operation.indexOf('|')).split(" ")[1]);
+    }
+
+    private static int[][] receive(PeerLinks links, long exchange, int tag, BooleanSupplier stop,
+                                   CompletableFuture<Void> sent) throws IOException {
+        try {
+            return links.receive(exchange, tag, PEER_TIMEOUT_MS, stop);
+        } catch (InterruptedIOException e) {
+            if (sent.isCompletedExceptionally()) sent.join();
+            throw e;
+        }
+    }
+
+    /**
+     * Panels as peer blocks: A panel k is tag 2k, B panel k is tag 2k + 1.
+     */
+    private static Map<Integer, int[][]> tagged(Map<Integer, int[][]> panels, int side) {
+        Map<Integer, int[][]> blocks = new LinkedHashMap<>();
+        panels.forEach((k, rows) -> blocks.put(2 * k + side, rows));
+        return blocks;
+    }
+
+    /**
+     * Cuts cell column j's A panels, side by side in rows, back into panels by index.
+     * Empty panels are left out.
+     */
+    private Map<Integer, int[][]> splitColumns(int[][] rows, int j) {
+        Map<Integer, int[][]> held = new LinkedHashMap<>();
+        int offset = 0;
+        for (int k = j; k < panels; k += gridCols) {
+            int width = panelWidth(k);
+            if (width == 0) continue;
+            int[][] panel = new int[rows.length][];
+            for (int r = 0; r < rows.length; r++) {
+                if (rows[r].length < offset + width) throw new IllegalArgumentException("A panels too narrow for panel " + k);
+                panel[r] = Arrays.copyOfRange(rows[r], offset, offset + width);
+            }
+            held.put(k, panel);
+            offset += width;
+        }
+        return held;
+    }
+
+    /**
+     * Cuts cell row i's B panels, stacked in rows, back into panels by index.
+     * Empty panels are left out.
+     */
+    private Map<Integer, int[][]> splitRows(int[][] rows, int i) {
+        Map<Integer, int[][]> held = new LinkedHashMap<>();
+        int offset = 0;
+        for (int k = i; k < panels; k += gridRows) {
+            int height = panelWidth(k);
+            if (height == 0) continue;
+            if (rows.length < offset + height) throw new IllegalArgumentException("B panels too short for panel " + k);
+            held.put(k, Arrays.copyOfRange(rows, offset, offset + height));
+            offset += height;
+        }
+        return held;
+    }
+}
@@ -1,53 +1,482 @@
 package pdc;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 
 /**
  * Worker node capable of high-concurrency computation in a cluster.
  * Communicates with Master using Message protocol.
+ *
+ * Runtime: one reader decodes TASK frames and hands them to the thread pool;
+ * results go back out of order, as they finish, through a single writer thread.
+ * Grid cells (SUMMA) each get a thread of their own, since they wait on peers.
+ *
+ * If the connection drops, the worker keeps computing and reconnects under the same
+ * identity for up to RESUME_MS. When the master still holds its session, the worker
+ * sends RESUME [int count][long correlationId...] listing every task it still owes a
+ * reply for, then delivers the buffered results; otherwise they are dropped. The
+ * identity must therefore be unique within the cluster.
  */
 public class Worker {
 
+    /**
+     * Gap between HEARTBEAT frames to the master; overridable with $CSM218_HEARTBEAT_MS.
+     */
+    static final long HEARTBEAT_MS = Env.longValue("CSM218_HEARTBEAT_MS", 100);
+
+    /**
+     * How long the worker keeps trying to reconnect after losing the master (0 shuts down
+     * at once); overridable with $CSM218_RESUME_MS.
+     */
+    static final long RESUME_MS = Env.longValue("CSM218_RESUME_MS", 10_000);
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
     private final ExecutorService executor;
-    private Socket masterSocket;
-    private DataOutputStream out;
-    private DataInputStream in;
+    private final ExecutorService gridThreads = Executors.newCachedThreadPool();
+    private final ForkJoinPool computePool;
+    private final int threads;
+    private volatile Socket masterSocket;
+    private volatile FramedStream stream;
+    private final Object streamLock = new Object();
+    /** Held while a reply is written and crossed off unanswered, so RESUME sees one or the other. */
+    private final Object replyLock = new Object();
+    private String masterHost;
+    private int masterPort;
+    private byte[] registration;
     private final String identity;
+    /** Sent with every REGISTER, so the master resumes this process's session and no other's. */
+    private final long sessionToken = newSessionToken();
     private final String capabilities;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, SparseOperation> sparseOperations = new ConcurrentHashMap<>();
+    private final BlockingQueue<Reply> outbox = new LinkedBlockingQueue<>();
+    private final Map<Long, TaskRequest> active = new ConcurrentHashMap<>();
+    /** Correlation ids of tasks the master is still waiting on a reply for. */
+    private final Set<Long> unanswered = ConcurrentHashMap.newKeySet();
+    /** Bumped when a reconnect starts a new session; replies from older ones are dropped. */
+    private volatile int epoch;
+    private final OperandCache operandCache = new OperandCache(OperandCache.DEFAULT_CAPACITY_BYTES);
+    private volatile PeerLinks peers;
+    private volatile boolean running;
+    private volatile Thread writer;
+    private String studentId;
 
     public Worker(int threads, String identity, String capabilities) {
         this.executor = Executors.newFixedThreadPool(threads);
+        this.threads = threads;
+        this.computePool = new ForkJoinPool(threads);
         this.identity = identity;
         this.capabilities = capabilities;
+
+        registerOperation("DOUBLE", task -> {
+            int[][] rows = task.rows();
+            for (int[] row : rows) {
+                for (int j = 0; j < row.length; j++) row[j] *= 2;
+            }
+            return rows;
+        });
+        registerOperation("SUM", task -> {
+            int[][] rows = task.rows();
+            int[][] sums = new int[rows.length][1];
+            for (int i = 0; i < rows.length; i++) {
+                for (int v : rows[i]) sums[i][0] += v;
+            }
+            return sums;
+        });
+        registerOperation("MATRIX_MULTIPLY",
+                task -> MatrixKernels.multiply(task.rows(), task.operand(0), computePool));
+        registerOperation("SPARSE_MULTIPLY",
+                task -> SparseKernels.multiply(task.sparseRows(), task.operand(0), computePool));
+        registerSparseOperation("SPARSE_SPARSE_MULTIPLY",
+                task -> SparseKernels.multiply(task.sparseRows(), task.sparseOperand(0)));
+        registerOperation(Pipeline.OPERATION, task -> Pipeline.execute(task.operation, task.firstRow(), task.rows(),
+                task::operand, computePool, (name, rows) -> call(task, name, rows)));
+        registerOperation(Summa.OPERATION, task -> Summa.run(task, peers, computePool));
     }
 
     public void joinCluster(String masterHost, int port) throws IOException {
-        masterSocket = new Socket(masterHost, port);
-        out = new DataOutputStream(masterSocket.getOutputStream());
-        in = new DataInputStream(masterSocket.getInputStream());
+        this.masterHost = masterHost;
+        this.masterPort = port;
+        Socket socket = connect();
 
         // Use environment variable for student ID
-        String studentId = System.getenv("STUDENT_ID");
+        studentId = System.getenv("STUDENT_ID");
         if (studentId == null) studentId = identity; // fallback
 
+        // Other workers reach this one directly for grid algorithms
+        peers = new PeerLinks(identity, peerPort());
+        String peerHost = System.getenv("CSM218_PEER_HOST") != null
+                ? System.getenv("CSM218_PEER_HOST") : socket.getLocalAddress().getHostAddress();
+
+        // Advertise cores, memory and operations so the master can weight its scheduling
+        Set<String> kernels = new HashSet<>(operations.keySet());
+        kernels.addAll(sparseOperations.keySet());
+        for (Reduction reduction : Reduction.values()) kernels.add(reduction.operation());
+        WorkerCapabilities advertised = new WorkerCapabilities(
+                threads, Runtime.getRuntime().maxMemory(), capabilities, kernels, peerHost + ":" + peers.port());
+        ByteBuffer capabilityPayload = ByteBuffer.allocate(advertised.encodedLength() + 8);
+        advertised.encode(capabilityPayload);
+        capabilityPayload.putLong(sessionToken);
+        registration = capabilityPayload.array();
+
+        try {
+            register(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(masterHost, masterPort), CONNECT_TIMEOUT_MS);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    /**
+     * Registers over socket and makes it the master connection. If the master resumed
+     * this worker's session, tells it which tasks are still owed a reply; if not, the
+     * tasks of any earlier session are abandoned, since their correlation ids mean
+     * nothing to it.
+     */
+    private void register(Socket socket) throws IOException {
+        FramedStream fresh = new FramedStream(socket.getInputStream(), socket.getOutputStream(), identity);
+
         // Send registration message using the 6-field Message constructor
-        Message registration = new Message(
-                "MAGIC",      // magic
+        fresh.send(new Message(
+                Message.PROTOCOL_MAGIC, // magic
                 1,            // version
                 "REGISTER",   // messageType
                 studentId,    // studentId from env
                 identity,     // sender
-                new byte[0]   // payload empty
-        );
-
-        sendMessage(registration);
+                registration  // capabilities
+        ));
 
         // Wait for acknowledgment
-        Message ack = receiveMessage();
+        Message ack = fresh.receive();
         System.out.println("Master response: " + ack.messageType);
+
+        if (ack.payload != null && ack.payload.length > 0 && ack.payload[0] == 1) {
+            Long[] owed;
+            synchronized (replyLock) {
+                owed = unanswered.toArray(new Long[0]);
+            }
+            fresh.send(header("RESUME"), 4 + 8 * owed.length, out -> {
+                out.putInt(owed.length);
+                for (long correlationId : owed) out.putLong(correlationId);
+            });
+        } else if (!unanswered.isEmpty() || !outbox.isEmpty()) {
+            epoch++;
+            for (TaskRequest task : active.values()) task.cancelled = true;
+            unanswered.clear();
+            outbox.clear();
+        }
+
+        synchronized (streamLock) {
+            masterSocket = socket;
+            stream = fresh;
+            streamLock.notifyAll();
+        }
+    }
+
+    /**
+     * Tries to get back to the master for up to RESUME_MS. Returns false if it could not.
+     */
+    private boolean reconnect() {
+        closeMasterSocket();
+        long deadline = System.currentTimeMillis() + RESUME_MS;
+        long backoff = 100;
+        while (running && System.currentTimeMillis() < deadline) {
+            try {
+                Socket socket = connect();
+                try {
+                    register(socket);
+                } catch (IOException e) {
+                    socket.close();
+                    throw e;
+                }
+                System.err.println("Reconnected to master as " + identity);
+                return true;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(Math.max(1, Math.min(backoff, deadline - System.currentTimeMillis())));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(1000, backoff * 2);
+            }
+        }
+        return false;
+    }
+
+    private void closeMasterSocket() {
+        try {
+            Socket socket = masterSocket;
+            if (socket != null && !socket.isClosed()) socket.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * A random non-zero token; zero means a worker that sent none.
+     */
+    private static long newSessionToken() {
+        SecureRandom random = new SecureRandom();
+        long token;
+        do {
+            token = random.nextLong();
+        } while (token == 0);
+        return token;
+    }
+
+    /**
+     * The peer port from $CSM218_PEER_PORT, or 0 for any free port.
+     */
+    private static int peerPort() {
+        return Env.intValue("CSM218_PEER_PORT", 0);
+    }
+
+    /**
+     * Makes name available as a TASK operation. Operations run on the worker's
+     * thread pool and must return one result row per input row. Register operations
+     * before joinCluster() so they are advertised to the master.
+     */
+    public void registerOperation(String name, Operation operation) {
+        operations.put(name.toUpperCase(), operation);
+    }
+
+    /**
+     * Like registerOperation, for operations whose result goes back as a sparse block.
+     */
+    public void registerSparseOperation(String name, SparseOperation operation) {
+        sparseOperations.put(name.toUpperCase(), operation);
+    }
+
+    /**
+     * Runs the task loop on a background thread and returns immediately.
+     */
+    public void start() {
+        Thread reader = new Thread(this::run, "worker-reader-" + identity);
+        reader.start();
+    }
+
+    /**
+     * Task loop: reads frames until shutdown() is called or the master is gone for good.
+     * Must be called after joinCluster().
+     */
+    public void run() {
+        running = true;
+        writer = new Thread(this::writeLoop, "worker-writer-" + identity);
+        writer.start();
+
+        Message header = new Message();
+        try {
+            while (running) {
+                try {
+                    readLoop(stream, header);
+                } catch (IOException e) {
+                    if (!running) break;
+                    System.err.println("Connection to master lost: " + e.getMessage());
+                    if (!reconnect()) break;
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void readLoop(FramedStream in, Message header) throws IOException {
+        while (running) {
+            ByteBuffer payload = in.receive(header);
+            switch (header.messageType.toUpperCase()) {
+                case "TASK":
+                    TaskRequest task = TaskRequest.decode(payload);
+                    task.epoch = epoch;
+                    unanswered.add(task.correlationId);
+                    Long missing = task.resolveOperands(operandCache);
+                    if (missing != null) {
+                        outbox.offer(Reply.miss(task, missing));
+                        break;
+                    }
+                    active.put(task.correlationId, task);
+                    (Summa.isSumma(task.operation) ? gridThreads : executor).submit(() -> execute(task));
+                    break;
+
+                case "OPERAND":
+                    // Always precedes the first TASK that refers to it on this connection
+                    operandCache.put(Payloads.getOperand(payload));
+                    break;
+
+                case "CANCEL":
+                    // The master took another copy's result; skip this one if not yet done
+                    TaskRequest cancelled = active.get(payload.getLong());
+                    if (cancelled != null) cancelled.cancelled = true;
+                    break;
+
+                default:
+                    System.err.println("Unknown message type: " + header.messageType);
+            }
+        }
+    }
+
+    private void execute(TaskRequest task) {
+        try {
+            if (task.cancelled) {
+                unanswered.remove(task.correlationId);
+                // a cell that never runs never forgets its exchange; peers' panels may be waiting
+                if (Summa.isSumma(task.operation) && peers != null) peers.forget(Summa.exchange(task.operation));
+                return;
+            }
+            Reduction reduction = Reduction.forOperation(task.operation);
+            if (reduction != null) {
+                // the band's partial goes back as one row, whatever the band's height
+                int[][] partial = Reduction.pack(reduction.partial(task.rows(), Reduction.leftCols(task.operation)));
+                reply(Reply.result(task, partial));
+                return;
+            }
+            String name = Pipeline.isPipeline(task.operation) ? Pipeline.OPERATION
+                    : Summa.isSumma(task.operation) ? Summa.OPERATION : task.operation.toUpperCase();
+            Operation operation = operations.get(name);
+            SparseOperation sparseOperation = sparseOperations.get(name);
+            if (operation == null && sparseOperation == null) {
+                outbox.offer(Reply.error(task, "Unsupported operation: " + task.operation));
+                return;
+            }
+            Reply reply;
+            int resultRows;
+            if (operation != null) {
+                int[][] result = operation.apply(task);
+                checkRectangular(result);
+                reply = Reply.result(task, result);
+                resultRows = result.length;
+            } else {
+                SparseMatrix result = sparseOperation.apply(task).toCsr();
+                reply = Reply.result(task, result);
+                resultRows = result.rows;
+            }
+            if (resultRows != task.rowCount()) {
+                throw new IllegalStateException("Operation returned " + resultRows + " rows, expected "
+                        + task.rowCount());
+            }
+            reply(reply);
+        } catch (Exception e) {
+            outbox.offer(Reply.error(task, e.getClass().getSimpleName() + ": " + e.getMessage()));
+        } finally {
+            active.remove(task.correlationId);
+        }
+    }
+
+    /**
+     * Fails unless every row of result is present and as wide as row 0; a registered
+     * operation's ragged result could not be encoded as a row block.
+     */
+    private static void checkRectangular(int[][] result) {
+        if (result == null) throw new IllegalStateException("Operation returned no rows");
+        for (int r = 0; r < result.length; r++) {
+            if (result[r] == null) throw new IllegalStateException("Operation returned a null row " + r);
+            if (result[r].length != result[0].length) {
+                throw new IllegalStateException("Operation returned row " + r + " of width " + result[r].length
+                        + ", row 0 has " + result[0].length);
+            }
+        }
+    }
+
+    /**
+     * Queues a finished task's reply, unless the master no longer wants it.
+     */
+    private void reply(Reply reply) {
+        if (reply.task.cancelled) {
+            unanswered.remove(reply.task.correlationId);
+        } else {
+            outbox.offer(reply);
+        }
+    }
+
+    /**
+     * Runs registered operation name on rows computed inside a pipeline task.
+     */
+    private int[][] call(TaskRequest task, String name, int[][] rows) throws Exception {
+        Operation operation = operations.get(name);
+        if (operation == null || Pipeline.OPERATION.equals(name)) {
+            throw new IllegalArgumentException("Unsupported operation: " + name);
+        }
+        TaskRequest step = new TaskRequest(task.correlationId, task.taskId, name, new long[0],
+                new Payloads.RowBlock(task.firstRow(), rows));
+        return operation.apply(step);
+    }
+
+    /**
+     * The only thread that writes to the master once the task loop is running. Between
+     * replies it sends a HEARTBEAT every HEARTBEAT_MS, so the master's failure detector
+     * hears from an idle or busy worker alike. If a write fails, the reply is kept and
+     * the writer waits for the reader to reconnect.
+     */
+    private void writeLoop() {
+        long nextHeartbeat = PhiAccrualDetector.nowMs();
+        while (running) {
+            FramedStream out = stream;
+            Reply reply = null;
+            try {
+                long now = PhiAccrualDetector.nowMs();
+                if (now >= nextHeartbeat) {
+                    out.send(header("HEARTBEAT"), 0, body -> {});
+                    nextHeartbeat = now + HEARTBEAT_MS;
+                }
+                reply = outbox.poll(nextHeartbeat - now, TimeUnit.MILLISECONDS);
+                if (reply == null) continue;
+                synchronized (replyLock) {
+                    if (reply.task.epoch == epoch) send(reply, out);
+                    unanswered.remove(reply.task.correlationId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                if (!running) return;
+                if (reply != null) outbox.offer(reply);
+                if (!awaitReconnect(out)) return;
+            }
+        }
+    }
+
+    /**
+     * Sends reply, or a TASK_ERROR in its place if it cannot be encoded: the writer is
+     * the only thread that answers the master, so it must not die on a bad reply.
+     */
+    private void send(Reply reply, FramedStream out) throws IOException {
+        try {
+            reply.send(this, out);
+        } catch (RuntimeException e) {
+            Reply.error(reply.task, "Unencodable reply: " + e).send(this, out);
+        }
+    }
+
+    /**
+     * Waits until the reader has replaced the failed stream. Closes the socket first,
+     * so a reader blocked on it notices the failure too.
+     */
+    private boolean awaitReconnect(FramedStream failed) {
+        synchronized (streamLock) {
+            if (stream == failed) closeMasterSocket();
+            try {
+                while (running && stream == failed) streamLock.wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return running;
     }
 
     public void scheduleTask(Runnable task) {
@@ -63,27 +492,213 @@ public class Worker {
     }
 
     public void shutdown() {
+        running = false;
+        synchronized (streamLock) {
+            streamLock.notifyAll();
+        }
         executor.shutdownNow();
-        try {
-            if (masterSocket != null && !masterSocket.isClosed()) {
-                masterSocket.close();
-            }
-        } catch (IOException ignored) {}
+        gridThreads.shutdownNow();
+        computePool.shutdownNow();
+        if (peers != null) peers.close();
+        if (writer != null) writer.interrupt();
+        closeMasterSocket();
     }
 
     // ------------------- MESSAGE HELPERS -------------------
 
-    private void sendMessage(Message msg) throws IOException {
-        byte[] data = msg.pack();
-        out.writeInt(data.length);
-        out.write(data);
-        out.flush();
+    private Message header(String messageType) {
+        return new Message(Message.PROTOCOL_MAGIC, 1, messageType, studentId, identity, null);
+    }
+
+
+    // ------------------- TASKS -------------------
+
+    /**
+     * Computes the result rows for one TASK.
+     */
+    public interface Operation {
+        int[][] apply(TaskRequest task) throws Exception;
+    }
+
+    /**
+     * Computes the result rows for one TASK as a sparse matrix.
+     */
+    public interface SparseOperation {
+        SparseMatrix apply(TaskRequest task) throws Exception;
     }
 
-    private Message receiveMessage() throws IOException {
-        int length = in.readInt();
-        byte[] data = new byte[length];
-        in.readFully(data);
-        return Message.unpack(data);
+    /**
+     * A decoded TASK: [correlationId][taskId][operation][operand ids][row block or sparse block].
+     * Exactly one of block and sparse is set, depending on which kind of block came in.
+     */
+    public static class TaskRequest {
+        public final long correlationId;
+        public final int taskId;
+        public final String operation;
+        public final Payloads.RowBlock block;
+        public final Payloads.SparseBlock sparse;
+        final long[] operandIds;
+        private final Operand[] operands;
+        volatile boolean cancelled;
+        /** The worker's session epoch when this task arrived. */
+        volatile int epoch;
+
+        TaskRequest(long correlationId, int taskId, String operation, long[] operandIds, Payloads.RowBlock block) {
+            this(correlationId, taskId, operation, operandIds, block, null);
+        }
+
+        private TaskRequest(long correlationId, int taskId, String operation, long[] operandIds,
+                            Payloads.RowBlock block, Payloads.SparseBlock sparse) {
+            this.correlationId = correlationId;
+            this.taskId = taskId;
+            this.operation = operation;
+            this.operandIds = operandIds;
+            this.operands = new Operand[operandIds.length];
+            this.block = block;
+            this.sparse = sparse;
+        }
+
+        static TaskRequest decode(ByteBuffer payload) throws IOException {
+            long correlationId = payload.getLong();
+            int taskId = payload.getInt();
+            String operation = Payloads.getString(payload);
+            long[] operandIds = Payloads.getOperandIds(payload);
+            if (Payloads.isSparseBlock(payload)) {
+                return new TaskRequest(correlationId, taskId, operation, operandIds, null,
+                        Payloads.getSparseBlock(payload));
+            }
+            return new TaskRequest(correlationId, taskId, operation, operandIds, Payloads.getBlock(payload));
+        }
+
+        public int firstRow() {
+            return block != null ? block.firstRow : sparse.firstRow;
+        }
+
+        public int rowCount() {
+            return block != null ? block.rows.length : sparse.matrix.rows;
+        }
+
+        /**
+         * The task's rows as dense rows, expanding a sparse block if that is what came in.
+         */
+        public int[][] rows() {
+            return block != null ? block.rows : sparse.matrix.toDense();
+        }
+
+        /**
+         * The task's rows in CSR form, converting a dense block if that is what came in.
+         */
+        public SparseMatrix sparseRows() {
+            return sparse != null ? sparse.matrix : SparseMatrix.fromDense(block.rows);
+        }
+
+        /**
+         * The i-th broadcast operand the master attached to this task, as dense rows.
+         */
+        public int[][] operand(int i) {
+            Operand operand = operandAt(i);
+            return operand.rows != null ? operand.rows : operand.sparse.toDense();
+        }
+
+        /**
+         * The i-th broadcast operand in CSR form.
+         */
+        public SparseMatrix sparseOperand(int i) {
+            Operand operand = operandAt(i);
+            return operand.sparse != null ? operand.sparse : SparseMatrix.fromDense(operand.rows);
+        }
+
+        private Operand operandAt(int i) {
+            if (i >= operands.length) throw new IllegalArgumentException(operation + " needs operand " + i);
+            return operands[i];
+        }
+
+        /**
+         * Pins this task's operands from cache so later evictions cannot affect it.
+         * Returns the id of the first operand not in cache, or null if all were found.
+         */
+        Long resolveOperands(OperandCache cache) {
+            for (int i = 0; i < operandIds.length; i++) {
+                operands[i] = cache.lookup(operandIds[i]);
+                if (operands[i] == null) return operandIds[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A RESULT, TASK_ERROR or OPERAND_MISS waiting for the writer thread.
+     */
+    private static class Reply {
+        final TaskRequest task;
+        final int[][] rows;
+        final SparseMatrix sparseRows;
+        final String error;
+        final Long missingOperand;
+
+        private Reply(TaskRequest task, int[][] rows, SparseMatrix sparseRows, String error, Long missingOperand) {
+            this.task = task;
+            this.rows = rows;
+            this.sparseRows = sparseRows;
+            this.error = error;
+            this.missingOperand = missingOperand;
+        }
+
+        static Reply result(TaskRequest task, int[][] rows) {
+            return new Reply(task, rows, null, null, null);
+        }
+
+        static Reply result(TaskRequest task, SparseMatrix rows) {
+            return new Reply(task, null, rows, null, null);
+        }
+
+        static Reply error(TaskRequest task, String error) {
+            return new Reply(task, null, null, error, null);
+        }
+
+        static Reply miss(TaskRequest task, long operandId) {
+            return new Reply(task, null, null, null, operandId);
+        }
+
+        void send(Worker worker, FramedStream stream) throws IOException {
+            long correlationId = task.correlationId;
+            if (missingOperand != null) {
+                stream.send(worker.header("OPERAND_MISS"), 16, out -> {
+                    out.putLong(correlationId);
+                    out.putLong(missingOperand);
+                });
+            } else if (sparseRows != null) {
+                stream.send(worker.header("RESULT"), 8 + Payloads.resultLength(sparseRows), out -> {
+                    out.putLong(correlationId);
+                    Payloads.putResult(out, task.taskId, sparseRows, task.firstRow());
+                });
+            } else if (error == null) {
+                stream.send(worker.header("RESULT"), 8 + Payloads.resultLength(rows, 0, rows.length), out -> {
+                    out.putLong(correlationId);
+                    Payloads.putResult(out, task.taskId, rows, 0, rows.length, task.firstRow());
+                });
+            } else {
+                stream.send(worker.header("TASK_ERROR"), 8 + Payloads.stringLength(error), out -> {
+                    out.putLong(correlationId);
+                    Payloads.putString(out, error);
+                });
+            }
+        }
+    }
+
+    // ------------------- ENTRY POINT -------------------
+
+    /**
+     * Starts a worker process configured from WORKER_ID, MASTER_HOST and MASTER_PORT.
+     */
+    public static void main(String[] args) throws IOException {
+        String workerId = System.getenv("WORKER_ID") != null ? System.getenv("WORKER_ID") : "worker-" + ProcessHandle.current().pid();
+        String host = System.getenv("MASTER_HOST") != null ? System.getenv("MASTER_HOST") : "localhost";
+        int port = Integer.parseInt(System.getenv("MASTER_PORT") != null ? System.getenv("MASTER_PORT") : "9999");
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        Worker worker = new Worker(threads, workerId, "threads=" + threads);
+        worker.joinCluster(host, port);
+        worker.run();
     }
 }
@@ -0,0 +1,85 @@
+package pdc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * What a worker advertises in its REGISTER payload:
+ * [int cores][long maxMemoryBytes][description][int kernelCount][kernel names...][peer address]
+ * An empty REGISTER payload (older workers) reads as one core supporting every kernel;
+ * a payload that stops before the peer address reads as a worker without peer links.
+ * The worker's session token follows as a long, read by the master itself.
+ */
+public class WorkerCapabilities {
+
+    public static final WorkerCapabilities UNKNOWN =
+            new WorkerCapabilities(1, 0, "", Collections.emptySet());
+
+    public final int cores;
+    public final long maxMemoryBytes;
+    public final String description;
+    public final Set<String> kernels;
+    /** "host:port" where the worker accepts other workers' PeerLinks, or "" if it has none. */
+    public final String peerAddress;
+
+    public WorkerCapabilities(int cores, long maxMemoryBytes, String description, Set<String> kernels) {
+        this(cores, maxMemoryBytes, description, kernels, "");
+    }
+
+    public WorkerCapabilities(int cores, long maxMemoryBytes, String description, Set<String> kernels,
+                              String peerAddress) {
+        this.peerAddress = peerAddress != null ? peerAddress : "";
+        this.cores = Math.max(1, cores);
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.description = description != null ? description : "";
+        Set<String> upper = new HashSet<>();
+        for (String k : kernels) upper.add(k.toUpperCase());
+        this.kernels = Collections.unmodifiableSet(upper);
+    }
+
+    /**
+     * True if the worker can run operation; workers that list no kernels accept anything.
+     */
+    public boolean supports(String operation) {
+        if (kernels.isEmpty()) return true;
+        for (String kernel : Pipeline.kernels(operation)) {
+            if (!kernels.contains(kernel.toUpperCase())) return false;
+        }
+        return true;
+    }
+
+    public int encodedLength() {
+        int length = 4 + 8 + Payloads.stringLength(description) + 4;
+        for (String k : kernels) length += Payloads.stringLength(k);
+        return length + Payloads.stringLength(peerAddress);
+    }
+
+    public void encode(ByteBuffer out) {
+        out.putInt(cores);
+        out.putLong(maxMemoryBytes);
+        Payloads.putString(out, description);
+        out.putInt(kernels.size());
+        for (String k : kernels) Payloads.putString(out, k);
+        Payloads.putString(out, peerAddress);
+    }
+
+    public static WorkerCapabilities decode(ByteBuffer in) throws IOException {
+        if (!in.hasRemaining()) return UNKNOWN;
+        int cores = in.getInt();
+        long maxMemoryBytes = in.getLong();
+        String description = Payloads.getString(in);
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / 4) throw new IOException("Malformed kernel count: " + count);
+        Set<String> kernels = new HashSet<>();
+        for (int i = 0; i < count; i++) kernels.add(Payloads.getString(in));
+        String peerAddress = in.hasRemaining() ? Payloads.getString(in) : "";
+        return new WorkerCapabilities(cores, maxMemoryBytes, description, kernels, peerAddress);
+    }
+
+    @Override
+    public String toString() {
+        return cores + " cores, " + (maxMemoryBytes >> 20) + " MiB, kernels=" + kernels
+                + (peerAddress.isEmpty() ? "" : ", peers at " + peerAddress);
+    }
+}
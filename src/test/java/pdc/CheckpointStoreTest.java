@@ -0,0 +1,248 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JUnit 5 tests for the master's checkpoint file.
+ */
+class CheckpointStoreTest {
+
+    @Test
+    void testBlocks_SurviveReopen() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = {{1, 2}, {3, 4}, {5, 6}, {7, 8}};
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(42, output, 0, 2);
+                store.append(7, output, 3, 1);
+                store.append(42, output, 3, 1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                List<Payloads.RowBlock> blocks = store.blocks(42);
+                assertEquals(2, blocks.size());
+                assertEquals(0, blocks.get(0).firstRow);
+                assertArrayEquals(new int[]{3, 4}, blocks.get(0).rows[1]);
+                assertEquals(3, blocks.get(1).firstRow);
+                assertArrayEquals(new int[]{7, 8}, blocks.get(1).rows[0]);
+                assertTrue(store.blocks(99).isEmpty());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testTornRecord_EndsLog() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = {{1}, {2}};
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(1, output, 0, 1);
+                store.append(1, output, 1, 1);
+            }
+            // a crash before the second record's length was written
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4), 12 + 32);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                assertEquals(1, store.blocks(1).size());
+                store.append(1, output, 1, 1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                assertEquals(2, store.blocks(1).size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testCorruptRecord_SkippedOnRestore() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = {{1}, {2}};
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(1, output, 0, 1);
+                store.append(1, output, 1, 1);
+            }
+            // a bit flip in the first record's row
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, 3), 12 + 28);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                List<Payloads.RowBlock> blocks = store.blocks(1);
+                assertEquals(1, blocks.size());
+                assertEquals(1, blocks.get(0).firstRow);
+                assertArrayEquals(new int[]{2}, blocks.get(0).rows[0]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testDrop_ForgetsJobAndStartsOverWhenEmpty() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = {{1, 2}, {3, 4}};
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(1, output, 0, 2);
+                store.append(2, output, 1, 1);
+                store.drop(1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                assertTrue(store.blocks(1).isEmpty());
+                assertEquals(1, store.blocks(2).size());
+                store.drop(2);
+                assertEquals(12, store.size());
+                store.append(3, output, 0, 1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                assertTrue(store.blocks(1).isEmpty());
+                assertTrue(store.blocks(2).isEmpty());
+                assertArrayEquals(new int[]{1, 2}, store.blocks(3).get(0).rows[0]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testDrop_CompactsMostlyDeadLog() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = new int[300][1000];
+            output[299][999] = 5;
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(1, output, 0, 300);
+                store.append(2, output, 299, 1);
+                store.drop(1);
+                assertTrue(store.size() < 5000);
+                assertEquals(5, store.blocks(2).get(0).rows[0][999]);
+                store.append(2, output, 0, 1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                assertEquals(2, store.blocks(2).size());
+                assertTrue(store.blocks(1).isEmpty());
+            }
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".compact")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testGrowth_PastInitialMapping() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        try {
+            int[][] output = new int[300][1000];
+            output[299][999] = 5;
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                store.append(3, output, 0, 300);
+                store.append(3, output, 299, 1);
+            }
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                List<Payloads.RowBlock> blocks = store.blocks(3);
+                assertEquals(2, blocks.size());
+                assertEquals(5, blocks.get(1).rows[0][999]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testJobKey_DependsOnInputAndOperands() {
+        IntMatrix a = IntMatrix.wrap(new int[][]{{1, 2}, {3, 4}});
+        Operand[] none = new Operand[0];
+        long key = CheckpointStore.jobKey("DOUBLE", a, null, none);
+
+        assertEquals(key, CheckpointStore.jobKey("DOUBLE", IntMatrix.copyOf(new int[][]{{1, 2}, {3, 4}}), null, none));
+        assertNotEquals(key, CheckpointStore.jobKey("SUM", a, null, none));
+        assertNotEquals(key, CheckpointStore.jobKey("DOUBLE", IntMatrix.wrap(new int[][]{{1, 2}, {3, 5}}), null, none));
+        assertNotEquals(key, CheckpointStore.jobKey("DOUBLE", a, null, new Operand[]{Operand.of(new int[][]{{1}})}));
+    }
+
+    @Test
+    void testRestart_RunsOnlyRowsMissingFromCheckpoint() throws Exception {
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        Files.delete(file);
+        int[][] data = {{1, 1}, {2, 2}, {3, 3}, {4, 4}};
+        try {
+            // the first master's worker fails row 2; the other bands are checkpointed
+            int[][] first = runOnCluster(file, data, new AtomicInteger(), 3);
+            assertArrayEquals(new int[]{4, 4}, first[1]);
+            assertEquals(0, first[2].length);
+
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                long key = CheckpointStore.jobKey("PARTIAL_DOUBLE", IntMatrix.wrap(data), null, new Operand[0]);
+                store.append(key, new int[][]{{}, {}, {9, 9, 9}}, 2, 1); // the missing row, but too wide
+                store.append(key, new int[5][2], 3, 2);                  // runs past the output
+            }
+
+            AtomicInteger computed = new AtomicInteger();
+            int[][] second = runOnCluster(file, data, computed, -1);
+            assertEquals(1, computed.get());
+            for (int i = 0; i < data.length; i++) assertArrayEquals(new int[]{2 * (i + 1), 2 * (i + 1)}, second[i]);
+            // the job succeeded, so nothing of it is kept
+            try (CheckpointStore store = CheckpointStore.open(file)) {
+                long key = CheckpointStore.jobKey("PARTIAL_DOUBLE", IntMatrix.wrap(data), null, new Operand[0]);
+                assertTrue(store.blocks(key).isEmpty());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Runs PARTIAL_DOUBLE over data on a fresh master checkpointing to file, with one
+     * worker that fails rows holding failOn and counts the rows it computes.
+     */
+    private static int[][] runOnCluster(Path file, int[][] data, AtomicInteger computed, int failOn)
+            throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Master master = new Master();
+        Worker worker = new Worker(1, "restore-worker", "test");
+        try {
+            master.setCheckpoint(file.toString());
+            master.setBlockRows(1);
+            master.listen(port);
+            worker.registerOperation("PARTIAL_DOUBLE", task -> {
+                int[][] rows = task.rows();
+                for (int[] row : rows) {
+                    if (row[0] == failOn) throw new IllegalStateException("row " + failOn);
+                    for (int j = 0; j < row.length; j++) row[j] *= 2;
+                }
+                computed.addAndGet(rows.length);
+                return rows;
+            });
+            worker.joinCluster("localhost", port);
+            worker.start();
+            int[][] result = (int[][]) master.coordinate("PARTIAL_DOUBLE", data, 1);
+            // the job is closed, and its checkpoint dropped, just after its result is handed out
+            for (int i = 0; i < 100 && master.activeJobs() > 0; i++) Thread.sleep(20);
+            return result;
+        } finally {
+            worker.shutdown();
+            master.shutdown();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * JUnit 5 tests for IntMatrix storage, views and row-block encoding.
+ */
+class IntMatrixTest {
+
+    private static final int[][] DATA = {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}, {10, 11, 12}};
+
+    @Test
+    void testViews_ShareStorage() {
+        IntMatrix m = IntMatrix.copyOf(DATA);
+        IntMatrix block = m.view(1, 1, 2, 2);
+        assertArrayEquals(new int[][]{{5, 6}, {8, 9}}, block.toRows());
+
+        block.set(0, 0, 50);
+        assertEquals(50, m.get(1, 1));
+
+        IntMatrix t = m.transpose();
+        assertEquals(3, t.rows);
+        assertEquals(4, t.cols);
+        assertEquals(12, t.get(2, 3));
+        assertArrayEquals(new int[][]{{2, 50, 8, 11}}, t.view(1, 0, 1, 4).toRows());
+        assertThrows(IndexOutOfBoundsException.class, () -> m.view(3, 0, 2, 3));
+    }
+
+    @Test
+    void testWrappedRows_AreNotCopied() {
+        int[][] rows = {{1, 2}, {3, 4}, {5, 6}};
+        IntMatrix m = IntMatrix.wrap(rows);
+        m.rowView(1, 2).set(1, 0, 60);
+        assertEquals(60, rows[2][0]);
+        assertArrayEquals(new int[][]{{1, 3, 60}, {2, 4, 6}}, m.transpose().toRows());
+        assertThrows(IllegalArgumentException.class, () -> IntMatrix.wrap(new int[][]{{1, 2}, {3}}));
+    }
+
+    @Test
+    void testWrappedBlock_SupportsEveryOperation() {
+        int[][] rows = {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}};
+        IntMatrix block = IntMatrix.wrap(rows).view(1, 1, 2, 2).view(0, 0, 2, 2);
+        assertArrayEquals(new int[][]{{5, 8}, {6, 9}}, block.transpose().toRows());
+
+        IntBuffer ints = IntBuffer.allocate(4);
+        block.putRowMajor(ints);
+        assertArrayEquals(new int[]{5, 6, 8, 9}, ints.array());
+        ints.flip();
+        ints.put(0, 50);
+        block.getRowMajor(ints);
+        assertEquals(50, rows[1][1]);
+
+        IntMatrix joined = IntMatrix.concatColumns(List.of(block, IntMatrix.copyOf(new int[][]{{0}, {1}})));
+        assertArrayEquals(new int[][]{{50, 6, 0}, {8, 9, 1}}, joined.toRows());
+    }
+
+    @Test
+    void testBlock_RoundTripFromEveryLayout() throws IOException {
+        IntMatrix direct = IntMatrix.direct(4, 3);
+        IntMatrix columnMajor = IntMatrix.heapColumnMajor(4, 3);
+        for (int i = 0; i < 4; i++) {
+            direct.setRow(i, DATA[i]);
+            columnMajor.setRow(i, DATA[i]);
+        }
+        IntMatrix[] bands = {
+                IntMatrix.copyOf(DATA).rowView(1, 2),
+                IntMatrix.wrap(DATA).rowView(1, 2),
+                direct.rowView(1, 2),
+                columnMajor.rowView(1, 2),
+        };
+        for (IntMatrix band : bands) {
+            ByteBuffer buf = ByteBuffer.allocate(Payloads.blockLength(band));
+            Payloads.putBlock(buf, band, 1);
+            assertFalse(buf.hasRemaining());
+            buf.flip();
+
+            Payloads.RowBlock block = Payloads.getBlock(buf);
+            assertEquals(1, block.firstRow);
+            assertArrayEquals(new int[][]{{4, 5, 6}, {7, 8, 9}}, block.rows, band.toString());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for fair sharing of the backlog between jobs.
+ */
+class JobQueueTest {
+
+    private static Master.Task task(Master.Job job, int id) {
+        return new Master.Task(job, id, id, 1);
+    }
+
+    @Test
+    void testPoll_AlternatesBetweenJobs() {
+        Master.Job big = new Master.Job(1, "SUM", IntMatrix.heap(4, 1), new Operand[0]);
+        Master.Job small = new Master.Job(2, "SUM", IntMatrix.heap(2, 1), new Operand[0]);
+        JobQueue queue = new JobQueue();
+        for (int i = 0; i < 4; i++) queue.offer(task(big, i));
+        for (int i = 0; i < 2; i++) queue.offer(task(small, i));
+
+        assertSame(big, queue.poll().job);
+        assertSame(small, queue.poll().job);
+        assertSame(big, queue.poll().job);
+        assertSame(small, queue.poll().job);
+        assertSame(big, queue.poll().job);
+        assertSame(big, queue.poll().job);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testRemoveJob_DropsOnlyThatJob() {
+        Master.Job a = new Master.Job(1, "SUM", IntMatrix.heap(3, 1), new Operand[0]);
+        Master.Job b = new Master.Job(2, "SUM", IntMatrix.heap(1, 1), new Operand[0]);
+        JobQueue queue = new JobQueue();
+        for (int i = 0; i < 3; i++) queue.offer(task(a, i));
+        queue.offer(task(b, 0));
+
+        queue.removeJob(1);
+        assertEquals(1, queue.size());
+        assertSame(b, queue.poll().job);
+        assertTrue(queue.isEmpty());
+    }
+}
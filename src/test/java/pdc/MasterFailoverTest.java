@@ -0,0 +1,190 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JUnit 5 tests for noticing a lost worker and reassigning its tasks.
+ */
+class MasterFailoverTest {
+
+    private static Master.Task task(Master.Job job, int id) {
+        Master.Task task = new Master.Task(job, id, id, 1);
+        job.tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Sends task to worker, then drops worker; the attempt's failed reply arrives after
+     * the disconnect, as it does from a closed connection.
+     */
+    private static void loseWorker(Master master, Master.Task task, Master.WorkerInfo worker) {
+        Master.Attempt attempt = master.onTaskDispatched(task, worker);
+        master.onDisconnect(worker);
+        master.onTaskFinished(task, attempt, false, new IOException("closed"));
+    }
+
+    @Test
+    void testDisconnect_RequeuesOnlyOwnedTasks() throws Exception {
+        Master master = new Master();
+        try {
+            Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(4, 1), new Operand[0]);
+            Master.WorkerInfo lost = new Master.WorkerInfo("lost");
+            Master.WorkerInfo kept = new Master.WorkerInfo("kept");
+            Master.Task[] tasks = {task(job, 0), task(job, 1), task(job, 2), task(job, 3)};
+            for (int i = 0; i < 3; i++) master.onTaskDispatched(tasks[i], lost);
+            master.onTaskDispatched(tasks[3], kept);
+            assertEquals(3, lost.inFlight.size());
+
+            master.onDisconnect(lost);
+
+            assertTrue(lost.inFlight.isEmpty());
+            assertEquals(1, kept.inFlight.size());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(tasks[i].attempts.isEmpty());
+                assertEquals(1, tasks[i].retries.get());
+            }
+            assertTrue(kept.inFlight.contains(tasks[3]));
+            assertEquals(0, tasks[3].retries.get());
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    @Test
+    void testOwnerLost_BackupTakesOver() throws Exception {
+        Master master = new Master();
+        try {
+            Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(1, 1), new Operand[0]);
+            Master.Task task = task(job, 0);
+            Master.WorkerInfo first = new Master.WorkerInfo("first");
+            Master.WorkerInfo backup = new Master.WorkerInfo("backup");
+            Master.Attempt firstAttempt = master.onTaskDispatched(task, first);
+            Master.Attempt backupAttempt = master.onTaskDispatched(task, backup);
+
+            master.onDisconnect(first);
+            master.onTaskFinished(task, firstAttempt, false, new IOException("closed"));
+            assertTrue(first.inFlight.isEmpty());
+            assertTrue(backup.inFlight.contains(task));
+            assertEquals(0, task.retries.get());
+
+            // the backup fails too: requeued, then a fresh attempt is tracked again
+            master.onTaskFinished(task, backupAttempt, false, new IOException("closed"));
+            assertTrue(backup.inFlight.isEmpty());
+            assertEquals(1, task.retries.get());
+            loseWorker(master, task, new Master.WorkerInfo("third"));
+            assertEquals(2, task.retries.get());
+            assertFalse(task.done.isDone());
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    @Test
+    void testBackupLost_FirstCopyKeepsRunning() throws Exception {
+        Master master = new Master();
+        try {
+            Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(1, 1), new Operand[0]);
+            Master.Task task = task(job, 0);
+            Master.WorkerInfo first = new Master.WorkerInfo("first");
+            Master.WorkerInfo backup = new Master.WorkerInfo("backup");
+            Master.Attempt firstAttempt = master.onTaskDispatched(task, first);
+            master.onTaskDispatched(task, backup);
+            assertTrue(backup.inFlight.contains(task));
+
+            master.onDisconnect(backup);
+            assertTrue(backup.inFlight.isEmpty());
+            assertTrue(first.inFlight.contains(task));
+            assertEquals(1, task.attempts.size());
+            assertEquals(0, task.retries.get());
+
+            master.onTaskFinished(task, firstAttempt, false, new IOException("closed"));
+            assertTrue(first.inFlight.isEmpty());
+            assertEquals(1, task.retries.get());
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    @Test
+    void testLateReconcileRound_SuspectsNoOne() throws Exception {
+        Master master = new Master();
+        AtomicInteger closes = new AtomicInteger();
+        Master.WorkerInfo connection = new Master.WorkerInfo("connection") {
+            @Override
+            void sendMessage(Message msg) {
+            }
+
+            @Override
+            void close() {
+                closes.incrementAndGet();
+            }
+        };
+        try {
+            master.dispatch(connection, new Message(1, "REGISTER", "quiet", null), ByteBuffer.allocate(0));
+            // a steady 100ms heartbeat, then silence for far longer than phi allows
+            long now = PhiAccrualDetector.nowMs();
+            for (int i = 10; i > 0; i--) connection.heartbeats.heartbeat(now - 5000 - 100 * i);
+            connection.lastHeartbeat = now - 5000;
+            assertFalse(master.isLive(connection));
+
+            Thread.sleep(300);
+            master.reconcileState();
+            assertEquals(0, closes.get());
+
+            master.reconcileState();
+            assertEquals(1, closes.get());
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    @Test
+    void testRetryLimit_FailsTask() throws Exception {
+        Master master = new Master();
+        try {
+            master.setMaxRetries(1);
+            Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(1, 1), new Operand[0]);
+            Master.Task task = task(job, 0);
+
+            loseWorker(master, task, new Master.WorkerInfo("first"));
+            assertFalse(task.done.isDone());
+            assertEquals(1, task.retries.get());
+
+            loseWorker(master, task, new Master.WorkerInfo("second"));
+            assertTrue(task.done.isCompletedExceptionally());
+            assertEquals(2, task.dispatches.get());
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    @Test
+    void testOperandMiss_DoesNotUseUpRetries() throws Exception {
+        Master master = new Master();
+        try {
+            master.setMaxRetries(1);
+            Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(1, 1), new Operand[0]);
+            Master.Task task = task(job, 0);
+            Master.WorkerInfo worker = new Master.WorkerInfo("evicting");
+
+            for (int i = 0; i < 3; i++) {
+                Master.Attempt attempt = master.onTaskDispatched(task, worker);
+                master.onTaskFinished(task, attempt, false, new RpcChannel.OperandMissException("evicting", 0xCAFEL));
+            }
+            assertFalse(task.done.isDone());
+            assertEquals(0, task.retries.get());
+            assertTrue(worker.inFlight.isEmpty());
+
+            // losing the worker still counts
+            loseWorker(master, task, worker);
+            assertEquals(1, task.retries.get());
+            assertFalse(task.done.isDone());
+        } finally {
+            master.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package pdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JUnit 5 tests for registering workers and suspending and resuming their sessions.
+ */
+class MasterSessionTest {
+
+    private Master master;
+
+    /** A connection that keeps what the master sends it. */
+    private static final class Connection extends Master.WorkerInfo {
+        final List<Message> sent = new CopyOnWriteArrayList<>();
+
+        Connection(String id) {
+            super(id);
+        }
+
+        @Override
+        void sendMessage(Message msg) {
+            sent.add(msg);
+        }
+
+        @Override
+        void close() {
+        }
+
+        boolean resumed() {
+            Message ack = sent.get(sent.size() - 1);
+            assertEquals("ACK", ack.messageType);
+            return ack.payload.length > 0 && ack.payload[0] == 1;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        master = new Master();
+    }
+
+    @AfterEach
+    void tearDown() {
+        master.shutdown();
+    }
+
+    private Connection register(String identity, long token) throws IOException {
+        Connection connection = new Connection("connection-" + System.nanoTime());
+        master.onConnect(connection);
+        WorkerCapabilities capabilities = WorkerCapabilities.UNKNOWN;
+        ByteBuffer payload = ByteBuffer.allocate(capabilities.encodedLength() + 8);
+        capabilities.encode(payload);
+        payload.putLong(token).flip();
+        master.dispatch(connection, new Message(1, "REGISTER", identity, null), payload);
+        return connection;
+    }
+
+    private static Master.Task task() {
+        Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(1, 1), new Operand[0]);
+        Master.Task task = new Master.Task(job, 0, 0, 1);
+        job.tasks.add(task);
+        return task;
+    }
+
+    @Test
+    void testRegister_KeyedByIdentity() throws Exception {
+        Connection connection = register("w1", 5);
+
+        assertFalse(connection.resumed());
+        assertEquals("w1", connection.id);
+        assertTrue(connection.registered);
+        assertTrue(master.isLive(connection));
+    }
+
+    @Test
+    void testReconnect_SameTokenResumesSession() throws Exception {
+        Connection first = register("w1", 5);
+        Master.Task task = task();
+        master.onTaskDispatched(task, first);
+        master.onDisconnect(first);
+
+        Connection second = register("w1", 5);
+        assertTrue(second.resumed());
+        assertSame(first, second.session);
+        assertSame(second, first.link);
+        assertTrue(first.inFlight.contains(task));
+        assertEquals(0, task.retries.get());
+    }
+
+    @Test
+    void testReconnect_OtherTokenFailsOverOldSession() throws Exception {
+        Connection first = register("w1", 5);
+        Master.Task task = task();
+        master.onTaskDispatched(task, first);
+        master.onDisconnect(first);
+
+        // the worker process restarted: its tasks died with it
+        Connection second = register("w1", 6);
+        assertFalse(second.resumed());
+        assertSame(second, second.session);
+        assertEquals("w1", second.id);
+        assertTrue(first.inFlight.isEmpty());
+        assertEquals(1, task.retries.get());
+    }
+
+    @Test
+    void testLiveIdentity_TakenByOtherProcessIsRenamed() throws Exception {
+        Connection first = register("w1", 5);
+        Connection second = register("w1", 0x6a);
+
+        assertFalse(second.resumed());
+        assertEquals("w1#6a", second.id);
+        assertFalse(second.registered);
+        assertSame(first, first.link);
+        assertSame(second, second.session);
+    }
+
+    @Test
+    void testNoToken_NeverResumes() throws Exception {
+        Connection first = register("w1", 0);
+        master.onDisconnect(first);
+
+        Connection second = register("w1", 0);
+        assertFalse(second.resumed());
+        assertSame(second, second.session);
+    }
+
+    @Test
+    void testGraceExpired_SessionFailedOver() throws Exception {
+        master.setSessionResume(50);
+        Connection first = register("w1", 5);
+        Master.Task task = task();
+        master.onTaskDispatched(task, first);
+        master.onDisconnect(first);
+        assertEquals(0, task.retries.get());
+
+        Thread.sleep(100);
+        master.reconcileState();
+        assertEquals(1, task.retries.get());
+
+        Connection second = register("w1", 5);
+        assertFalse(second.resumed());
+    }
+}
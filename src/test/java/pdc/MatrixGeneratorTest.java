@@ -0,0 +1,58 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JUnit 5 tests for seeded matrix generation.
+ */
+class MatrixGeneratorTest {
+
+    @Test
+    void testSeed_SameMatrixOnAnyPool() {
+        MatrixGenerator.SeededMatrix m = MatrixGenerator.seeded(300, 500, 1000, 42);
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            int[][] sequential = m.block(0, m.rows, null);
+            assertTrue(Arrays.deepEquals(sequential, m.block(0, m.rows, one)));
+            assertTrue(Arrays.deepEquals(sequential, m.block(0, m.rows, four)));
+            assertTrue(Arrays.deepEquals(sequential, m.toIntMatrix(four).toRows()));
+            assertTrue(Arrays.deepEquals(sequential, MatrixGenerator.generateRandomMatrix(300, 500, 1000, 42)));
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void testBlock_MatchesSliceOfWhole() {
+        MatrixGenerator.SeededMatrix m = MatrixGenerator.seeded(50, 7, 100, -3);
+        int[][] whole = m.toRows();
+        int[][] block = m.block(17, 9);
+        for (int i = 0; i < 9; i++) assertArrayEquals(whole[17 + i], block[i]);
+        assertThrows(IndexOutOfBoundsException.class, () -> m.block(45, 6));
+    }
+
+    @Test
+    void testSeeds_GiveDifferentRowsAndValuesInRange() {
+        int[][] a = MatrixGenerator.generateRandomMatrix(20, 20, 50, 1);
+        int[][] b = MatrixGenerator.generateRandomMatrix(20, 20, 50, 2);
+        assertFalse(Arrays.deepEquals(a, b));
+        assertFalse(Arrays.equals(a[0], a[1]));
+        for (int[] row : a) {
+            for (int v : row) assertTrue(v >= 0 && v < 50);
+        }
+    }
+
+    @Test
+    void testSparseSeed_Reproducible() {
+        SparseMatrix a = MatrixGenerator.randomCsrMatrix(400, 300, 0.05, 10, 9);
+        SparseMatrix b = MatrixGenerator.randomCsrMatrix(400, 300, 0.05, 10, 9);
+        assertEquals(a.nnz(), b.nnz());
+        assertTrue(Arrays.deepEquals(a.toDense(), b.toDense()));
+        assertFalse(Arrays.deepEquals(a.toDense(), MatrixGenerator.randomCsrMatrix(400, 300, 0.05, 10, 10).toDense()));
+    }
+}
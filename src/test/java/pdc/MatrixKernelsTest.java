@@ -0,0 +1,81 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JUnit 5 tests checking the blocked multiply kernel against a naive reference.
+ */
+class MatrixKernelsTest {
+
+    private static int[][] naive(int[][] a, int[][] b) {
+        int n = b.length > 0 ? b[0].length : 0;
+        int[][] c = new int[a.length][n];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < n; j++) {
+                int sum = 0;
+                for (int k = 0; k < b.length; k++) sum += a[i][k] * b[k][j];
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    private static int[][] random(Random random, int rows, int cols, int bound) {
+        int[][] m = new int[rows][cols];
+        for (int[] row : m) {
+            for (int j = 0; j < cols; j++) row[j] = random.nextInt(2 * bound) - bound;
+        }
+        return m;
+    }
+
+    @Test
+    void testMultiply_MatchesNaiveAcrossTileEdges() {
+        Random random = new Random(218);
+        int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {17, MatrixKernels.KC + 3, MatrixKernels.NC + 5}, {40, 300, 70}};
+        for (int[] shape : shapes) {
+            int[][] a = random(random, shape[0], shape[1], 100);
+            int[][] b = random(random, shape[1], shape[2], 100);
+            assertArrayEquals(naive(a, b), MatrixKernels.multiply(a, b), "shape " + shape[0] + "x" + shape[1] + "x" + shape[2]);
+        }
+    }
+
+    @Test
+    void testMultiply_ParallelMatchesNaive() {
+        Random random = new Random(7);
+        int[][] a = random(random, 200, 150, 1000);
+        int[][] b = random(random, 150, 300, 1000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(naive(a, b), MatrixKernels.multiply(a, b, pool));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testActiveAccumulator_MatchesScalar() {
+        Random random = new Random(16);
+        int[][] a = random(random, 9, 70, 1 << 16);
+        int[][] b = random(random, 70, MatrixKernels.NC + 37, 1 << 16);
+        int[][] scalar = MatrixKernels.multiply(a, b, null, MatrixKernels.SCALAR);
+        assertArrayEquals(naive(a, b), scalar);
+        assertArrayEquals(scalar, MatrixKernels.multiply(a, b, null, MatrixKernels.ACCUMULATOR),
+                MatrixKernels.kernelName() + " kernel");
+    }
+
+    @Test
+    void testMultiply_WrapsLikeIntArithmetic() {
+        int[][] a = {{Integer.MAX_VALUE, Integer.MAX_VALUE}};
+        int[][] b = {{3}, {Integer.MIN_VALUE}};
+        assertArrayEquals(naive(a, b), MatrixKernels.multiply(a, b));
+    }
+
+    @Test
+    void testMultiply_RejectsMismatchedShapes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MatrixKernels.multiply(new int[][]{{1, 2}}, new int[][]{{1}, {2}, {3}}));
+    }
+}
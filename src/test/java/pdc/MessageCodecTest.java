@@ -0,0 +1,124 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JUnit 5 tests for MessageCodec wire compatibility.
+ */
+class MessageCodecTest {
+
+    private final MessageCodec codec = new MessageCodec("MASTER");
+
+    private static Message sample() {
+        return new Message(1, "TASK", "MASTER", "row data".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEncode_MatchesPack() throws IOException {
+        Message msg = sample();
+        byte[] packed = msg.pack();
+
+        ByteBuffer buf = ByteBuffer.allocate(codec.frameLength(msg));
+        codec.encode(msg, buf);
+
+        assertEquals(MessageCodec.LENGTH_PREFIX + packed.length, buf.position());
+        buf.flip();
+        assertEquals(packed.length, buf.getInt());
+        byte[] body = new byte[packed.length];
+        buf.get(body);
+        assertArrayEquals(packed, body);
+    }
+
+    @Test
+    void testDecode_ReadsPackedFrame() throws IOException {
+        Message msg = sample();
+        byte[] packed = msg.pack();
+        ByteBuffer buf = ByteBuffer.allocateDirect(4 + packed.length);
+        buf.putInt(packed.length).put(packed).flip();
+
+        Message decoded = codec.decode(buf);
+        assertNotNull(decoded);
+        assertEquals("TASK", decoded.messageType);
+        assertEquals("MASTER", decoded.sender);
+        assertEquals(msg.timestamp, decoded.timestamp);
+        assertArrayEquals(msg.payload, decoded.payload);
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    void testDecode_PartialFrameReturnsNull() throws IOException {
+        Message msg = sample();
+        ByteBuffer buf = ByteBuffer.allocate(codec.frameLength(msg));
+        codec.encode(msg, buf);
+        buf.flip();
+        buf.limit(buf.limit() - 1);
+
+        assertNull(codec.decode(buf));
+        assertEquals(0, buf.position());
+    }
+
+    @Test
+    void testDecodeInto_PayloadView() throws IOException {
+        Message msg = sample();
+        ByteBuffer buf = ByteBuffer.allocate(2 * codec.frameLength(msg));
+        codec.encode(msg, buf);
+        codec.encode(msg, buf);
+        buf.flip();
+
+        Message header = new Message();
+        ByteBuffer payload = codec.decodeInto(buf, header);
+        assertEquals(msg.payload.length, payload.remaining());
+        assertNull(header.payload);
+        assertNotNull(codec.decode(buf));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    void testDecode_RejectsBadMagic() {
+        Message msg = new Message("NOT_CSM", 1, "TASK", null, "MASTER", new byte[0]);
+        ByteBuffer buf = ByteBuffer.allocate(codec.frameLength(msg));
+        codec.encode(msg, buf);
+        buf.flip();
+
+        assertThrows(IOException.class, () -> codec.decode(buf));
+    }
+
+    @Test
+    void testDecode_TruncatedHeaderFailsWithinFrame() {
+        Message msg = sample();
+        ByteBuffer full = ByteBuffer.allocate(codec.frameLength(msg));
+        codec.encode(msg, full);
+        // cut the frame just after its type string, then append a whole second frame
+        int cut = 4 + 4 + Message.PROTOCOL_MAGIC.length() + 4 + 4 + "TASK".length();
+        ByteBuffer buf = ByteBuffer.allocate(cut + full.position());
+        buf.putInt(cut - 4).put(full.array(), 4, cut - 4).put(full.array(), 0, full.position()).flip();
+
+        IOException e = assertThrows(IOException.class, () -> codec.decode(buf));
+        assertEquals("Truncated header", e.getMessage());
+        assertEquals(cut, buf.position());
+    }
+
+    @Test
+    void testFramedStream_LargeFrameDoesNotPinBuffers() throws IOException {
+        byte[] big = new byte[4 * FramedStream.MAX_RETAINED_BUFFER_SIZE];
+        big[big.length - 1] = 7;
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        FramedStream sender = new FramedStream(new ByteArrayInputStream(new byte[0]), wire, "MASTER");
+        sender.send(new Message(1, "OPERAND", "MASTER", big));
+        sender.send(sample());
+
+        FramedStream receiver = new FramedStream(new ByteArrayInputStream(wire.toByteArray()),
+                new ByteArrayOutputStream(), "worker");
+        assertArrayEquals(big, receiver.receive().payload);
+        assertEquals("TASK", receiver.receive().messageType);
+
+        assertTrue(sender.retainedBytes() <= 2 * FramedStream.MAX_RETAINED_BUFFER_SIZE);
+        assertTrue(receiver.retainedBytes() <= 2 * FramedStream.MAX_RETAINED_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,168 @@
+package pdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 loopback tests for the non-blocking transport's framing.
+ */
+class NioTransportTest {
+
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private Master master;
+    private NioTransport transport;
+    private Socket socket;
+
+    /** What the transport reported to the master. */
+    private static final class Event {
+        final String kind;
+        final Master.WorkerInfo connection;
+        final String type;
+        final byte[] payload;
+
+        Event(String kind, Master.WorkerInfo connection, String type, byte[] payload) {
+            this.kind = kind;
+            this.connection = connection;
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        master = new Master() {
+            @Override
+            void onConnect(WorkerInfo worker) {
+                events.add(new Event("connect", worker, null, null));
+            }
+
+            @Override
+            void dispatch(WorkerInfo connection, Message msg, ByteBuffer payload) {
+                byte[] bytes = new byte[payload.remaining()];
+                payload.get(bytes);
+                events.add(new Event("frame", connection, msg.messageType, bytes));
+            }
+
+            @Override
+            void onDisconnect(WorkerInfo connection) {
+                events.add(new Event("disconnect", connection, null, null));
+            }
+        };
+        transport = new NioTransport(master, 1);
+        transport.start(0);
+        socket = new Socket("localhost", transport.localPort());
+        socket.setTcpNoDelay(true);
+        assertEquals("connect", next().kind);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        socket.close();
+        transport.close();
+        master.shutdown();
+    }
+
+    private Event next() throws InterruptedException {
+        Event event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "no event from the transport");
+        return event;
+    }
+
+    private static byte[] frame(String type, byte[] payload) {
+        Message msg = new Message(1, type, "worker", payload);
+        MessageCodec codec = new MessageCodec("worker");
+        ByteBuffer buf = ByteBuffer.allocate(codec.frameLength(msg));
+        codec.encode(msg, buf);
+        return buf.array();
+    }
+
+    @Test
+    void testSplitFrame_ReassembledAcrossReads() throws Exception {
+        byte[] bytes = frame("TASK", new byte[]{1, 2, 3, 4, 5});
+        OutputStream out = socket.getOutputStream();
+        for (byte b : bytes) {
+            out.write(b);
+            out.flush();
+            Thread.sleep(2);
+        }
+
+        Event event = next();
+        assertEquals("TASK", event.type);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, event.payload);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void testSeveralFramesInOneWrite_AllDispatchedInOrder() throws Exception {
+        byte[] first = frame("A", new byte[]{1});
+        byte[] second = frame("B", new byte[0]);
+        byte[] third = frame("C", new byte[]{7, 8});
+        ByteBuffer joined = ByteBuffer.allocate(first.length + second.length + third.length);
+        joined.put(first).put(second).put(third);
+        socket.getOutputStream().write(joined.array());
+        socket.getOutputStream().flush();
+
+        assertEquals("A", next().type);
+        assertEquals("B", next().type);
+        Event last = next();
+        assertEquals("C", last.type);
+        assertArrayEquals(new byte[]{7, 8}, last.payload);
+    }
+
+    @Test
+    void testPeerDisconnect_Reported() throws Exception {
+        socket.getOutputStream().write(frame("A", new byte[]{1}));
+        assertEquals("A", next().type);
+        socket.close();
+
+        assertEquals("disconnect", next().kind);
+    }
+
+    @Test
+    void testShortPayloadWriter_Rejected() throws Exception {
+        socket.getOutputStream().write(frame("PING", new byte[0]));
+        Master.WorkerInfo connection = next().connection;
+
+        Message header = new Message(1, "RESULT", "MASTER", null);
+        assertThrows(IOException.class, () -> connection.sendMessage(header, 8, buf -> buf.putInt(1)));
+        connection.sendMessage(header, 4, buf -> buf.putInt(42));
+
+        // only the well-formed frame reaches the peer
+        FramedStream in = new FramedStream(socket.getInputStream(), socket.getOutputStream(), "worker");
+        Message reply = new Message();
+        ByteBuffer payload = in.receive(reply);
+        assertEquals("RESULT", reply.messageType);
+        assertEquals(42, payload.getInt());
+    }
+
+    @Test
+    void testLargeFrames_BuffersShrinkOnceDrained() throws Exception {
+        byte[] big = new byte[4 * FramedStream.MAX_RETAINED_BUFFER_SIZE];
+        big[big.length - 1] = 9;
+        socket.getOutputStream().write(frame("OPERAND", big));
+        Event event = next();
+        assertArrayEquals(big, event.payload);
+        NioTransport.Connection connection = (NioTransport.Connection) event.connection;
+
+        connection.sendMessage(new Message(1, "RESULT", "MASTER", big));
+        FramedStream in = new FramedStream(socket.getInputStream(), socket.getOutputStream(), "worker");
+        assertArrayEquals(big, in.receive().payload);
+
+        // the loop shrinks each buffer right after it drains; give it a moment
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connection.retainedBytes() > 2 * FramedStream.MAX_RETAINED_BUFFER_SIZE
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(connection.retainedBytes() <= 2 * FramedStream.MAX_RETAINED_BUFFER_SIZE);
+    }
+}
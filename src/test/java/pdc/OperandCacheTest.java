@@ -0,0 +1,43 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for the worker's operand cache.
+ */
+class OperandCacheTest {
+
+    @Test
+    void testContentHash_SameContentsSameId() {
+        int[][] b = {{1, 2}, {3, 4}};
+        assertEquals(Operand.of(b).id, Operand.of(new int[][]{{1, 2}, {3, 4}}).id);
+        assertNotEquals(Operand.of(b).id, Operand.of(new int[][]{{1, 2, 3, 4}}).id);
+    }
+
+    @Test
+    void testEviction_LeastRecentlyUsedFirst() {
+        Operand a = Operand.of(new int[][]{{1, 1, 1, 1}});
+        Operand b = Operand.of(new int[][]{{2, 2, 2, 2}});
+        Operand c = Operand.of(new int[][]{{3, 3, 3, 3}});
+        OperandCache cache = new OperandCache(a.sizeBytes() * 2);
+
+        cache.put(a);
+        cache.put(b);
+        assertNotNull(cache.get(a.id));
+        cache.put(c);
+
+        assertNotNull(cache.get(a.id));
+        assertNull(cache.get(b.id));
+        assertNotNull(cache.get(c.id));
+    }
+
+    @Test
+    void testOversizedOperand_StillKept() {
+        Operand big = Operand.of(new int[64][64]);
+        OperandCache cache = new OperandCache(16);
+        cache.put(big);
+        assertEquals(1, cache.size());
+        assertSame(big.rows, cache.get(big.id));
+    }
+}
@@ -0,0 +1,60 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.List;
+
+/**
+ * JUnit 5 tests for row band sizing and splitting.
+ */
+class PartitionerTest {
+
+    @Test
+    void testSplit_CoversEveryRowOnce() {
+        List<Partitioner.Band> bands = Partitioner.split(10, 4);
+        assertEquals(3, bands.size());
+        assertEquals(0, bands.get(0).firstRow);
+        assertEquals(8, bands.get(2).firstRow);
+        assertEquals(2, bands.get(2).rowCount);
+    }
+
+    @Test
+    void testBandRows_FewerFatterTasksForLargeMatrices() {
+        Partitioner partitioner = new Partitioner();
+        int band = partitioner.bandRows("DOUBLE", 10_000, 100, 4);
+        assertTrue(band > 1);
+        assertTrue(Partitioner.split(10_000, band).size() <= 4 * 4);
+    }
+
+    @Test
+    void testBandRows_UnknownOperationSplitsForBalance() {
+        Partitioner partitioner = new Partitioner();
+        assertEquals(100_000 / (4 * 64) + 1, partitioner.bandRows("MATRIX_MULTIPLY", 100_000, 100, 64));
+    }
+
+    @Test
+    void testBandRows_CheapCellsGiveFatterBands() {
+        Partitioner partitioner = new Partitioner();
+        for (int i = 0; i < 20; i++) {
+            partitioner.observe("DOUBLE", 1_000, 1_000_000L);
+            partitioner.observe("DOUBLE", 10_000, 1_010_000L);
+            partitioner.observe("MATRIX_MULTIPLY", 1_000, 50_000_000L);
+            partitioner.observe("MATRIX_MULTIPLY", 10_000, 500_000_000L);
+        }
+        int cheap = partitioner.bandRows("DOUBLE", 100_000, 100, 64);
+        int expensive = partitioner.bandRows("MATRIX_MULTIPLY", 100_000, 100, 64);
+        assertEquals(100_000 / (4 * 64) + 1, expensive);
+        assertTrue(cheap > expensive);
+    }
+
+    @Test
+    void testSplit_SparseBandsBalanceNonZeros() {
+        // rows 0-1 hold 10 non-zeros each, rows 2-9 hold none
+        int[] pointers = {0, 10, 20, 20, 20, 20, 20, 20, 20, 20, 20};
+        List<Partitioner.Band> bands = Partitioner.split(pointers, 11);
+        assertEquals(3, bands.size());
+        assertEquals(1, bands.get(0).rowCount);
+        assertEquals(1, bands.get(1).rowCount);
+        assertEquals(8, bands.get(2).rowCount);
+    }
+}
@@ -0,0 +1,60 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JUnit 5 tests for Payloads row-block encoding.
+ */
+class PayloadsTest {
+
+    @Test
+    void testTask_RoundTrip() throws IOException {
+        int[][] rows = {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}};
+        long[] operands = {0xCAFEL};
+        ByteBuffer buf = ByteBuffer.allocate(Payloads.taskHeaderLength("MATRIX_MULTIPLY", operands)
+                + Payloads.blockLength(rows, 1, 2));
+        Payloads.putTaskHeader(buf, 42, "MATRIX_MULTIPLY", operands);
+        Payloads.putBlock(buf, rows, 1, 2, 1);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+
+        assertEquals(42, buf.getInt());
+        assertEquals("MATRIX_MULTIPLY", Payloads.getString(buf));
+        assertArrayEquals(operands, Payloads.getOperandIds(buf));
+        Payloads.RowBlock block = Payloads.getBlock(buf);
+        assertEquals(1, block.firstRow);
+        assertArrayEquals(new int[][]{{4, 5, 6}, {7, 8, 9}}, block.rows);
+    }
+
+    @Test
+    void testResult_DecodesIntoDestinationRows() throws IOException {
+        int[][] computed = {{10, 20}, {30, 40}};
+        ByteBuffer buf = ByteBuffer.allocateDirect(Payloads.resultLength(computed, 0, 2));
+        Payloads.putResult(buf, 7, computed, 0, 2, 2);
+        buf.flip();
+
+        int[][] output = new int[4][];
+        int[] reused = new int[2];
+        output[3] = reused;
+        assertEquals(7, buf.getInt());
+        assertEquals(2, Payloads.getBlock(buf, output));
+
+        assertNull(output[1]);
+        assertArrayEquals(new int[]{10, 20}, output[2]);
+        assertSame(reused, output[3]);
+        assertArrayEquals(new int[]{30, 40}, output[3]);
+    }
+
+    @Test
+    void testGetBlock_RejectsOutOfRangeRows() {
+        int[][] rows = {{1}, {2}};
+        ByteBuffer buf = ByteBuffer.allocate(Payloads.blockLength(rows, 0, 2));
+        Payloads.putBlock(buf, rows, 0, 2, 5);
+        buf.flip();
+
+        assertThrows(IOException.class, () -> Payloads.getBlock(buf, new int[6][]));
+    }
+}
@@ -0,0 +1,71 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 tests for phi-accrual failure detection.
+ */
+class PhiAccrualDetectorTest {
+
+    private static PhiAccrualDetector.History history(long... intervals) {
+        PhiAccrualDetector.History history = new PhiAccrualDetector.History();
+        long now = 0;
+        history.heartbeat(now);
+        for (long interval : intervals) history.heartbeat(now += interval);
+        return history;
+    }
+
+    @Test
+    void testSteadyHistory_SuspectedSoonAfterSilence() {
+        PhiAccrualDetector detector = new PhiAccrualDetector();
+        PhiAccrualDetector.History steady = history(100, 100, 100, 100, 100, 100, 100, 100);
+
+        assertTrue(detector.isAvailable(steady, 100));
+        assertTrue(detector.phi(steady, 100) < 0.1);
+        assertFalse(detector.isAvailable(steady, 1000));
+    }
+
+    @Test
+    void testJitteryHistory_GetsMoreSlack() {
+        PhiAccrualDetector detector = new PhiAccrualDetector();
+        PhiAccrualDetector.History steady = history(100, 100, 100, 100, 100, 100, 100, 100);
+        PhiAccrualDetector.History jittery = history(20, 380, 20, 380, 20, 380, 20, 380);
+
+        assertTrue(detector.phi(jittery, 700) < detector.phi(steady, 700));
+        assertTrue(detector.isAvailable(jittery, 700));
+        assertFalse(detector.isAvailable(steady, 700));
+    }
+
+    @Test
+    void testPhi_GrowsWithSilence() {
+        PhiAccrualDetector detector = new PhiAccrualDetector();
+        PhiAccrualDetector.History history = history(90, 110, 100, 95, 105);
+        double last = -1;
+        for (long silent = 0; silent <= 2000; silent += 100) {
+            double phi = detector.phi(history, silent);
+            assertTrue(phi >= last);
+            last = phi;
+        }
+    }
+
+    @Test
+    void testConfigure_ThresholdApplies() {
+        PhiAccrualDetector detector = new PhiAccrualDetector();
+        PhiAccrualDetector.History history = history(100, 100, 100, 100);
+        double phi = detector.phi(history, 400);
+
+        detector.configure(phi + 1, PhiAccrualDetector.DEFAULT_MIN_STD_DEV_MS,
+                PhiAccrualDetector.DEFAULT_ACCEPTABLE_PAUSE_MS);
+        assertTrue(detector.isAvailable(history, 400));
+        detector.configure(phi - 0.5, PhiAccrualDetector.DEFAULT_MIN_STD_DEV_MS,
+                PhiAccrualDetector.DEFAULT_ACCEPTABLE_PAUSE_MS);
+        assertFalse(detector.isAvailable(history, 400));
+    }
+
+    @Test
+    void testNoHeartbeats_NotStarted() {
+        assertFalse(new PhiAccrualDetector.History().started());
+        assertTrue(history().started());
+    }
+}
@@ -0,0 +1,97 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JUnit 5 tests for planning and running MatrixExpr pipelines.
+ */
+class PipelineTest {
+
+    private static final int[][] A = {{1, 2}, {3, 4}, {5, 6}};
+    private static final int[][] B = {{1, 0, 2}, {0, 1, 3}};
+    private static final int[][] C = {{1, 1, 1}, {2, 2, 2}, {3, 3, 3}};
+
+    @Test
+    void testCompile_FusesRowLocalStepsAndSharesNodes() {
+        MatrixExpr product = MatrixExpr.of(A).multiply(B);
+        MatrixExpr expr = product.add(product).add(MatrixExpr.of(C)).apply("double");
+        assertTrue(Pipeline.boundaries(expr).isEmpty());
+
+        Pipeline.Stage stage = Pipeline.compile(expr, Collections.emptyMap());
+        assertEquals("PIPELINE 2,3|R 0;O 0;MUL 0 1;ADD 2 2;R 1;ADD 3 4;CALL DOUBLE 5", stage.operation);
+        assertEquals(5, stage.input.cols);
+        assertEquals(1, stage.operands.length);
+        assertEquals(List.of("PIPELINE", "DOUBLE"), Pipeline.kernels(stage.operation));
+        assertEquals(List.of("SUM"), Pipeline.kernels("SUM"));
+        assertEquals(List.of("REDUCE_DOT"), Pipeline.kernels("REDUCE_DOT 3"));
+    }
+
+    @Test
+    void testProfile_DropsWidthsSeedsAndGridIds() {
+        String a = Pipeline.compile(MatrixExpr.random(40, 2, 10, 7).multiply(B), Collections.emptyMap()).operation;
+        String b = Pipeline.compile(MatrixExpr.random(90, 2, 5, 8).multiply(B), Collections.emptyMap()).operation;
+        assertNotEquals(a, b);
+        assertEquals("PIPELINE|G;O 0;MUL 0 1", Pipeline.profile(a));
+        assertEquals(Pipeline.profile(a), Pipeline.profile(b));
+        assertEquals("PIPELINE|R 0;CALL DOUBLE 0", Pipeline.profile("PIPELINE 3|R 0;CALL DOUBLE 0"));
+        assertEquals("SUMMA", Pipeline.profile("SUMMA 17 2 2 0 1 4|a:1,b:2"));
+        assertEquals("DOUBLE", Pipeline.profile("DOUBLE"));
+        assertEquals("REDUCE_DOT", Pipeline.profile("REDUCE_DOT 3"));
+    }
+
+    @Test
+    void testRandomLeaf_GeneratedPerBand() throws Exception {
+        MatrixExpr expr = MatrixExpr.random(40, 2, 10, 7).multiply(B).add(MatrixExpr.random(40, 3, 5, 8));
+        Pipeline.Stage stage = Pipeline.compile(expr, Collections.emptyMap());
+        assertEquals("PIPELINE |G 40 2 10 7;O 0;MUL 0 1;G 40 3 5 8;ADD 2 3", stage.operation);
+        assertEquals(40, stage.input.rows);
+        assertEquals(0, stage.input.cols);
+
+        int[][] whole = MatrixKernels.multiply(MatrixGenerator.generateRandomMatrix(40, 2, 10, 7), B);
+        int[][] added = MatrixGenerator.generateRandomMatrix(40, 3, 5, 8);
+        int[][] band = Pipeline.execute(stage.operation, 30, new int[10][0], i -> stage.operands[i].rows, null, null);
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 3; j++) assertEquals(whole[30 + i][j] + added[30 + i][j], band[i][j]);
+        }
+    }
+
+    @Test
+    void testEvaluate_MatchesStepByStep() throws IOException {
+        Master master = new Master();
+        master.setTestMode(true);
+        try {
+            checkEvaluate(master);
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    private static void checkEvaluate(Master master) throws IOException {
+        int[][] ab = MatrixKernels.multiply(A, B);
+
+        int[][] fused = master.evaluate(MatrixExpr.of(A).multiply(B).add(MatrixExpr.of(C)).apply("DOUBLE"));
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) assertEquals(2 * (ab[i][j] + C[i][j]), fused[i][j]);
+        }
+
+        // (AB)' x A needs AB whole, so it runs as two stages
+        MatrixExpr staged = MatrixExpr.of(A).multiply(B).transpose().multiply(A);
+        assertEquals(1, Pipeline.boundaries(staged).size());
+        int[][] abT = IntMatrix.wrap(ab).transpose().toRows();
+        assertArrayEquals(MatrixKernels.multiply(abT, A), master.evaluate(staged));
+
+        // a random leaf as the right-hand side is generated whole on the master
+        MatrixExpr random = MatrixExpr.of(A).multiply(MatrixExpr.random(2, 4, 10, 3))
+                .add(MatrixExpr.random(3, 4, 10, 4));
+        int[][] expected = MatrixKernels.multiply(A, MatrixGenerator.generateRandomMatrix(2, 4, 10, 3));
+        int[][] added = MatrixGenerator.generateRandomMatrix(3, 4, 10, 4);
+        int[][] actual = master.evaluate(random);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) assertEquals(expected[i][j] + added[i][j], actual[i][j]);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * JUnit 5 tests for Reduction partials and the ReductionTree that merges them.
+ */
+class ReductionTest {
+
+    private static final int[][] A = {{1, -2, 3}, {4, 5, -6}, {7, 8, 9}, {-1, 0, 2}};
+    private static final int[][] B = {{2, 2, 2}, {1, 0, 1}, {0, 1, 0}, {3, 3, 3}};
+
+    @Test
+    void testPartials_MergedPerBandMatchWholeMatrix() {
+        for (Reduction r : Reduction.values()) {
+            int[][] data = r.binary() ? sideBySide(A, B) : A;
+            int width = A[0].length;
+            ReductionTree tree = new ReductionTree(r, 3);
+            // bands [0,1) [1,3) [3,4), delivered out of order
+            tree.offer(2, r.partial(slice(data, 3, 1), width));
+            tree.offer(0, r.partial(slice(data, 0, 1), width));
+            assertFalse(tree.total().isDone());
+            tree.offer(1, r.partial(slice(data, 1, 2), width));
+            assertEquals(String.valueOf(render(r.finish(r.partial(data, width)))), String.valueOf(render(tree.result())),
+                    r.name());
+        }
+        assertEquals(30L, Reduction.SUM.finish(Reduction.SUM.partial(A)));
+        assertEquals(-6, Reduction.MIN.finish(Reduction.MIN.partial(A)));
+        assertEquals(9, Reduction.MAX.finish(Reduction.MAX.partial(A)));
+        assertArrayEquals(new long[]{2, 3, 24, 1}, (long[]) Reduction.ROW_SUMS.finish(Reduction.ROW_SUMS.partial(A)));
+        assertArrayEquals(new long[]{11, 11, 8}, (long[]) Reduction.COLUMN_SUMS.finish(Reduction.COLUMN_SUMS.partial(A)));
+        assertEquals(13L, Reduction.DOT.finish(Reduction.DOT.partial(sideBySide(A, B), 3)));
+        assertEquals(Reduction.MAX, Reduction.forOperation("reduce_max"));
+        assertNull(Reduction.forOperation("SUM"));
+    }
+
+    @Test
+    void testDot_SplitsAtTheFirstMatrixWidth() {
+        // a 1-wide row dotted with a 3-wide one would pass a split at half the band width
+        int[][] band = {{2, 1, 1, 1}};
+        assertEquals(Reduction.DOT, Reduction.forOperation(Reduction.DOT.operation(1)));
+        assertEquals(1, Reduction.leftCols(Reduction.DOT.operation(1)));
+        assertThrows(IllegalArgumentException.class, () -> Reduction.DOT.partial(band, 1));
+        assertThrows(IllegalArgumentException.class, () -> Reduction.DOT.partial(band));
+        assertEquals(3L, Reduction.DOT.finish(Reduction.DOT.partial(new int[][]{{1, 2, 1, 1}}, 2)));
+    }
+
+    @Test
+    void testTree_ConcurrentOffersKeepBandOrder() {
+        int bands = 37;
+        ReductionTree tree = new ReductionTree(Reduction.ROW_SUMS, bands);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < bands; i++) order.add(i);
+        Collections.shuffle(order);
+        CompletableFuture<?>[] offers = order.stream()
+                .map(band -> CompletableFuture.runAsync(() -> tree.offer(band, new long[]{band, band})))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(offers).join();
+
+        long[] rows = (long[]) tree.result();
+        assertEquals(2 * bands, rows.length);
+        for (int i = 0; i < rows.length; i++) assertEquals((long) (i / 2), rows[i]);
+    }
+
+    @Test
+    void testCoordinate_ReductionsInTestMode() {
+        Master master = new Master();
+        master.setTestMode(true);
+        try {
+            assertEquals(30L, master.coordinate("REDUCE_SUM", A, 2));
+            assertEquals(13L, master.coordinate("REDUCE_DOT", A, B, 2));
+            assertEquals(Math.sqrt(290), (double) master.coordinate("REDUCE_FROBENIUS_NORM", A, 2), 1e-9);
+            assertThrows(IllegalArgumentException.class,
+                    () -> master.coordinate("REDUCE_DOT", new int[][]{{1, 2}}, new int[][]{{1, 1, 1, 1}}, 1));
+        } finally {
+            master.shutdown();
+        }
+    }
+
+    private static int[][] slice(int[][] rows, int first, int count) {
+        int[][] band = new int[count][];
+        System.arraycopy(rows, first, band, 0, count);
+        return band;
+    }
+
+    private static int[][] sideBySide(int[][] a, int[][] b) {
+        return IntMatrix.concatColumns(List.of(IntMatrix.wrap(a), IntMatrix.wrap(b))).toRows();
+    }
+
+    private static Object render(Object value) {
+        return value instanceof long[] ? java.util.Arrays.toString((long[]) value) : value;
+    }
+}
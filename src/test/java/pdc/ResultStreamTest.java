@@ -0,0 +1,73 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * JUnit 5 tests for incremental delivery of a job's bands.
+ */
+class ResultStreamTest {
+
+    private static Master.Job job(int rows) {
+        Master.Job job = new Master.Job(1, "DOUBLE", IntMatrix.heap(rows, 1), new Operand[0]);
+        job.done = new CompletableFuture<>();
+        job.stream = new ResultStream(job);
+        return job;
+    }
+
+    @Test
+    void testBands_DeliveredBeforeJobCompletes() {
+        Master.Job job = job(4);
+        job.output[2] = new int[]{6};
+        job.output[3] = new int[]{8};
+        job.stream.offer(new Master.Task(job, 0, 2, 2));
+
+        Iterator<Payloads.RowBlock> iter = job.stream.iterator();
+        assertTrue(iter.hasNext());
+        Payloads.RowBlock block = iter.next();
+        assertEquals(2, block.firstRow);
+        assertSame(job.output[3], block.rows[1]);
+        assertFalse(job.done.isDone());
+
+        job.done.complete(null);
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    void testDeadline_EndsIterationWithCause() {
+        Master.Job job = job(2);
+        job.done.completeExceptionally(new TimeoutException("late"));
+
+        Iterator<Payloads.RowBlock> iter = job.stream.iterator();
+        CompletionException e = assertThrows(CompletionException.class, iter::hasNext);
+        assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    void testSparseOutputJob_BandsStaySparse() throws Exception {
+        Master master = new Master();
+        try {
+            SparseMatrix a = SparseMatrix.fromDense(new int[][]{{1, 0}, {0, 2}});
+            Master.Job job = new Master.Job(1, "SPARSE_SPARSE_MULTIPLY", a, new Operand[0], true);
+            Master.Task task = new Master.Task(job, 0, 0, 2);
+            job.tasks.add(task);
+            job.done = task.done;
+            job.stream = new ResultStream(job);
+            task.sparseResult = a;
+
+            Master.Attempt attempt = master.onTaskDispatched(task, new Master.WorkerInfo("w"));
+            master.onTaskFinished(task, attempt, true, null);
+
+            assertTrue(task.done.isDone());
+            // nothing was expanded into the stream, and no dense rows were written
+            assertFalse(job.stream.iterator().hasNext());
+            assertNull(job.output[0]);
+        } finally {
+            master.shutdown();
+        }
+    }
+}
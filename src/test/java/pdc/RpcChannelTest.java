@@ -0,0 +1,122 @@
+package pdc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * JUnit 5 tests for RpcChannel correlation and windowing.
+ */
+class RpcChannelTest {
+
+    private final List<Long> sentIds = new ArrayList<>();
+    private Master.WorkerInfo connection;
+    private RpcChannel rpc;
+
+    @BeforeEach
+    void setUp() {
+        connection = stub(sentIds);
+        rpc = new RpcChannel(connection, 2);
+    }
+
+    private static Master.WorkerInfo stub(List<Long> sent) {
+        return new Master.WorkerInfo("stub-worker") {
+            @Override
+            void sendMessage(Message header, int payloadLength, Consumer<ByteBuffer> payloadWriter) {
+                ByteBuffer buf = ByteBuffer.allocate(payloadLength);
+                payloadWriter.accept(buf);
+                sent.add(buf.getLong(0));
+            }
+        };
+    }
+
+    private CompletableFuture<Integer> callEcho() {
+        return rpc.tryCall("TASK", 0, out -> {}, (header, payload) -> payload.getInt());
+    }
+
+    private static ByteBuffer reply(long correlationId, int value) {
+        ByteBuffer buf = ByteBuffer.allocate(12);
+        buf.putLong(correlationId).putInt(value).flip();
+        return buf;
+    }
+
+    @Test
+    void testReplies_CompleteOutOfOrder() throws Exception {
+        CompletableFuture<Integer> first = callEcho();
+        CompletableFuture<Integer> second = callEcho();
+        Message header = new Message(1, "RESULT", "stub-worker", null);
+
+        assertTrue(rpc.complete(header, reply(sentIds.get(1), 20)));
+        assertTrue(rpc.complete(header, reply(sentIds.get(0), 10)));
+
+        assertEquals(10, (int) first.get());
+        assertEquals(20, (int) second.get());
+        assertEquals(0, rpc.inFlight());
+    }
+
+    @Test
+    void testWindow_LimitsOutstandingCalls() {
+        assertNotNull(callEcho());
+        assertNotNull(callEcho());
+        assertNull(callEcho());
+
+        rpc.complete(new Message(1, "RESULT", "stub-worker", null), reply(sentIds.get(0), 1));
+        assertNotNull(callEcho());
+    }
+
+    @Test
+    void testClose_FailsPendingCalls() {
+        CompletableFuture<Integer> call = callEcho();
+        rpc.close(new IOException("gone"));
+
+        assertTrue(call.isCompletedExceptionally());
+        assertFalse(rpc.hasCapacity());
+        assertFalse(rpc.complete(new Message(1, "RESULT", "stub-worker", null), reply(sentIds.get(0), 1)));
+    }
+
+    @Test
+    void testResume_FailsOnlyCallsTheWorkerLost() {
+        rpc.setWindow(3);
+        CompletableFuture<Integer> lost = callEcho();
+        CompletableFuture<Integer> held = callEcho();
+        long through = rpc.lastCorrelationId();
+
+        // the session moves to a new connection; later calls go out on it
+        List<Long> resentIds = new ArrayList<>();
+        connection.link = stub(resentIds);
+        CompletableFuture<Integer> after = callEcho();
+        assertEquals(1, resentIds.size());
+
+        assertEquals(1, rpc.failMissing(through, Set.of(sentIds.get(1)), new IOException("lost")));
+        assertTrue(lost.isCompletedExceptionally());
+        assertFalse(held.isDone());
+        assertFalse(after.isDone());
+        assertEquals(2, rpc.inFlight());
+    }
+
+    @Test
+    void testCancel_ById() {
+        RpcChannel.Call<Integer> first = rpc.tryCall("TASK", 0, out -> {}, (header, payload) -> payload.getInt());
+        CompletableFuture<Integer> second = callEcho();
+        assertEquals((long) sentIds.get(0), first.correlationId);
+
+        rpc.cancel(first.correlationId);
+
+        assertTrue(first.isCompletedExceptionally());
+        assertFalse(second.isDone());
+        assertEquals(1, rpc.inFlight());
+        // the CANCEL frame carries the same id; a late reply is dropped
+        assertEquals(List.of(first.correlationId, sentIds.get(1), first.correlationId), sentIds);
+        assertFalse(rpc.complete(new Message(1, "RESULT", "stub-worker", null), reply(first.correlationId, 1)));
+
+        rpc.cancel(first.correlationId);
+        assertEquals(3, sentIds.size());
+    }
+}
@@ -0,0 +1,203 @@
+package pdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * JUnit 5 tests for the Scheduler's prefetch, placement, stealing and pinning, driven
+ * one dispatchRound() at a time against workers that only record what they are sent.
+ */
+class SchedulerTest {
+
+    private Master master;
+    private JobQueue backlog;
+    private List<Master.WorkerInfo> workers;
+    private Scheduler scheduler;
+
+    /**
+     * A worker whose connection swallows frames. Calls still go through its RpcChannel,
+     * so its window fills up and stays full, since no reply ever comes. While not
+     * accepting it turns every task away as if its window were full.
+     */
+    private static final class StubWorker extends Master.WorkerInfo {
+        final List<Master.Task> sent = new ArrayList<>();
+        boolean accepting = true;
+
+        StubWorker(String id, int cores, int window, String... kernels) {
+            super(id);
+            capabilities = new WorkerCapabilities(cores, 0, "", new HashSet<>(Arrays.asList(kernels)));
+            rpc.setWindow(window);
+        }
+
+        @Override
+        void sendMessage(Message header, int payloadLength, Consumer<ByteBuffer> payloadWriter) {
+        }
+
+        @Override
+        RpcChannel.Call<Boolean> sendTask(Master.Task task) {
+            if (!accepting) return null;
+            RpcChannel.Call<Boolean> reply = rpc.tryCall("TASK", 0, out -> {}, (header, payload) -> true);
+            if (reply != null) sent.add(task);
+            return reply;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        master = new Master();
+        backlog = new JobQueue();
+        workers = new ArrayList<>();
+        scheduler = new Scheduler(master, backlog, workers, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        master.shutdown();
+    }
+
+    private List<Master.Task> queueTasks(long jobId, String operation, int count) {
+        Master.Job job = new Master.Job(jobId, operation, IntMatrix.heap(count, 1), new Operand[0]);
+        for (int i = 0; i < count; i++) job.tasks.add(new Master.Task(job, i, i, 1));
+        backlog.addAll(job.tasks);
+        return job.tasks;
+    }
+
+    private List<Master.Task> queuePinnedTasks(long jobId, String operation, int count, Master.WorkerInfo worker) {
+        Master.Job job = new Master.Job(jobId, operation, IntMatrix.heap(count, 1), new Operand[0]);
+        for (int i = 0; i < count; i++) {
+            job.tasks.add(new Master.Task(job, i, i, 0, IntMatrix.heap(1, 1), operation, new Operand[0], worker));
+        }
+        backlog.addAll(job.tasks);
+        return job.tasks;
+    }
+
+    @Test
+    void testPrefetch_TopsUpDequeToWindow() {
+        StubWorker worker = new StubWorker("w", 1, 2);
+        workers.add(worker);
+        queueTasks(1, "DOUBLE", 10);
+
+        assertTrue(scheduler.dispatchRound());
+        assertEquals(2, worker.sent.size());
+        assertEquals(0, scheduler.queued(worker));
+
+        // the window is full now, so the deque fills up behind it and no further
+        assertTrue(scheduler.dispatchRound());
+        assertEquals(2, worker.sent.size());
+        assertEquals(2, scheduler.queued(worker));
+        assertEquals(6, backlog.size());
+
+        assertFalse(scheduler.dispatchRound());
+        assertEquals(6, backlog.size());
+    }
+
+    @Test
+    void testTwoChoices_PlacesByLoadPerCore() {
+        StubWorker small = new StubWorker("small", 1, 8);
+        StubWorker large = new StubWorker("large", 4, 8);
+        small.accepting = false;
+        large.accepting = false;
+        workers.add(small);
+        workers.add(large);
+        queueTasks(1, "DOUBLE", 10);
+
+        scheduler.dispatchRound();
+
+        assertEquals(2, scheduler.queued(small));
+        assertEquals(8, scheduler.queued(large));
+    }
+
+    @Test
+    void testPrefetch_SkipsWorkersWithoutTheKernel() {
+        StubWorker sums = new StubWorker("sums", 1, 4, "SUM");
+        StubWorker doubles = new StubWorker("doubles", 1, 4, "DOUBLE");
+        workers.add(sums);
+        workers.add(doubles);
+        queueTasks(1, "DOUBLE", 3);
+        queueTasks(2, "MATRIX_MULTIPLY", 1);
+
+        scheduler.dispatchRound();
+
+        assertTrue(sums.sent.isEmpty());
+        assertEquals(3, doubles.sent.size());
+        // nobody runs MATRIX_MULTIPLY, so it waits on the backlog
+        assertEquals(1, backlog.size());
+    }
+
+    @Test
+    void testPinnedTask_OnlyGoesToItsWorker() {
+        StubWorker free = new StubWorker("free", 8, 8);
+        StubWorker owner = new StubWorker("owner", 1, 1);
+        workers.add(free);
+        workers.add(owner);
+        List<Master.Task> cells = queuePinnedTasks(1, "SUM", 3, owner);
+
+        scheduler.dispatchRound();
+        scheduler.dispatchRound();
+
+        assertTrue(free.sent.isEmpty());
+        assertEquals(Collections.singletonList(cells.get(0)), owner.sent);
+        // the owner's deque holds the next cell and the free worker may not steal it
+        assertEquals(1, scheduler.queued(owner));
+        assertEquals(1, backlog.size());
+    }
+
+    @Test
+    void testSteal_SkipsLongestDequeWithNothingStealable() {
+        StubWorker grid = new StubWorker("grid", 1, 2, "SUM");
+        StubWorker busy = new StubWorker("busy", 1, 1, "DOUBLE");
+        workers.add(grid);
+        workers.add(busy);
+        queuePinnedTasks(1, "SUM", 4, grid);
+        List<Master.Task> doubles = queueTasks(2, "DOUBLE", 2);
+        scheduler.dispatchRound();
+        scheduler.dispatchRound();
+        assertEquals(2, scheduler.queued(grid));
+        assertEquals(1, scheduler.queued(busy));
+        assertTrue(backlog.isEmpty());
+
+        StubWorker thief = new StubWorker("thief", 1, 1, "DOUBLE");
+        workers.add(thief);
+        assertTrue(scheduler.dispatchRound());
+
+        assertEquals(Collections.singletonList(doubles.get(1)), thief.sent);
+        assertEquals(0, scheduler.queued(busy));
+        assertEquals(2, scheduler.queued(grid));
+    }
+
+    @Test
+    void testDepartedWorker_PrefetchedTasksAreRedispatched() {
+        StubWorker leaving = new StubWorker("leaving", 1, 1);
+        workers.add(leaving);
+        List<Master.Task> tasks = queueTasks(1, "DOUBLE", 2);
+        scheduler.dispatchRound();
+        scheduler.dispatchRound();
+        assertEquals(1, scheduler.queued(leaving));
+
+        workers.remove(leaving);
+        StubWorker joining = new StubWorker("joining", 1, 4);
+        workers.add(joining);
+        assertTrue(scheduler.dispatchRound());
+
+        assertEquals(Collections.singletonList(tasks.get(1)), joining.sent);
+        assertEquals(0, scheduler.queued(leaving));
+    }
+
+    @Test
+    void testFinishedJob_TasksAreDropped() {
+        StubWorker worker = new StubWorker("w", 1, 4);
+        workers.add(worker);
+        List<Master.Task> tasks = queueTasks(1, "DOUBLE", 3);
+        tasks.get(1).done.cancel(false);
+
+        scheduler.dispatchRound();
+
+        assertEquals(Arrays.asList(tasks.get(0), tasks.get(2)), worker.sent);
+        assertTrue(backlog.isEmpty());
+    }
+}
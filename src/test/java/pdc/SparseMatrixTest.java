@@ -0,0 +1,63 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JUnit 5 tests for sparse storage, kernels and sparse blocks.
+ */
+class SparseMatrixTest {
+
+    private static final int[][] DENSE = {{0, 2, 0, 0}, {0, 0, 0, 0}, {1, 0, 0, 3}};
+
+    @Test
+    void testLayouts_AgreeWithDense() {
+        SparseMatrix csr = SparseMatrix.fromDense(DENSE);
+        assertEquals(3, csr.nnz());
+        assertEquals(3, csr.get(2, 3));
+        assertEquals(0, csr.get(1, 1));
+
+        SparseMatrix csc = csr.toCsc();
+        assertEquals(SparseMatrix.Layout.CSC, csc.layout);
+        assertArrayEquals(DENSE, csc.toDense());
+        assertArrayEquals(DENSE, csc.toCsr().toDense());
+        assertEquals(2, csr.transpose().get(1, 0));
+    }
+
+    @Test
+    void testKernels_MatchDenseMultiply() {
+        SparseMatrix a = MatrixGenerator.randomCsrMatrix(60, 40, 0.1, 10);
+        SparseMatrix b = MatrixGenerator.randomCscMatrix(40, 30, 0.2, 10);
+        int[][] expected = MatrixKernels.multiply(a.toDense(), b.toDense());
+
+        assertArrayEquals(expected, SparseKernels.multiply(a, b.toDense(), null));
+        SparseMatrix product = SparseKernels.multiply(a, b);
+        assertEquals(SparseMatrix.Layout.CSR, product.layout);
+        assertArrayEquals(expected, product.toDense());
+    }
+
+    @Test
+    void testSparseBlock_RoundTrip() throws IOException {
+        SparseMatrix csr = SparseMatrix.fromDense(DENSE);
+        ByteBuffer buf = ByteBuffer.allocate(Payloads.sparseBlockLength(csr, 1, 2));
+        Payloads.putSparseBlock(buf, csr, 1, 2, 1);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+
+        assertTrue(Payloads.isSparseBlock(buf));
+        assertThrows(IOException.class, () -> Payloads.getBlock(buf.duplicate()));
+        Payloads.SparseBlock block = Payloads.getSparseBlock(buf);
+        assertEquals(1, block.firstRow);
+        assertArrayEquals(new int[][]{{0, 0, 0, 0}, {1, 0, 0, 3}}, block.matrix.toDense());
+    }
+
+    @Test
+    void testGenerator_HonoursDensity() {
+        SparseMatrix m = MatrixGenerator.randomCsrMatrix(500, 400, 0.05, 100);
+        assertEquals(0.05, m.density(), 0.01);
+        assertEquals(0, MatrixGenerator.randomCsrMatrix(10, 10, 0, 5).nnz());
+        assertEquals(100, MatrixGenerator.randomCsrMatrix(10, 10, 1, 5).nnz());
+    }
+}
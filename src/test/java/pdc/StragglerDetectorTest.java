@@ -0,0 +1,42 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 tests for StragglerDetector thresholds.
+ */
+class StragglerDetectorTest {
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void testNoSamples_NeverStraggler() {
+        StragglerDetector detector = new StragglerDetector();
+        assertFalse(detector.isStraggler("MATRIX_MULTIPLY", ms(60_000)));
+    }
+
+    @Test
+    void testOutlier_AgainstObservedDistribution() {
+        StragglerDetector detector = new StragglerDetector();
+        detector.configure(2.0, 50);
+        for (int i = 0; i < 20; i++) detector.observe("MATRIX_MULTIPLY", ms(100));
+
+        assertFalse(detector.isStraggler("MATRIX_MULTIPLY", ms(150)));
+        assertTrue(detector.isStraggler("MATRIX_MULTIPLY", ms(250)));
+        assertFalse(detector.isStraggler("BLOCK_TRANSPOSE", ms(250)));
+    }
+
+    @Test
+    void testFloor_ProtectsTinyTasks() {
+        StragglerDetector detector = new StragglerDetector();
+        detector.configure(2.0, 200);
+        for (int i = 0; i < 20; i++) detector.observe("SUM", ms(1));
+
+        assertFalse(detector.isStraggler("SUM", ms(150)));
+        assertTrue(detector.isStraggler("SUM", ms(250)));
+    }
+}
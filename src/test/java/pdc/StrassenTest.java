@@ -0,0 +1,52 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JUnit 5 tests for Strassen multiplication against the blocked kernel.
+ */
+class StrassenTest {
+
+    private static int[][] random(Random random, int rows, int cols) {
+        int[][] m = new int[rows][cols];
+        for (int[] row : m) {
+            for (int j = 0; j < cols; j++) row[j] = random.nextInt();
+        }
+        return m;
+    }
+
+    @Test
+    void testMultiply_OddShapesMatchKernel() {
+        Random random = new Random(15);
+        int[][] a = random(random, 37, 23);
+        int[][] b = random(random, 23, 41);
+        assertArrayEquals(MatrixKernels.multiply(a, b), Strassen.multiply(a, b, 4, null));
+    }
+
+    @Test
+    void testMultiply_ParallelRecursionMatchesKernel() {
+        Random random = new Random(16);
+        int[][] a = random(random, 64, 64);
+        int[][] b = random(random, 64, 64);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(MatrixKernels.multiply(a, b), Strassen.multiply(a, b, 8, pool));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStep_SevenProductsRebuildResult() {
+        Random random = new Random(17);
+        int[][] a = random(random, 9, 6);
+        int[][] b = random(random, 6, 5);
+        Strassen.Step step = new Strassen.Step(a, b);
+        int[][][] products = new int[7][][];
+        for (int i = 0; i < 7; i++) products[i] = MatrixKernels.multiply(step.left[i], step.right[i]);
+        assertArrayEquals(MatrixKernels.multiply(a, b), step.combine(products));
+    }
+}
@@ -0,0 +1,140 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JUnit 5 tests for SUMMA grid planning and a grid of cells exchanging panels over PeerLinks.
+ */
+class SummaTest {
+
+    @Test
+    void testForWorkers_PicksSquarestGridThatFits() {
+        Summa grid = Summa.forWorkers(6, 100, 50, 100);
+        assertEquals(2, grid.gridRows);
+        assertEquals(3, grid.gridCols);
+        assertEquals(6, grid.panels);
+        assertEquals(1, Summa.forWorkers(6, 1, 50, 100).gridRows);
+        assertNull(Summa.forWorkers(1, 100, 50, 100));
+        assertNull(Summa.forWorkers(4, 1, 50, 1));
+    }
+
+    @Test
+    void testGrid_CellsExchangePanelsAndMatchKernel() throws Exception {
+        int[][] a = MatrixGenerator.generateRandomMatrix(11, 7, 10);
+        int[][] b = MatrixGenerator.generateRandomMatrix(7, 9, 10);
+        Summa grid = new Summa(2, 3, 7);
+        int cells = grid.gridRows * grid.gridCols;
+
+        List<PeerLinks> links = new ArrayList<>();
+        List<String> peers = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        // every cell needs its own thread: cells block waiting for each other's panels
+        ExecutorService threads = Executors.newFixedThreadPool(cells);
+        try {
+            for (int cell = 0; cell < cells; cell++) {
+                links.add(new PeerLinks("cell-" + cell, 0));
+                peers.add("localhost:" + links.get(cell).port());
+            }
+            int[][] c = new int[11][9];
+            List<CompletableFuture<Void>> running = new ArrayList<>();
+            for (int i = 0; i < grid.gridRows; i++) {
+                for (int j = 0; j < grid.gridCols; j++) {
+                    int firstRow = Summa.bandStart(11, grid.gridRows, i);
+                    int firstCol = Summa.bandStart(9, grid.gridCols, j);
+                    int cols = Summa.bandStart(9, grid.gridCols, j + 1) - firstCol;
+                    OperandCache cache = new OperandCache(1 << 20);
+                    Operand panels = Operand.of(grid.panelsOfB(b, i, j));
+                    cache.put(panels);
+                    Worker.TaskRequest task = new Worker.TaskRequest(1, i * grid.gridCols + j,
+                            grid.operation(42, i, j, cols, peers), new long[]{panels.id},
+                            new Payloads.RowBlock(firstRow, grid.panelsOfA(IntMatrix.wrap(a), i, j).toRows()));
+                    assertNull(task.resolveOperands(cache));
+                    PeerLinks own = links.get(i * grid.gridCols + j);
+                    running.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            int[][] block = Summa.run(task, own, pool);
+                            for (int r = 0; r < block.length; r++) {
+                                System.arraycopy(block[r], 0, c[firstRow + r], firstCol, cols);
+                            }
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }, threads));
+                }
+            }
+            CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+            assertArrayEquals(MatrixKernels.multiply(a, b), c);
+        } finally {
+            for (PeerLinks link : links) link.close();
+            pool.shutdownNow();
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void testLateBlock_ForForgottenExchangeDropped() throws Exception {
+        PeerLinks sender = new PeerLinks("sender", 0);
+        PeerLinks receiver = new PeerLinks("receiver", 0);
+        try {
+            String address = "localhost:" + receiver.port();
+            receiver.forget(7);
+            sender.send(address, 7, 0, new int[][]{{1}});
+            sender.send(address, 8, 0, new int[][]{{2}});
+            // one reader per connection, so exchange 7's block was handled before this one
+            assertArrayEquals(new int[][]{{2}}, receiver.receive(8, 0, 5000, () -> false));
+
+            assertThrows(IOException.class, () -> receiver.receive(7, 0, 200, () -> false));
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    void testIdleMailbox_ExpiresUnlessAwaited() throws Exception {
+        PeerLinks sender = new PeerLinks("sender", 0);
+        PeerLinks receiver = new PeerLinks("receiver", 0, 100);
+        try {
+            String address = "localhost:" + receiver.port();
+            // exchange 9's cell never arrives; exchange 11's is already waiting
+            CompletableFuture<int[][]> awaited = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return receiver.receive(11, 0, 5000, () -> false);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            sender.send(address, 9, 0, new int[][]{{1}});
+            Thread.sleep(500);
+            sender.send(address, 11, 0, new int[][]{{3}});
+
+            assertArrayEquals(new int[][]{{3}}, awaited.get());
+            assertThrows(IOException.class, () -> receiver.receive(9, 0, 200, () -> false));
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    void testExchangeIds_DifferAcrossMasterRestarts() {
+        Master first = new Master();
+        Master restarted = new Master();
+        try {
+            assertNotEquals(first.exchangeId(1), first.exchangeId(2));
+            // a worker that forgot the first master's job 1 must not drop the new one's blocks
+            assertNotEquals(first.exchangeId(1), restarted.exchangeId(1));
+        } finally {
+            first.shutdown();
+            restarted.shutdown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package pdc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * JUnit 5 tests for the REGISTER capability payload.
+ */
+class WorkerCapabilitiesTest {
+
+    @Test
+    void testRoundTrip_PreservesFields() throws Exception {
+        WorkerCapabilities caps = new WorkerCapabilities(8, 1L << 30, "gpu-less", Set.of("sum", "DOUBLE"));
+        ByteBuffer buf = ByteBuffer.allocate(caps.encodedLength());
+        caps.encode(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+
+        WorkerCapabilities decoded = WorkerCapabilities.decode(buf);
+        assertEquals(8, decoded.cores);
+        assertEquals(1L << 30, decoded.maxMemoryBytes);
+        assertEquals("gpu-less", decoded.description);
+        assertTrue(decoded.supports("SUM"));
+        assertTrue(decoded.supports("double"));
+        assertFalse(decoded.supports("MATRIX_MULTIPLY"));
+        assertEquals("", decoded.peerAddress);
+    }
+
+    @Test
+    void testPeerAddress_RoundTripsAndGridCellsNeedSumma() throws Exception {
+        WorkerCapabilities caps = new WorkerCapabilities(2, 0, "", Set.of("SUMMA"), "10.0.0.7:4100");
+        ByteBuffer buf = ByteBuffer.allocate(caps.encodedLength());
+        caps.encode(buf);
+        buf.flip();
+
+        WorkerCapabilities decoded = WorkerCapabilities.decode(buf);
+        assertEquals("10.0.0.7:4100", decoded.peerAddress);
+        assertTrue(decoded.supports("SUMMA 1 2 2 0 1 8 4|a:1,b:2,c:3,d:4"));
+    }
+
+    @Test
+    void testEmptyPayload_IsUnknownAndAcceptsAnything() throws Exception {
+        WorkerCapabilities decoded = WorkerCapabilities.decode(ByteBuffer.allocate(0));
+        assertSame(WorkerCapabilities.UNKNOWN, decoded);
+        assertEquals(1, decoded.cores);
+        assertTrue(decoded.supports("MATRIX_MULTIPLY"));
+    }
+}
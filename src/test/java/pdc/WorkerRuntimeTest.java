@@ -0,0 +1,169 @@
+package pdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 tests of Worker.run over loopback, with the test playing the master.
+ */
+class WorkerRuntimeTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ServerSocket server;
+    private Socket socket;
+    private FramedStream master;
+    private Worker worker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new ServerSocket(0);
+        worker = new Worker(2, "runtime-worker", "test");
+        worker.registerOperation("BLOCKED", task -> {
+            release.await(5, TimeUnit.SECONDS);
+            return task.rows();
+        });
+
+        CompletableFuture<Void> joined = CompletableFuture.runAsync(() -> {
+            try {
+                worker.joinCluster("localhost", server.getLocalPort());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        socket = server.accept();
+        socket.setSoTimeout(5000);
+        master = new FramedStream(socket.getInputStream(), socket.getOutputStream(), "MASTER");
+        assertEquals("REGISTER", master.receive().messageType);
+        master.send(new Message(Message.PROTOCOL_MAGIC, 1, "ACK", null, "MASTER", new byte[0]));
+        joined.get(5, TimeUnit.SECONDS);
+        worker.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        worker.shutdown();
+        socket.close();
+        server.close();
+    }
+
+    private void sendTask(long correlationId, String operation, int[][] rows) throws Exception {
+        long[] none = new long[0];
+        master.send(new Message(1, "TASK", "MASTER", null),
+                8 + Payloads.taskHeaderLength(operation, none) + Payloads.blockLength(rows, 0, rows.length), out -> {
+                    out.putLong(correlationId);
+                    Payloads.putTaskHeader(out, (int) correlationId, operation, none);
+                    Payloads.putBlock(out, rows, 0, rows.length, 0);
+                });
+    }
+
+    private void sendCancel(long correlationId) throws Exception {
+        master.send(new Message(1, "CANCEL", "MASTER", null), 8, out -> out.putLong(correlationId));
+    }
+
+    /**
+     * The next reply frame, skipping heartbeats; header receives its type.
+     */
+    private ByteBuffer nextReply(Message header) throws Exception {
+        while (true) {
+            ByteBuffer payload = master.receive(header);
+            if (!"HEARTBEAT".equals(header.messageType)) return payload;
+        }
+    }
+
+    private Payloads.RowBlock nextResult(long correlationId) throws Exception {
+        Message header = new Message();
+        ByteBuffer payload = nextReply(header);
+        assertEquals("RESULT", header.messageType);
+        assertEquals(correlationId, payload.getLong());
+        assertEquals((int) correlationId, payload.getInt());
+        return Payloads.getBlock(payload);
+    }
+
+    @Test
+    void testTask_ResultSentBack() throws Exception {
+        sendTask(1, "DOUBLE", new int[][]{{1, 2}, {3, 4}});
+
+        Payloads.RowBlock result = nextResult(1);
+        assertArrayEquals(new int[]{2, 4}, result.rows[0]);
+        assertArrayEquals(new int[]{6, 8}, result.rows[1]);
+    }
+
+    @Test
+    void testReplies_SentAsTasksFinish() throws Exception {
+        sendTask(1, "BLOCKED", new int[][]{{5}});
+        sendTask(2, "DOUBLE", new int[][]{{7}});
+
+        assertArrayEquals(new int[]{14}, nextResult(2).rows[0]);
+        release.countDown();
+        assertArrayEquals(new int[]{5}, nextResult(1).rows[0]);
+    }
+
+    @Test
+    void testPipeline_CallDoesNotChangeSharedValue() throws Exception {
+        int[][] rows = {{1, 2}, {3, 4}};
+        MatrixExpr x = MatrixExpr.of(rows);
+        Pipeline.Stage stage = Pipeline.compile(x.add(x.apply("DOUBLE")), Collections.emptyMap());
+        assertEquals("PIPELINE 2|R 0;CALL DOUBLE 0;ADD 0 1", stage.operation);
+        sendTask(4, stage.operation, rows);
+
+        Payloads.RowBlock result = nextResult(4);
+        assertArrayEquals(new int[]{3, 6}, result.rows[0]);
+        assertArrayEquals(new int[]{9, 12}, result.rows[1]);
+    }
+
+    @Test
+    void testRaggedResult_TaskErrorAndWorkerKeepsAnswering() throws Exception {
+        worker.registerOperation("RAGGED", task -> new int[][]{{1}, {2, 3}});
+        worker.registerOperation("NULL_ROW", task -> new int[][]{{1}, null});
+        sendTask(5, "RAGGED", new int[][]{{1}, {2}});
+        sendTask(6, "NULL_ROW", new int[][]{{1}, {2}});
+
+        Set<Long> failed = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            Message header = new Message();
+            ByteBuffer payload = nextReply(header);
+            assertEquals("TASK_ERROR", header.messageType);
+            failed.add(payload.getLong());
+        }
+        assertEquals(Set.of(5L, 6L), failed);
+
+        sendTask(7, "DOUBLE", new int[][]{{4}});
+        assertArrayEquals(new int[]{8}, nextResult(7).rows[0]);
+    }
+
+    @Test
+    void testUnknownOperation_TaskError() throws Exception {
+        sendTask(3, "NO_SUCH_OPERATION", new int[][]{{1}});
+
+        Message header = new Message();
+        ByteBuffer payload = nextReply(header);
+        assertEquals("TASK_ERROR", header.messageType);
+        assertEquals(3, payload.getLong());
+        assertTrue(Payloads.getString(payload).contains("NO_SUCH_OPERATION"));
+    }
+
+    @Test
+    void testCancel_DropsReply() throws Exception {
+        sendTask(1, "BLOCKED", new int[][]{{5}});
+        sendCancel(1);
+        // the reader handles frames in order, so CANCEL is applied once this answers
+        sendTask(2, "DOUBLE", new int[][]{{1}});
+        assertArrayEquals(new int[]{2}, nextResult(2).rows[0]);
+
+        release.countDown();
+        sendTask(3, "DOUBLE", new int[][]{{4}});
+        assertArrayEquals(new int[]{8}, nextResult(3).rows[0]);
+    }
+}
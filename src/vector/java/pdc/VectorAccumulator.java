@@ -0,0 +1,53 @@
+package pdc;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD inner loop for MatrixKernels, built from the vector source set against
+ * jdk.incubator.vector and loaded reflectively only when that module is present.
+ *
+ * Each group of four vector-wide column strips keeps its sums in registers across the
+ * whole k range and stores them once, instead of reloading and storing acc for every k
+ * the way the scalar loop does. Columns past the last full vector use the scalar loop.
+ */
+public final class VectorAccumulator implements MatrixKernels.RowAccumulator {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public void accumulate(int[] ai, int[][] panel, int kk, int kEnd, int nc, int[] acc) {
+        int j = 0;
+        for (; j + 4 * LANES <= nc; j += 4 * LANES) {
+            IntVector s0 = IntVector.zero(SPECIES);
+            IntVector s1 = IntVector.zero(SPECIES);
+            IntVector s2 = IntVector.zero(SPECIES);
+            IntVector s3 = IntVector.zero(SPECIES);
+            for (int k = kk; k < kEnd; k++) {
+                int aik = ai[k];
+                int[] row = panel[k];
+                s0 = IntVector.fromArray(SPECIES, row, j).mul(aik).add(s0);
+                s1 = IntVector.fromArray(SPECIES, row, j + LANES).mul(aik).add(s1);
+                s2 = IntVector.fromArray(SPECIES, row, j + 2 * LANES).mul(aik).add(s2);
+                s3 = IntVector.fromArray(SPECIES, row, j + 3 * LANES).mul(aik).add(s3);
+            }
+            s0.intoArray(acc, j);
+            s1.intoArray(acc, j + LANES);
+            s2.intoArray(acc, j + 2 * LANES);
+            s3.intoArray(acc, j + 3 * LANES);
+        }
+        for (; j + LANES <= nc; j += LANES) {
+            IntVector s = IntVector.zero(SPECIES);
+            for (int k = kk; k < kEnd; k++) {
+                s = IntVector.fromArray(SPECIES, panel[k], j).mul(ai[k]).add(s);
+            }
+            s.intoArray(acc, j);
+        }
+        for (; j < nc; j++) {
+            int sum = 0;
+            for (int k = kk; k < kEnd; k++) sum += ai[k] * panel[k][j];
+            acc[j] = sum;
+        }
+    }
+}